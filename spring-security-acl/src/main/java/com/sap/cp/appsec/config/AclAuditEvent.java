@@ -0,0 +1,91 @@
+package com.sap.cp.appsec.config;
+
+import org.springframework.security.acls.domain.GrantedAuthoritySid;
+import org.springframework.security.acls.domain.PrincipalSid;
+import org.springframework.security.acls.model.AccessControlEntry;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.security.acls.model.Sid;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Structured audit record of an ACE, that was used to grant or deny access, or that was created or removed.
+ * Captures the values when the event happens, as the ACE may change until the event is written.
+ */
+public class AclAuditEvent {
+
+	public enum Type {
+		GRANTED, DENIED, CREATED, REMOVED
+	}
+
+	private final Instant timestamp;
+	private final Type type;
+	private final String objectClass;
+	private final String objectIdentity;
+	private final String sid;
+	private final boolean principal;
+	private final int mask;
+	private final boolean granting;
+
+	public AclAuditEvent(Type type, AccessControlEntry ace) {
+		this.timestamp = Instant.now();
+		this.type = type;
+		ObjectIdentity objectIdentity = ace.getAcl() == null ? null : ace.getAcl().getObjectIdentity();
+		this.objectClass = objectIdentity == null ? null : objectIdentity.getType();
+		Serializable identifier = objectIdentity == null ? null : objectIdentity.getIdentifier();
+		this.objectIdentity = identifier == null ? null : identifier.toString();
+		this.sid = getName(ace.getSid());
+		this.principal = ace.getSid() instanceof PrincipalSid;
+		this.mask = ace.getPermission().getMask();
+		this.granting = ace.isGranting();
+	}
+
+	private static String getName(Sid sid) {
+		if (sid instanceof PrincipalSid) {
+			return ((PrincipalSid) sid).getPrincipal();
+		}
+		if (sid instanceof GrantedAuthoritySid) {
+			return ((GrantedAuthoritySid) sid).getGrantedAuthority();
+		}
+		return String.valueOf(sid);
+	}
+
+	public Instant getTimestamp() {
+		return timestamp;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getObjectClass() {
+		return objectClass;
+	}
+
+	public String getObjectIdentity() {
+		return objectIdentity;
+	}
+
+	public String getSid() {
+		return sid;
+	}
+
+	public boolean isPrincipal() {
+		return principal;
+	}
+
+	public int getMask() {
+		return mask;
+	}
+
+	public boolean isGranting() {
+		return granting;
+	}
+
+	@Override
+	public String toString() {
+		return type + " object=" + objectClass + ":" + objectIdentity + " sid=" + sid + " principal=" + principal
+				+ " mask=" + mask + " granting=" + granting;
+	}
+}
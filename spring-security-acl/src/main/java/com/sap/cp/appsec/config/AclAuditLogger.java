@@ -1,7 +1,5 @@
 package com.sap.cp.appsec.config;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.security.acls.domain.AclAuthorizationStrategy;
 import org.springframework.security.acls.domain.AuditLogger;
 import org.springframework.security.acls.model.AccessControlEntry;
@@ -22,9 +20,15 @@ import org.springframework.util.Assert;
  * Additionlly note that #logIfNeeded with `isGranted=false` is only called when ACE explicitly specifies "granted=false"
  * and not when a permission (ACE) is missing.
  *
+ * The logger does not write itself, but publishes {@link AclAuditEvent}s to the {@link AclAuditPipeline}, which
+ * writes them asynchronously, so that permission checks are not slowed down by audit logging.
  */
 public class AclAuditLogger implements AuditLogger {
-	private Logger logger = LoggerFactory.getLogger(getClass());
+	private final AclAuditPipeline pipeline;
+
+	public AclAuditLogger(AclAuditPipeline pipeline) {
+		this.pipeline = pipeline;
+	}
 
 	@Override
 	public void logIfNeeded(boolean isGranted, AccessControlEntry ace) {
@@ -35,22 +39,22 @@ public class AclAuditLogger implements AuditLogger {
 
 			// log only in case ACE configures auditSuccess = true
 			if (isGranted && auditableAce.isAuditSuccess()) {
-				logger.info("GRANTED due to ACE: " + ace);
+				pipeline.publish(new AclAuditEvent(AclAuditEvent.Type.GRANTED, ace));
 			}
 			// log only in case ACE configures auditFailure = true
 			if (!isGranted && auditableAce.isAuditFailure()) {
-				logger.warn("DENIED due to ACE: " + ace);
+				pipeline.publish(new AclAuditEvent(AclAuditEvent.Type.DENIED, ace));
 			}
 		}
 	}
 
 	public void logGrantPermission(AccessControlEntry ace) {
 		Assert.notNull(ace, "AccessControlEntry required");
-		logger.info("CREATED ACE: " + ace);
+		pipeline.publish(new AclAuditEvent(AclAuditEvent.Type.CREATED, ace));
 	}
 
 	public void logRemovePermission(AccessControlEntry ace) {
 		Assert.notNull(ace, "AccessControlEntry required");
-		logger.info("REMOVED ACE: " + ace);
+		pipeline.publish(new AclAuditEvent(AclAuditEvent.Type.REMOVED, ace));
 	}
 }
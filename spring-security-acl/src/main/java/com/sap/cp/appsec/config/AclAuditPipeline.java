@@ -0,0 +1,127 @@
+package com.sap.cp.appsec.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decouples the audit logging from the request threads: the events are put into a bounded {@link AclAuditRingBuffer}
+ * and written to the {@link AclAuditSink}s in batches by a single background thread.
+ *
+ * In case the buffer is full, the {@link Backpressure} decides whether the event is dropped or the caller waits for
+ * free space. Dropped, written and failed events are exported as "acl.audit.events" metrics.
+ */
+public class AclAuditPipeline implements MeterBinder {
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	public enum Backpressure {
+		/** drops the event and counts it */
+		DROP,
+		/** the caller waits until the event fits into the buffer */
+		BLOCK
+	}
+
+	private final AclAuditRingBuffer<AclAuditEvent> buffer;
+	private final List<AclAuditSink> sinks;
+	private final int batchSize;
+	private final Backpressure backpressure;
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private volatile boolean running;
+	private Thread consumer;
+
+	public AclAuditPipeline(List<AclAuditSink> sinks, int bufferSize, int batchSize, Backpressure backpressure) {
+		this.buffer = new AclAuditRingBuffer<>(bufferSize);
+		this.sinks = new ArrayList<>(sinks);
+		this.batchSize = batchSize;
+		this.backpressure = backpressure;
+	}
+
+	/**
+	 * Never blocks, unless the buffer is full and {@link Backpressure#BLOCK} is configured.
+	 */
+	public void publish(AclAuditEvent event) {
+		if (buffer.offer(event)) {
+			return;
+		}
+		if (backpressure == Backpressure.BLOCK) {
+			while (running) {
+				LockSupport.parkNanos(FULL_PARK_NANOS);
+				if (buffer.offer(event)) {
+					return;
+				}
+			}
+		}
+		dropped.increment();
+	}
+
+	public void start() {
+		running = true;
+		consumer = new Thread(this::consume, "acl-audit");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * Writes the remaining events and stops the background thread.
+	 */
+	public void stop() throws InterruptedException {
+		running = false;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+			consumer.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+
+	private void consume() {
+		List<AclAuditEvent> batch = new ArrayList<>(batchSize);
+		while (running || buffer.size() > 0) {
+			if (buffer.drainTo(batch, batchSize) == 0) {
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+				continue;
+			}
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	private void write(List<AclAuditEvent> batch) {
+		for (AclAuditSink sink : sinks) {
+			try {
+				sink.write(batch);
+				written.add(batch.size());
+			} catch (RuntimeException e) {
+				failed.add(batch.size());
+				logger.warn("failed to write {} audit events to {}", batch.size(), sink.getClass().getSimpleName(), e);
+			}
+		}
+	}
+
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("acl.audit.events", dropped, LongAdder::sum).tag("result", "dropped")
+				.description("audit events that were dropped because the buffer was full").register(registry);
+		FunctionCounter.builder("acl.audit.events", written, LongAdder::sum).tag("result", "written")
+				.description("audit events written, counted per sink").register(registry);
+		FunctionCounter.builder("acl.audit.events", failed, LongAdder::sum).tag("result", "failed")
+				.description("audit events that could not be written, counted per sink").register(registry);
+		Gauge.builder("acl.audit.buffer.size", buffer, AclAuditRingBuffer::size)
+				.description("audit events waiting to be written").register(registry);
+	}
+}
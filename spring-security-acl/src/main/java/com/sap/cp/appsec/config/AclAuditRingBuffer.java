@@ -0,0 +1,86 @@
+package com.sap.cp.appsec.config;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer.
+ *
+ * Every slot carries a sequence number, that tells whether the slot is free for the producer of a position or filled
+ * for the consumer (see D. Vyukov, "Bounded MPMC queue"). Producers claim positions with a CAS on the tail and never
+ * wait for each other, an offer to a full buffer fails immediately.
+ */
+public class AclAuditRingBuffer<E> {
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head; // written by the consumer only
+
+	/**
+	 * @param capacity is rounded up to the next power of two
+	 */
+	public AclAuditRingBuffer(int capacity) {
+		int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+		this.mask = size - 1;
+		this.elements = new AtomicReferenceArray<>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int index = 0; index < size; index++) {
+			sequences.set(index, index);
+		}
+	}
+
+	/**
+	 * @return false in case the buffer is full
+	 */
+	public boolean offer(E element) {
+		while (true) {
+			long position = tail.get();
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					elements.set(index, element);
+					sequences.set(index, position + 1); // publishes the element to the consumer
+					return true;
+				}
+			} else if (difference < 0) {
+				return false;
+			}
+			// otherwise another producer claimed the position in the meantime
+		}
+	}
+
+	/**
+	 * Moves up to {@code maxElements} elements to the given list. Must be called by a single consumer thread.
+	 *
+	 * @return the number of moved elements
+	 */
+	public int drainTo(List<? super E> target, int maxElements) {
+		int count = 0;
+		long position = head;
+		while (count < maxElements) {
+			int index = (int) position & mask;
+			if (sequences.get(index) != position + 1) {
+				break; // empty, or the producer of the position is not done yet
+			}
+			target.add(elements.get(index));
+			elements.set(index, null);
+			sequences.set(index, position + mask + 1); // frees the slot for the next round
+			position++;
+			count++;
+		}
+		head = position;
+		return count;
+	}
+
+	public int size() {
+		return (int) Math.max(0, tail.get() - head);
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+}
@@ -0,0 +1,11 @@
+package com.sap.cp.appsec.config;
+
+import java.util.List;
+
+/**
+ * Destination of the audit events of the {@link AclAuditPipeline}, which are written in batches by a single thread.
+ */
+public interface AclAuditSink {
+
+	void write(List<AclAuditEvent> events);
+}
@@ -0,0 +1,39 @@
+package com.sap.cp.appsec.config;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Published by the {@link AclCacheInvalidationChannel} implementations after ACLs, that were changed by any
+ * application instance, have been evicted from the local ACL cache. Allows to evict caches that are derived from
+ * the ACLs, too.
+ */
+public class AclCacheInvalidatedEvent extends ApplicationEvent {
+
+	private final List<Long> aclIds;
+
+	/**
+	 * @param source the channel that received the invalidation
+	 * @param aclIds primary keys of the changed ACLs, {@code null} in case the whole cache was cleared, e.g. as
+	 *               invalidations might have been lost
+	 */
+	public AclCacheInvalidatedEvent(Object source, Collection<Long> aclIds) {
+		super(source);
+		this.aclIds = aclIds == null ? null : Collections.unmodifiableList(new ArrayList<>(aclIds));
+	}
+
+	public boolean isCleared() {
+		return aclIds == null;
+	}
+
+	/**
+	 * @return primary keys of the changed ACLs, without the ones of their descendants
+	 */
+	public List<Long> getAclIds() {
+		return aclIds == null ? Collections.emptyList() : aclIds;
+	}
+}
@@ -0,0 +1,25 @@
+package com.sap.cp.appsec.config;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * Propagates ACL changes to the ACL caches of all application instances sharing the same database.
+ *
+ * Implementations publish within the transaction of the ACL change, so that other instances are only notified, once
+ * the change is committed. Every instance evicts the announced ACLs and their children from its local cache.
+ */
+public interface AclCacheInvalidationChannel {
+
+	/**
+	 * Channel for a single application instance, where the local cache is kept up-to-date by the
+	 * {@link org.springframework.security.acls.model.MutableAclService} itself.
+	 */
+	AclCacheInvalidationChannel NONE = aclIds -> {
+	};
+
+	/**
+	 * Announces that the ACLs with the given primary keys were updated or deleted.
+	 */
+	void publish(Collection<? extends Serializable> aclIds);
+}
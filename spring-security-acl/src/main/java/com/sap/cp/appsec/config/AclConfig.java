@@ -1,35 +1,59 @@
 package com.sap.cp.appsec.config;
 
+import com.sap.cp.appsec.security.AclSidCreatedEvent;
 import com.zaxxer.hikari.HikariDataSource;
-import org.springframework.cache.ehcache.EhCacheFactoryBean;
-import org.springframework.cache.ehcache.EhCacheManagerFactoryBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.acls.AclPermissionEvaluator;
 import org.springframework.security.acls.domain.*;
 import org.springframework.security.acls.jdbc.BasicLookupStrategy;
 import org.springframework.security.acls.jdbc.JdbcMutableAclService;
 import org.springframework.security.acls.jdbc.LookupStrategy;
-import org.springframework.security.acls.model.AclCache;
-import org.springframework.security.acls.model.MutableAclService;
-import org.springframework.security.acls.model.PermissionGrantingStrategy;
+import org.springframework.security.acls.model.*;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
 
 import javax.sql.DataSource;
-import java.util.List;
+import java.io.Serializable;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class AclConfig {
 
 	@Bean
-	public MutableAclService aclService(HikariDataSource dataSource, LookupStrategy lookupStrategy, AclCache aclCache) {
-		JdbcMutableAclService jdbcAclService = new PostgresJdbcMutableAclService(
+	public MutableAclService aclService(DataSource dataSource, LookupStrategy lookupStrategy, AclCache aclCache,
+			AclCacheInvalidationChannel invalidationChannel, PermissionGrantingStrategy permissionGrantingStrategy,
+			AclObjectAncestors aclObjectAncestors) {
+		PostgresJdbcMutableAclService jdbcAclService = new PostgresJdbcMutableAclService(
 				dataSource, lookupStrategy, aclCache);
 
 		jdbcAclService.setAclClassIdSupported(true);
+		jdbcAclService.setInvalidationChannel(invalidationChannel);
+		jdbcAclService.setAclObjectAncestors(aclObjectAncestors);
+		if (permissionGrantingStrategy instanceof CompiledPermissionGrantingStrategy) {
+			jdbcAclService.setCompiledPermissionGrantingStrategy(
+					(CompiledPermissionGrantingStrategy) permissionGrantingStrategy);
+		}
 
-		if (dataSource.getDriverClassName().equals("org.postgresql.Driver")) {
+		if (isPostgreSQL(dataSource)) {
 			// because of PostgreSQL as documented here:
 			// https://docs.spring.io/spring-security/site/docs/current/reference/html5/#postgresql
 			jdbcAclService.setClassIdentityQuery("select currval(pg_get_serial_sequence('acl_class', 'id'))");
@@ -38,25 +62,64 @@ public class AclConfig {
 		return jdbcAclService;
 	}
 
+	@Bean
+	public AclObjectAncestors aclObjectAncestors(DataSource dataSource) {
+		return new AclObjectAncestors(dataSource);
+	}
+
 	@Bean //implements hasPermission annotations
 	public PermissionEvaluator permissionEvaluator(MutableAclService aclService) {
 		return new AclPermissionEvaluator(aclService);
 	}
 
 	@Bean
-	public LookupStrategy lookupStrategy(DataSource dataSource) {
-		BasicLookupStrategy strategy = new BasicLookupStrategy(
-				dataSource,
-				aclCache(),
-				aclAuthorizationStrategy(),
-				new AclAuditLogger()
-		);
-
-		strategy.setAclClassIdSupported(true);
+	public LookupStrategy lookupStrategy(DataSource dataSource, CaffeineAclCache aclCache,
+			PermissionGrantingStrategy permissionGrantingStrategy, MeterRegistry meterRegistry,
+			ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource) {
+		boolean postgreSQL = isPostgreSQL(dataSource);
+		LookupStrategy strategy = createLookupStrategy(dataSource, postgreSQL, aclCache, permissionGrantingStrategy);
+		// the loaded ACLs are cached for all users, hence they must not be read from a replica that lags behind. Outside
+		// of read-write transactions they are read from the primary with a connection of their own.
+		ReplicaRoutingDataSource routingDataSource = replicaRoutingDataSource.getIfAvailable();
+		LookupStrategy primaryStrategy = routingDataSource == null ? strategy : createLookupStrategy(
+				routingDataSource.getPrimary(), postgreSQL, aclCache, permissionGrantingStrategy);
+
+		// measures the lookups that are not served by the cache
+		LookupStrategy cachingStrategy = (objects, sids) -> aclCache.load(objects,
+				() -> (isReadWriteTransaction() ? strategy : primaryStrategy).readAclsById(objects, sids));
+		return new TimedLookupStrategy(cachingStrategy, aclCache, meterRegistry);
+	}
+
+	private BasicLookupStrategy createLookupStrategy(DataSource dataSource, boolean postgreSQL,
+			CaffeineAclCache aclCache, PermissionGrantingStrategy permissionGrantingStrategy) {
+		BasicLookupStrategy strategy;
+		if (postgreSQL) {
+			// loads the ACLs of all ancestors with the same query, instead of a query per level of the hierarchy
+			strategy = new HierarchyLookupStrategy(
+					dataSource,
+					aclCache,
+					aclAuthorizationStrategy(),
+					permissionGrantingStrategy
+			);
+		} else {
+			strategy = new BasicLookupStrategy(
+					dataSource,
+					aclCache,
+					aclAuthorizationStrategy(),
+					permissionGrantingStrategy
+			);
+			strategy.setAclClassIdSupported(true);
+		}
+
 		strategy.setPermissionFactory(new DefaultPermissionFactory(BasePermission.class));
 		return strategy;
 	}
 
+	private static boolean isReadWriteTransaction() {
+		return TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
 	@Bean
 	public AclAuthorizationStrategy aclAuthorizationStrategy() {
 		return new AclAuthorizationStrategyImpl(
@@ -64,49 +127,521 @@ public class AclConfig {
 	}
 
 	@Bean
-	public PermissionGrantingStrategy permissionGrantingStrategy() {
+	public PermissionGrantingStrategy permissionGrantingStrategy(AclAuditLogger aclAuditLogger,
+			@Value("${acl.permissions.combined-masks:false}") boolean combinedMasks,
+			@Value("${acl.permissions.compiled:true}") boolean compiled) {
+		if (compiled) {
+			return new CompiledPermissionGrantingStrategy(aclAuditLogger, combinedMasks);
+		}
+		if (combinedMasks) {
+			return new CombinedMaskPermissionGrantingStrategy(aclAuditLogger);
+		}
 		return new DefaultPermissionGrantingStrategy(
-				new AclAuditLogger());
+				aclAuditLogger);
 	}
 
-	// Cache Setup
+	// Audit logging, used by the PermissionGrantingStrategy and therefore by the ACLs of the LookupStrategy, too
 
 	@Bean
-	public AclCache aclCache() {
-		return new EhCacheBasedAclCache(
-				aclEhCacheFactoryBean().getObject(),
-				permissionGrantingStrategy(),
-				aclAuthorizationStrategy()
-		);
+	public AclAuditLogger aclAuditLogger(AclAuditPipeline aclAuditPipeline) {
+		return new AclAuditLogger(aclAuditPipeline);
+	}
+
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	public AclAuditPipeline aclAuditPipeline(DataSource dataSource,
+			@Value("${acl.audit.sinks:log}") String[] sinkNames,
+			@Value("${acl.audit.buffer-size:8192}") int bufferSize,
+			@Value("${acl.audit.batch-size:256}") int batchSize,
+			@Value("${acl.audit.backpressure:drop}") String backpressure) {
+		List<AclAuditSink> sinks = new ArrayList<>();
+		for (String sinkName : sinkNames) {
+			switch (sinkName.trim()) {
+			case "log":
+				sinks.add(new LogAclAuditSink());
+				break;
+			case "jdbc":
+				sinks.add(new JdbcAclAuditSink(dataSource));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown audit sink: " + sinkName);
+			}
+		}
+		return new AclAuditPipeline(sinks, bufferSize, batchSize,
+				AclAuditPipeline.Backpressure.valueOf(backpressure.trim().toUpperCase(Locale.ROOT)));
 	}
 
+	// Cache Setup
+
 	@Bean
-	public EhCacheFactoryBean aclEhCacheFactoryBean() {
-		EhCacheFactoryBean ehCacheFactoryBean = new EhCacheFactoryBean();
-		ehCacheFactoryBean.setCacheManager(aclCacheManager().getObject());
-		ehCacheFactoryBean.setCacheName("acl_cache");
-		return ehCacheFactoryBean;
+	public CaffeineAclCache aclCache(
+			@Value("${acl.cache.maximum-weight:100000}") long maximumWeight,
+			@Value("${acl.cache.time-to-live-seconds:600}") long timeToLiveSeconds) {
+		return new CaffeineAclCache(maximumWeight, timeToLiveSeconds, TimeUnit.SECONDS);
 	}
 
+	// Cache invalidation across application instances
+
 	@Bean
-	public EhCacheManagerFactoryBean aclCacheManager() {
-		EhCacheManagerFactoryBean cacheManagerFactoryBean = new EhCacheManagerFactoryBean();
-		cacheManagerFactoryBean.setShared(true);
-		return cacheManagerFactoryBean;
+	@ConditionalOnProperty(name = "acl.cache.invalidation", havingValue = "none", matchIfMissing = true)
+	public AclCacheInvalidationChannel noAclCacheInvalidationChannel() {
+		return AclCacheInvalidationChannel.NONE;
 	}
 
+	/**
+	 * The listening connection is opened without the connection pool, as it is kept open as long as the application
+	 * runs. It uses the settings of the Hikari pool, e.g. as created from the bound database service, or else the
+	 * {@code spring.datasource} properties.
+	 */
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	@ConditionalOnProperty(name = "acl.cache.invalidation", havingValue = "notify")
+	public AclCacheInvalidationChannel notifyAclCacheInvalidationChannel(DataSource dataSource,
+			DataSourceProperties dataSourceProperties, CaffeineAclCache aclCache) throws SQLException {
+		DataSource listenerDataSource;
+		if (dataSource.isWrapperFor(HikariDataSource.class)) {
+			HikariDataSource pool = dataSource.unwrap(HikariDataSource.class);
+			listenerDataSource = new DriverManagerDataSource(pool.getJdbcUrl(), pool.getUsername(), pool.getPassword());
+		} else {
+			listenerDataSource = new DriverManagerDataSource(dataSourceProperties.determineUrl(),
+					dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+		}
+		return new NotifyAclCacheInvalidationChannel(dataSource, listenerDataSource, aclCache);
+	}
 
-	public static class PostgresJdbcMutableAclService extends JdbcMutableAclService {
-		private String selectSidsWithPrefix = "select acl_sid.sid from acl_sid "
-				+ "where acl_sid.sid like ? and "
-				+ "      acl_sid.principal = false";
+	@Bean(initMethod = "start", destroyMethod = "stop")
+	@ConditionalOnProperty(name = "acl.cache.invalidation", havingValue = "polling")
+	public AclCacheInvalidationChannel pollingAclCacheInvalidationChannel(DataSource dataSource, CaffeineAclCache aclCache,
+			@Value("${acl.cache.invalidation.polling.interval-millis:1000}") long intervalMillis,
+			@Value("${acl.cache.invalidation.polling.lookback-millis:30000}") long lookbackMillis) {
+		return new PollingAclCacheInvalidationChannel(dataSource, aclCache, intervalMillis, lookbackMillis);
+	}
+
+	private static boolean isPostgreSQL(DataSource dataSource) {
+		try {
+			return "PostgreSQL".equals(
+					JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+		} catch (MetaDataAccessException e) {
+			throw new IllegalStateException("Unable to determine the database product", e);
+		}
+	}
+
+	public static class PostgresJdbcMutableAclService extends JdbcMutableAclService implements ApplicationEventPublisherAware {
+		private static final int BATCH_SIZE = 1000;
+		private String selectMaxAceOrders = "select acl_object_identity, max(ace_order) from acl_entry "
+				+ "where acl_object_identity in (:ids) group by acl_object_identity";
+		private String selectSidPrimaryKeys = "select id, principal, sid from acl_sid where sid in (:sids)";
+		private String insertEntry = "insert into acl_entry "
+				+ "(acl_object_identity, ace_order, sid, mask, granting, audit_success, audit_failure) "
+				+ "values (?, ?, ?, ?, ?, ?, ?)";
+		private String deleteGrantingEntry = "delete from acl_entry "
+				+ "where acl_object_identity = ? and sid = ? and mask = ? and granting = true";
+		private String selectEntries = "select entry.id, entry.ace_order, sid.sid, sid.principal, entry.mask, "
+				+ "entry.granting, entry.audit_success, entry.audit_failure from acl_entry entry "
+				+ "inner join acl_sid sid on entry.sid = sid.id where entry.acl_object_identity = ?";
+		private String updateEntry = "update acl_entry "
+				+ "set ace_order = ?, mask = ?, granting = ?, audit_success = ?, audit_failure = ? where id = ?";
+		private String updateEntryMask = "update acl_entry set mask = ? where id = ?";
+		private String deleteEntry = "delete from acl_entry where id = ?";
+		private String selectObjectIdentity = "select parent_object, owner_sid, entries_inheriting "
+				+ "from acl_object_identity where id = ?";
+		private String updateParentObject = "update acl_object_identity set parent_object = ? where id = ?";
+		private final AclCache aclCache;
+		private AclCacheInvalidationChannel invalidationChannel = AclCacheInvalidationChannel.NONE;
+		private ApplicationEventPublisher eventPublisher;
+		private CompiledPermissionGrantingStrategy compiledPermissionGrantingStrategy; // null in case not used
+		private AclObjectAncestors aclObjectAncestors; // null in case not maintained
 
 		public PostgresJdbcMutableAclService(DataSource dataSource, LookupStrategy lookupStrategy, AclCache aclCache) {
 			super(dataSource, lookupStrategy, aclCache);
+			this.aclCache = aclCache;
+		}
+
+		public void setInvalidationChannel(AclCacheInvalidationChannel invalidationChannel) {
+			this.invalidationChannel = invalidationChannel;
+		}
+
+		/**
+		 * The modified ACL instances are evicted from the given strategy, as they have to be compiled again.
+		 */
+		public void setCompiledPermissionGrantingStrategy(CompiledPermissionGrantingStrategy strategy) {
+			this.compiledPermissionGrantingStrategy = strategy;
+		}
+
+		/**
+		 * The closure table of the object hierarchy is kept in sync whenever an object identity is created or its
+		 * parent is changed.
+		 */
+		public void setAclObjectAncestors(AclObjectAncestors aclObjectAncestors) {
+			this.aclObjectAncestors = aclObjectAncestors;
+		}
+
+		/**
+		 * Unlike {@link JdbcMutableAclService#updateAcl(MutableAcl)}, which deletes and re-inserts all ACEs, the ACEs
+		 * are compared with the persisted ones and only the added, removed and changed ACEs are written with JDBC
+		 * batches. Likewise only the changed columns of the object identity are updated.
+		 */
+		@Override
+		public MutableAcl updateAcl(MutableAcl acl) throws NotFoundException {
+			Assert.notNull(acl.getId(), "Object Identity doesn't provide an identifier");
+
+			updateEntries(acl);
+			updateObjectIdentityColumns(acl);
+			evictCompiled(acl);
+			clearCacheIncludingChildren(acl.getObjectIdentity());
+			invalidationChannel.publish(Collections.singleton(acl.getId()));
+			return (MutableAcl) readAclById(acl.getObjectIdentity());
+		}
+
+		/**
+		 * Persists the parent of the ACL, without touching its ACEs or any other column.
+		 */
+		public void updateParent(MutableAcl acl) throws NotFoundException {
+			Assert.notNull(acl.getId(), "Object Identity doesn't provide an identifier");
+
+			Long parentId = retrieveParentPrimaryKey(acl);
+			if (jdbcOperations.update(updateParentObject, parentId, acl.getId()) != 1) {
+				throw new NotFoundException("Unable to locate ACL to update");
+			}
+			moveInHierarchy(acl, parentId);
+			clearCacheIncludingChildren(acl.getObjectIdentity());
+			invalidationChannel.publish(Collections.singleton(acl.getId()));
+		}
+
+		/**
+		 * Adds the object identity to the closure table of the object hierarchy.
+		 */
+		@Override
+		protected void createObjectIdentity(ObjectIdentity object, Sid owner) {
+			super.createObjectIdentity(object, owner);
+			if (aclObjectAncestors != null) {
+				aclObjectAncestors.insert(retrieveObjectIdentityPrimaryKey(object));
+			}
+		}
+
+		@Override
+		public void deleteAcl(ObjectIdentity objectIdentity, boolean deleteChildren) throws ChildrenExistException {
+			Long aclId = retrieveObjectIdentityPrimaryKey(objectIdentity);
+			super.deleteAcl(objectIdentity, deleteChildren);
+			if (aclId != null) {
+				invalidationChannel.publish(Collections.singleton(aclId));
+			}
+		}
+
+		@Override
+		public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+			this.eventPublisher = eventPublisher;
 		}
 
-		public List<String> getAllSidsWithPrefix(String prefix) {
-			return jdbcOperations.queryForList(selectSidsWithPrefix, String.class, prefix + "_%");
+		/**
+		 * Publishes an {@link AclSidCreatedEvent} in case the sid is created.
+		 */
+		@Override
+		protected Long createOrRetrieveSidPrimaryKey(String sidName, boolean sidIsPrincipal, boolean allowCreate) {
+			Long sidId = super.createOrRetrieveSidPrimaryKey(sidName, sidIsPrincipal, false);
+			if (sidId == null && allowCreate) {
+				sidId = super.createOrRetrieveSidPrimaryKey(sidName, sidIsPrincipal, true);
+				if (eventPublisher != null) {
+					eventPublisher.publishEvent(new AclSidCreatedEvent(this, sidName, sidIsPrincipal));
+				}
+			}
+			return sidId;
+		}
+
+		/**
+		 * Appends the given ACEs to their ACLs with a single JDBC batch. Unlike {@link #updateAcl(MutableAcl)} the
+		 * existing ACEs are neither deleted nor rewritten. The affected ACLs are evicted from the cache.
+		 */
+		public void insertAces(List<AccessControlEntry> aces) {
+			if (aces.isEmpty()) {
+				return;
+			}
+			Set<Serializable> aclIds = new HashSet<>();
+			for (AccessControlEntry ace : aces) {
+				aclIds.add(getAclId(ace));
+			}
+			Map<Serializable, Integer> nextAceOrders = selectNextAceOrders(aclIds);
+			Map<Sid, Long> sidIds = retrieveSidPrimaryKeys(aces, true);
+
+			List<Object[]> rows = new ArrayList<>();
+			for (AccessControlEntry ace : aces) {
+				Serializable aclId = getAclId(ace);
+				int aceOrder = nextAceOrders.getOrDefault(aclId, 0);
+				nextAceOrders.put(aclId, aceOrder + 1);
+				AuditableAccessControlEntry auditable = (AuditableAccessControlEntry) ace;
+				rows.add(new Object[]{aclId, aceOrder, sidIds.get(ace.getSid()),
+						ace.getPermission().getMask(), ace.isGranting(), auditable.isAuditSuccess(), auditable.isAuditFailure()});
+			}
+			jdbcOperations.batchUpdate(insertEntry, rows);
+			evictFromCache(aces);
+		}
+
+		/**
+		 * Updates the masks of the given persisted ACEs with a single JDBC batch. ACEs are matched by their id.
+		 * The affected ACLs are evicted from the cache.
+		 */
+		public void updateAceMasks(List<AccessControlEntry> aces) {
+			List<Object[]> rows = new ArrayList<>();
+			for (AccessControlEntry ace : aces) {
+				rows.add(new Object[]{ace.getPermission().getMask(), ace.getId()});
+			}
+			batchUpdate(updateEntryMask, rows);
+			evictFromCache(aces);
+		}
+
+		/**
+		 * Deletes the given granting ACEs with a single JDBC batch. ACEs are matched by ACL, sid and mask.
+		 * The affected ACLs are evicted from the cache.
+		 */
+		public void deleteAces(List<AccessControlEntry> aces) {
+			Map<Sid, Long> sidIds = retrieveSidPrimaryKeys(aces, false);
+			List<Object[]> rows = new ArrayList<>();
+			for (AccessControlEntry ace : aces) {
+				Long sidId = sidIds.get(ace.getSid());
+				if (sidId != null) {
+					rows.add(new Object[]{getAclId(ace), sidId, ace.getPermission().getMask()});
+				}
+			}
+			if (!rows.isEmpty()) {
+				jdbcOperations.batchUpdate(deleteGrantingEntry, rows);
+			}
+			evictFromCache(aces);
+		}
+
+		/**
+		 * Deletes, updates and inserts the ACEs, so that the persisted ones match the ones of the given ACL. As
+		 * {@link MutableAcl} only inserts and deletes ACEs at an index, the remaining ACEs keep their relative order.
+		 * Hence moving them down in ascending and up in descending order never violates the unique ace_order.
+		 */
+		private void updateEntries(MutableAcl acl) {
+			Map<Long, PersistedEntry> persistedEntries = new HashMap<>();
+			jdbcOperations.query(selectEntries, (RowCallbackHandler) rs -> {
+				PersistedEntry entry = new PersistedEntry(rs);
+				persistedEntries.put(entry.id, entry);
+			}, acl.getId());
+
+			List<AccessControlEntry> entries = acl.getEntries();
+			Map<Sid, Long> sidIds = retrieveSidPrimaryKeys(entries, true);
+			List<Object[]> insertedRows = new ArrayList<>();
+			List<Object[]> movedDownRows = new ArrayList<>();
+			List<Object[]> movedUpRows = new ArrayList<>();
+			Set<Long> retainedIds = new HashSet<>();
+
+			for (int aceOrder = 0; aceOrder < entries.size(); aceOrder++) {
+				AuditableAccessControlEntry entry = (AuditableAccessControlEntry) entries.get(aceOrder);
+				PersistedEntry persisted = entry.getId() == null ? null : persistedEntries.get((Long) entry.getId());
+
+				if (persisted == null || !persisted.sid.equals(entry.getSid())) {
+					insertedRows.add(new Object[]{acl.getId(), aceOrder, sidIds.get(entry.getSid()),
+							entry.getPermission().getMask(), entry.isGranting(), entry.isAuditSuccess(), entry.isAuditFailure()});
+					continue;
+				}
+				retainedIds.add(persisted.id);
+				if (!persisted.matches(entry, aceOrder)) {
+					Object[] row = {aceOrder, entry.getPermission().getMask(), entry.isGranting(),
+							entry.isAuditSuccess(), entry.isAuditFailure(), persisted.id};
+					(aceOrder > persisted.aceOrder ? movedUpRows : movedDownRows).add(row);
+				}
+			}
+			Collections.reverse(movedUpRows);
+
+			List<Object[]> deletedRows = new ArrayList<>();
+			for (Long id : persistedEntries.keySet()) {
+				if (!retainedIds.contains(id)) {
+					deletedRows.add(new Object[]{id});
+				}
+			}
+
+			List<Object[]> updatedRows = new ArrayList<>(movedDownRows);
+			updatedRows.addAll(movedUpRows);
+			batchUpdate(deleteEntry, deletedRows);
+			batchUpdate(updateEntry, updatedRows);
+			batchUpdate(insertEntry, insertedRows);
+		}
+
+		private void updateObjectIdentityColumns(MutableAcl acl) {
+			List<Map<String, Object>> rows = jdbcOperations.queryForList(selectObjectIdentity, acl.getId());
+			if (rows.isEmpty()) {
+				throw new NotFoundException("Unable to locate ACL to update");
+			}
+			Assert.notNull(acl.getOwner(), "Owner is required in this implementation");
+			Map<String, Object> row = rows.get(0);
+
+			List<String> columns = new ArrayList<>();
+			List<Object> values = new ArrayList<>();
+			Long parentId = retrieveParentPrimaryKey(acl);
+			boolean parentChanged = !Objects.equals(parentId, toLong(row.get("parent_object")));
+			if (parentChanged) {
+				columns.add("parent_object = ?");
+				values.add(parentId);
+			}
+			Long ownerSid = createOrRetrieveSidPrimaryKey(acl.getOwner(), true);
+			if (!Objects.equals(ownerSid, toLong(row.get("owner_sid")))) {
+				columns.add("owner_sid = ?");
+				values.add(ownerSid);
+			}
+			if (!Objects.equals(acl.isEntriesInheriting(), row.get("entries_inheriting"))) {
+				columns.add("entries_inheriting = ?");
+				values.add(acl.isEntriesInheriting());
+			}
+			if (!columns.isEmpty()) {
+				values.add(acl.getId());
+				jdbcOperations.update("update acl_object_identity set " + String.join(", ", columns) + " where id = ?",
+						values.toArray());
+			}
+			if (parentChanged) {
+				moveInHierarchy(acl, parentId);
+			}
+		}
+
+		private void moveInHierarchy(MutableAcl acl, Long parentId) {
+			if (aclObjectAncestors != null) {
+				aclObjectAncestors.move(toLong(acl.getId()), parentId);
+			}
+		}
+
+		private Long retrieveParentPrimaryKey(MutableAcl acl) {
+			Acl parent = acl.getParentAcl();
+			if (parent == null) {
+				return null;
+			}
+			if (parent instanceof MutableAcl && ((MutableAcl) parent).getId() != null) {
+				return toLong(((MutableAcl) parent).getId());
+			}
+			return retrieveObjectIdentityPrimaryKey(parent.getObjectIdentity());
+		}
+
+		/**
+		 * Same as the private {@code JdbcMutableAclService.clearCacheIncludingChildren}, but finds all descendants
+		 * with a single query of the closure table, in case it is maintained.
+		 */
+		private void clearCacheIncludingChildren(ObjectIdentity objectIdentity) {
+			if (aclObjectAncestors != null) {
+				Long aclId = retrieveObjectIdentityPrimaryKey(objectIdentity);
+				if (aclId != null) {
+					aclObjectAncestors.findDescendants(aclId).forEach(aclCache::evictFromCache);
+				}
+			} else {
+				List<ObjectIdentity> children = findChildren(objectIdentity);
+				if (children != null) {
+					children.forEach(this::clearCacheIncludingChildren);
+				}
+			}
+			aclCache.evictFromCache(objectIdentity);
+		}
+
+		private void batchUpdate(String sql, List<Object[]> rows) {
+			for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+				jdbcOperations.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+			}
+		}
+
+		private static Long toLong(Object value) {
+			return value == null ? null : ((Number) value).longValue();
+		}
+
+		private Map<Serializable, Integer> selectNextAceOrders(Collection<Serializable> aclIds) {
+			NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcOperations);
+			Map<Serializable, Integer> nextAceOrders = new HashMap<>();
+			List<Serializable> ids = new ArrayList<>(aclIds);
+			for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+				namedJdbcTemplate.query(selectMaxAceOrders,
+						Collections.singletonMap("ids", ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()))),
+						(RowCallbackHandler) rs -> nextAceOrders.put(rs.getLong(1), rs.getInt(2) + 1));
+			}
+			return nextAceOrders;
+		}
+
+		/**
+		 * Retrieves the primary keys of the distinct sids of the ACEs with a query per {@link #BATCH_SIZE} sids. Only
+		 * missing sids are created one by one, in case this is allowed; otherwise they are mapped to {@code null}.
+		 */
+		private Map<Sid, Long> retrieveSidPrimaryKeys(List<AccessControlEntry> aces, boolean allowCreate) {
+			Set<Sid> sids = new LinkedHashSet<>();
+			for (AccessControlEntry ace : aces) {
+				sids.add(ace.getSid());
+			}
+			List<String> sidNames = new ArrayList<>();
+			for (Sid sid : sids) {
+				sidNames.add(getSidName(sid));
+			}
+
+			NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcOperations);
+			Map<Sid, Long> sidIds = new HashMap<>();
+			for (int from = 0; from < sidNames.size(); from += BATCH_SIZE) {
+				List<String> batch = sidNames.subList(from, Math.min(from + BATCH_SIZE, sidNames.size()));
+				namedJdbcTemplate.query(selectSidPrimaryKeys, Collections.singletonMap("sids", batch),
+						(RowCallbackHandler) rs -> sidIds.put(rs.getBoolean("principal")
+								? new PrincipalSid(rs.getString("sid"))
+								: new GrantedAuthoritySid(rs.getString("sid")), rs.getLong("id")));
+			}
+			for (Sid sid : sids) {
+				if (!sidIds.containsKey(sid)) {
+					sidIds.put(sid, allowCreate ? createOrRetrieveSidPrimaryKey(sid, true) : null);
+				}
+			}
+			return sidIds;
+		}
+
+		private static String getSidName(Sid sid) {
+			if (sid instanceof PrincipalSid) {
+				return ((PrincipalSid) sid).getPrincipal();
+			}
+			if (sid instanceof GrantedAuthoritySid) {
+				return ((GrantedAuthoritySid) sid).getGrantedAuthority();
+			}
+			throw new IllegalArgumentException("Unsupported implementation of Sid");
+		}
+
+		private static Serializable getAclId(AccessControlEntry ace) {
+			return ((MutableAcl) ace.getAcl()).getId();
+		}
+
+		private void evictCompiled(Acl acl) {
+			if (compiledPermissionGrantingStrategy != null) {
+				compiledPermissionGrantingStrategy.evict(acl);
+			}
+		}
+
+		private void evictFromCache(List<AccessControlEntry> aces) {
+			Set<ObjectIdentity> objectIdentities = new HashSet<>();
+			Set<Serializable> aclIds = new HashSet<>();
+			for (AccessControlEntry ace : aces) {
+				objectIdentities.add(ace.getAcl().getObjectIdentity());
+				aclIds.add(getAclId(ace));
+				evictCompiled(ace.getAcl());
+			}
+			objectIdentities.forEach(aclCache::evictFromCache);
+			if (!aclIds.isEmpty()) {
+				invalidationChannel.publish(aclIds);
+			}
+		}
+
+		private static class PersistedEntry {
+			private final long id;
+			private final int aceOrder;
+			private final Sid sid;
+			private final int mask;
+			private final boolean granting;
+			private final boolean auditSuccess;
+			private final boolean auditFailure;
+
+			private PersistedEntry(ResultSet rs) throws SQLException {
+				id = rs.getLong("id");
+				aceOrder = rs.getInt("ace_order");
+				sid = rs.getBoolean("principal") ? new PrincipalSid(rs.getString("sid"))
+						: new GrantedAuthoritySid(rs.getString("sid"));
+				mask = rs.getInt("mask");
+				granting = rs.getBoolean("granting");
+				auditSuccess = rs.getBoolean("audit_success");
+				auditFailure = rs.getBoolean("audit_failure");
+			}
+
+			private boolean matches(AuditableAccessControlEntry entry, int aceOrder) {
+				return this.aceOrder == aceOrder
+						&& mask == entry.getPermission().getMask()
+						&& granting == entry.isGranting()
+						&& auditSuccess == entry.isAuditSuccess()
+						&& auditFailure == entry.isAuditFailure();
+			}
 		}
 	}
 }
\ No newline at end of file
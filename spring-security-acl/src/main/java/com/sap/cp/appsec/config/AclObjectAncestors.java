@@ -0,0 +1,100 @@
+package com.sap.cp.appsec.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains the ACL_OBJECT_ANCESTOR closure table of the object hierarchy, which is defined by
+ * ACL_OBJECT_IDENTITY.parent_object. It holds a row for every object identity and each of its ancestors with their
+ * distance, including the object itself with depth 0. Hence the ancestors or descendants of an object are found with
+ * a single indexed query, regardless of the depth of the hierarchy, e.g. advertisement - bulletinboard - location.
+ * <p>
+ * {@link AclConfig.PostgresJdbcMutableAclService} updates the rows within the transaction that creates an object
+ * identity or changes its parent. The rows of deleted object identities are removed by the database (on delete
+ * cascade). Use {@link #rebuild()} for ACL data that was loaded bypassing the ACL service.
+ */
+public class AclObjectAncestors {
+	private static final String INSERT_SELF = "insert into acl_object_ancestor (descendant, ancestor, depth) "
+			+ "values (?, ?, 0)";
+	private static final String SELECT_ANCESTORS = "select ancestor from acl_object_ancestor "
+			+ "where descendant = ? and depth > 0";
+	private static final String SELECT_DESCENDANTS = "select descendant from acl_object_ancestor "
+			+ "where ancestor = ? and depth > 0";
+	// the subquery is not affected by the delete, as the ancestor of the deleted rows is never the moved object
+	private static final String DELETE_ANCESTOR_OF_SUBTREE = "delete from acl_object_ancestor where ancestor = ? "
+			+ "and descendant in (select descendant from acl_object_ancestor where ancestor = ?)";
+	private static final String INSERT_ANCESTORS_OF_SUBTREE = "insert into acl_object_ancestor "
+			+ "(descendant, ancestor, depth) "
+			+ "select subtree.descendant, parent.ancestor, subtree.depth + parent.depth + 1 "
+			+ "from acl_object_ancestor subtree, acl_object_ancestor parent "
+			+ "where subtree.ancestor = ? and parent.descendant = ?";
+	private static final String DELETE_ALL = "delete from acl_object_ancestor";
+	private static final String INSERT_ALL_SELF = "insert into acl_object_ancestor (descendant, ancestor, depth) "
+			+ "select id, id, 0 from acl_object_identity";
+	private static final String INSERT_NEXT_LEVEL = "insert into acl_object_ancestor (descendant, ancestor, depth) "
+			+ "select closure.descendant, obj.parent_object, closure.depth + 1 from acl_object_ancestor closure "
+			+ "inner join acl_object_identity obj on obj.id = closure.ancestor "
+			+ "where closure.depth = ? and obj.parent_object is not null";
+
+	private final JdbcOperations jdbcOperations;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public AclObjectAncestors(DataSource dataSource) {
+		this.jdbcOperations = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * Adds the row of a newly created object identity, which has no parent yet.
+	 */
+	public void insert(Long objectIdentityId) {
+		jdbcOperations.update(INSERT_SELF, objectIdentityId, objectIdentityId);
+	}
+
+	/**
+	 * Replaces the ancestors of the object identity and its whole subtree, after its parent was changed.
+	 *
+	 * @param parentId primary key of the new parent, or null in case the object identity has no parent anymore
+	 */
+	public void move(Long objectIdentityId, Long parentId) {
+		for (Long ancestorId : findAncestors(objectIdentityId)) {
+			jdbcOperations.update(DELETE_ANCESTOR_OF_SUBTREE, ancestorId, objectIdentityId);
+		}
+		if (parentId != null) {
+			jdbcOperations.update(INSERT_ANCESTORS_OF_SUBTREE, objectIdentityId, parentId);
+		}
+	}
+
+	/**
+	 * @return the primary keys of all ancestors of the object identity, without itself
+	 */
+	public List<Long> findAncestors(Long objectIdentityId) {
+		return new ArrayList<>(jdbcOperations.queryForList(SELECT_ANCESTORS, Long.class, objectIdentityId));
+	}
+
+	/**
+	 * @return the primary keys of all descendants of the object identity, without itself
+	 */
+	public List<Long> findDescendants(Long objectIdentityId) {
+		return new ArrayList<>(jdbcOperations.queryForList(SELECT_DESCENDANTS, Long.class, objectIdentityId));
+	}
+
+	/**
+	 * Recreates the whole table from ACL_OBJECT_IDENTITY, one level of the hierarchy per statement.
+	 */
+	public void rebuild() {
+		jdbcOperations.update(DELETE_ALL);
+		int rows = jdbcOperations.update(INSERT_ALL_SELF);
+		int depth = 0;
+		for (int inserted = rows; inserted > 0; depth++) {
+			inserted = jdbcOperations.update(INSERT_NEXT_LEVEL, depth);
+			rows += inserted;
+		}
+		logger.info("rebuilt acl object ancestors: {} rows for {} levels", rows, depth);
+	}
+}
@@ -0,0 +1,161 @@
+package com.sap.cp.appsec.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.acls.model.Acl;
+import org.springframework.security.acls.model.AclCache;
+import org.springframework.security.acls.model.MutableAcl;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.util.Assert;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link AclCache} based on Caffeine, bounded by the number of cached ACEs and with a time-to-live.
+ *
+ * The ACLs are cached by {@link ObjectIdentity}, the primary keys are only an index to them. That's why an ACL that
+ * gets evicted because of its size or age can't be found by its primary key anymore, too.
+ *
+ * Hit, miss, eviction and load statistics are exported as "cache.*" metrics with tag "cache=acl_cache".
+ */
+public class CaffeineAclCache implements AclCache, MeterBinder {
+	public static final String CACHE_NAME = "acl_cache";
+
+	private final StatsCounter statsCounter = new ConcurrentStatsCounter();
+	private final Map<Serializable, ObjectIdentity> objectIdentitiesById = new ConcurrentHashMap<>();
+	private final Cache<ObjectIdentity, MutableAcl> cache;
+
+	/**
+	 * @param maximumWeight maximum number of ACLs plus ACEs in the cache
+	 * @param timeToLive    duration after which an ACL is evicted, measured from its last update
+	 */
+	public CaffeineAclCache(long maximumWeight, long timeToLive, TimeUnit unit) {
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maximumWeight)
+				.weigher((ObjectIdentity objectIdentity, MutableAcl acl) -> 1 + acl.getEntries().size())
+				.expireAfterWrite(timeToLive, unit)
+				.executor(Runnable::run) // keeps the primary key index consistent
+				.removalListener((ObjectIdentity objectIdentity, MutableAcl acl, RemovalCause cause) -> {
+					if (acl != null && cause != RemovalCause.REPLACED) {
+						objectIdentitiesById.remove(acl.getId(), objectIdentity);
+					}
+				})
+				.recordStats(() -> statsCounter)
+				.build();
+	}
+
+	@Override
+	public void evictFromCache(Serializable pk) {
+		Assert.notNull(pk, "Primary key (identifier) required");
+
+		ObjectIdentity objectIdentity = objectIdentitiesById.remove(pk);
+		if (objectIdentity != null) {
+			cache.invalidate(objectIdentity);
+		}
+	}
+
+	@Override
+	public void evictFromCache(ObjectIdentity objectIdentity) {
+		Assert.notNull(objectIdentity, "ObjectIdentity required");
+
+		cache.invalidate(objectIdentity);
+	}
+
+	/**
+	 * Evicts the ACLs with the given primary keys and all cached ACLs that inherit from them, as a cached ACL refers
+	 * to the instances of its parents.
+	 */
+	public void evictFromCacheIncludingChildren(Collection<? extends Serializable> pks) {
+		Set<Serializable> evictedPks = new HashSet<>(pks);
+		for (MutableAcl acl : cache.asMap().values()) {
+			for (Acl parent = acl.getParentAcl(); parent != null; parent = parent.getParentAcl()) {
+				if (parent instanceof MutableAcl && pks.contains(((MutableAcl) parent).getId())) {
+					evictedPks.add(acl.getId());
+					break;
+				}
+			}
+		}
+		evictedPks.forEach(this::evictFromCache);
+	}
+
+	@Override
+	public MutableAcl getFromCache(ObjectIdentity objectIdentity) {
+		Assert.notNull(objectIdentity, "ObjectIdentity required");
+
+		return cache.getIfPresent(objectIdentity);
+	}
+
+	@Override
+	public MutableAcl getFromCache(Serializable pk) {
+		Assert.notNull(pk, "Primary key (identifier) required");
+
+		ObjectIdentity objectIdentity = objectIdentitiesById.get(pk);
+		if (objectIdentity == null) {
+			statsCounter.recordMisses(1);
+			return null;
+		}
+		return cache.getIfPresent(objectIdentity);
+	}
+
+	@Override
+	public void putInCache(MutableAcl acl) {
+		Assert.notNull(acl, "Acl required");
+		Assert.notNull(acl.getObjectIdentity(), "ObjectIdentity required");
+		Assert.notNull(acl.getId(), "ID required");
+
+		if ((acl.getParentAcl() != null) && (acl.getParentAcl() instanceof MutableAcl)) {
+			putInCache((MutableAcl) acl.getParentAcl());
+		}
+		cache.put(acl.getObjectIdentity(), acl);
+		objectIdentitiesById.put(acl.getId(), acl.getObjectIdentity());
+	}
+
+	@Override
+	public void clearCache() {
+		cache.invalidateAll();
+		objectIdentitiesById.clear();
+	}
+
+	/**
+	 * Unlike {@link #getFromCache(ObjectIdentity)} the check is not recorded as hit or miss.
+	 */
+	public boolean containsAll(Collection<ObjectIdentity> objectIdentities) {
+		return cache.asMap().keySet().containsAll(objectIdentities);
+	}
+
+	/**
+	 * Records the duration of the given lookup as load time, in case not all object identities are cached yet.
+	 */
+	public <T> T load(Collection<ObjectIdentity> objectIdentities, Supplier<T> lookup) {
+		if (containsAll(objectIdentities)) {
+			return lookup.get();
+		}
+		long start = System.nanoTime();
+		try {
+			T result = lookup.get();
+			statsCounter.recordLoadSuccess(System.nanoTime() - start);
+			return result;
+		} catch (RuntimeException e) {
+			statsCounter.recordLoadFailure(System.nanoTime() - start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+	}
+}
@@ -0,0 +1,78 @@
+package com.sap.cp.appsec.config;
+
+import org.springframework.security.acls.domain.AuditLogger;
+import org.springframework.security.acls.domain.DefaultPermissionGrantingStrategy;
+import org.springframework.security.acls.model.*;
+import org.springframework.util.Assert;
+
+import java.util.List;
+
+/**
+ * {@link PermissionGrantingStrategy} for ACLs that store a single ACE per sid with the combined mask of all its
+ * permissions, e.g. READ | WRITE | ADMINISTRATION instead of three ACEs.
+ *
+ * Same algorithm as {@link DefaultPermissionGrantingStrategy}, but an ACE applies to a requested permission in case
+ * its mask contains all bits of the permission, instead of being equal to it.
+ */
+public class CombinedMaskPermissionGrantingStrategy implements PermissionGrantingStrategy {
+	private final AuditLogger auditLogger;
+
+	public CombinedMaskPermissionGrantingStrategy(AuditLogger auditLogger) {
+		Assert.notNull(auditLogger, "auditLogger cannot be null");
+		this.auditLogger = auditLogger;
+	}
+
+	@Override
+	public boolean isGranted(Acl acl, List<Permission> permission, List<Sid> sids, boolean administrativeMode)
+			throws NotFoundException {
+		final List<AccessControlEntry> aces = acl.getEntries();
+		AccessControlEntry firstRejection = null;
+
+		for (Permission p : permission) {
+			for (Sid sid : sids) {
+				// Attempt to find exact match for this permission mask and SID
+				boolean scanNextSid = true;
+
+				for (AccessControlEntry ace : aces) {
+					if (containsMask(ace, p) && ace.getSid().equals(sid)) {
+						// Found a matching ACE, so its authorization decision will prevail
+						if (ace.isGranting()) {
+							if (!administrativeMode) {
+								auditLogger.logIfNeeded(true, ace);
+							}
+							return true;
+						}
+
+						// Failure for this permission, so stop search; we will try next permission if available
+						if (firstRejection == null) {
+							firstRejection = ace;
+						}
+						scanNextSid = false;
+						break;
+					}
+				}
+				if (!scanNextSid) {
+					break; // Exit SID for loop (now try next permission)
+				}
+			}
+		}
+
+		if (firstRejection != null) {
+			if (!administrativeMode) {
+				auditLogger.logIfNeeded(false, firstRejection);
+			}
+			return false;
+		}
+
+		// No matches have been found so far
+		if (acl.isEntriesInheriting() && (acl.getParentAcl() != null)) {
+			// We have a parent, so let them try to find a matching ACE
+			return acl.getParentAcl().isGranted(permission, sids, false);
+		}
+		throw new NotFoundException("Unable to locate a matching ACE for passed permissions and SIDs");
+	}
+
+	private static boolean containsMask(AccessControlEntry ace, Permission permission) {
+		return (ace.getPermission().getMask() & permission.getMask()) == permission.getMask();
+	}
+}
@@ -0,0 +1,141 @@
+package com.sap.cp.appsec.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.acls.domain.AuditLogger;
+import org.springframework.security.acls.domain.DefaultPermissionGrantingStrategy;
+import org.springframework.security.acls.model.*;
+import org.springframework.util.Assert;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link PermissionGrantingStrategy} that compiles the ACEs of an ACL once into a table from sid and permission bit
+ * to the first ACE that applies, instead of scanning all ACEs for every requested permission and sid. A check costs
+ * a lookup per permission and sid of the caller, regardless of the number of ACEs.
+ *
+ * Decides exactly like {@link DefaultPermissionGrantingStrategy}, or {@link CombinedMaskPermissionGrantingStrategy}
+ * for combined masks. In particular the parent ACL is asked only in case no ACE of the ACL applies to any requested
+ * permission and sid, which is why the tables of the parents are not merged into the one of the child. Permissions
+ * with no or more than one bit are evaluated by scanning the ACEs.
+ *
+ * An ACL is compiled when it is checked first. As long as the instance is modified afterwards, e.g. by
+ * {@link MutableAcl#insertAce}, {@link #evict(Acl)} must be called.
+ */
+public class CompiledPermissionGrantingStrategy implements PermissionGrantingStrategy {
+	private final AuditLogger auditLogger;
+	private final boolean combinedMasks;
+	private final Cache<Acl, CompiledAcl> compiledAcls = Caffeine.newBuilder().weakKeys().build(); // by identity
+
+	/**
+	 * @param combinedMasks true, in case an ACE applies to all permissions contained in its mask
+	 */
+	public CompiledPermissionGrantingStrategy(AuditLogger auditLogger, boolean combinedMasks) {
+		Assert.notNull(auditLogger, "auditLogger cannot be null");
+		this.auditLogger = auditLogger;
+		this.combinedMasks = combinedMasks;
+	}
+
+	@Override
+	public boolean isGranted(Acl acl, List<Permission> permission, List<Sid> sids, boolean administrativeMode)
+			throws NotFoundException {
+		CompiledAcl compiledAcl = compiledAcls.get(acl, this::compile);
+		AccessControlEntry firstRejection = null;
+
+		for (Permission p : permission) {
+			for (Sid sid : sids) {
+				AccessControlEntry ace = compiledAcl.getFirstEntry(p.getMask(), sid);
+				if (ace != null) {
+					// Found a matching ACE, so its authorization decision will prevail
+					if (ace.isGranting()) {
+						if (!administrativeMode) {
+							auditLogger.logIfNeeded(true, ace);
+						}
+						return true;
+					}
+
+					// Failure for this permission, so stop search; we will try next permission if available
+					if (firstRejection == null) {
+						firstRejection = ace;
+					}
+					break; // Exit SID for loop (now try next permission)
+				}
+			}
+		}
+
+		if (firstRejection != null) {
+			if (!administrativeMode) {
+				auditLogger.logIfNeeded(false, firstRejection);
+			}
+			return false;
+		}
+
+		// No matches have been found so far
+		if (acl.isEntriesInheriting() && (acl.getParentAcl() != null)) {
+			// We have a parent, so let them try to find a matching ACE
+			return acl.getParentAcl().isGranted(permission, sids, false);
+		}
+		throw new NotFoundException("Unable to locate a matching ACE for passed permissions and SIDs");
+	}
+
+	/**
+	 * Drops the compiled ACEs of the ACL instance, in case it was modified.
+	 */
+	public void evict(Acl acl) {
+		compiledAcls.invalidate(acl);
+	}
+
+	private CompiledAcl compile(Acl acl) {
+		List<AccessControlEntry> aces = acl.getEntries();
+		Map<Sid, AccessControlEntry[]> firstEntries = new HashMap<>();
+
+		for (AccessControlEntry ace : aces) {
+			int mask = ace.getPermission().getMask();
+			if (!combinedMasks && Integer.bitCount(mask) != 1) {
+				continue; // equals no single bit permission
+			}
+			AccessControlEntry[] entriesByBit = firstEntries.computeIfAbsent(ace.getSid(),
+					sid -> new AccessControlEntry[Integer.SIZE]);
+			for (int bits = mask; bits != 0; bits &= bits - 1) {
+				int bit = Integer.numberOfTrailingZeros(bits);
+				if (entriesByBit[bit] == null) {
+					entriesByBit[bit] = ace;
+				}
+			}
+		}
+		return new CompiledAcl(aces, firstEntries);
+	}
+
+	private boolean applies(AccessControlEntry ace, int mask) {
+		int aceMask = ace.getPermission().getMask();
+		return combinedMasks ? (aceMask & mask) == mask : aceMask == mask;
+	}
+
+	private final class CompiledAcl {
+		private final List<AccessControlEntry> aces;
+		private final Map<Sid, AccessControlEntry[]> firstEntries;
+
+		CompiledAcl(List<AccessControlEntry> aces, Map<Sid, AccessControlEntry[]> firstEntries) {
+			this.aces = aces;
+			this.firstEntries = firstEntries;
+		}
+
+		/**
+		 * @return the first ACE of the sid that applies to the permission mask, or null
+		 */
+		AccessControlEntry getFirstEntry(int mask, Sid sid) {
+			if (Integer.bitCount(mask) == 1) {
+				AccessControlEntry[] entriesByBit = firstEntries.get(sid);
+				return entriesByBit == null ? null : entriesByBit[Integer.numberOfTrailingZeros(mask)];
+			}
+			for (AccessControlEntry ace : aces) {
+				if (applies(ace, mask) && ace.getSid().equals(sid)) {
+					return ace;
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.sap.cp.appsec.config;
+
+import org.springframework.security.acls.domain.AclAuthorizationStrategy;
+import org.springframework.security.acls.jdbc.BasicLookupStrategy;
+import org.springframework.security.acls.model.AclCache;
+import org.springframework.security.acls.model.PermissionGrantingStrategy;
+
+import javax.sql.DataSource;
+
+/**
+ * {@link BasicLookupStrategy} that loads the requested object identities together with all their ancestors and
+ * their ACEs with a single query, by joining the closure table maintained by {@link AclObjectAncestors}. The basic
+ * strategy issues another query per level of the hierarchy for the parents that are not cached, e.g. for the
+ * bulletinboard and then for the location of an advertisement.
+ * <p>
+ * The rows are ordered from the topmost ancestor down, hence every parent is read before its children and no
+ * further query is required. All loaded ACLs, i.e. those of every level, are put into the {@link AclCache}.
+ * <p>
+ * Object identities without rows in ACL_OBJECT_ANCESTOR are not found, see {@link AclObjectAncestors#rebuild()}.
+ */
+public class HierarchyLookupStrategy extends BasicLookupStrategy {
+	// same columns as BasicLookupStrategy.DEFAULT_ACL_CLASS_ID_SELECT_CLAUSE, as setAclClassIdSupported(true) can't
+	// be combined with a custom select clause: the identifiers are converted as long as class_id_type is selected
+	private static final String SELECT_CLAUSE = "select acl_object_identity.object_id_identity, "
+			+ "acl_entry.ace_order, acl_object_identity.id as acl_id, acl_object_identity.parent_object, "
+			+ "acl_object_identity.entries_inheriting, acl_entry.id as ace_id, acl_entry.mask, acl_entry.granting, "
+			+ "acl_entry.audit_success, acl_entry.audit_failure, acl_sid.principal as ace_principal, "
+			+ "acl_sid.sid as ace_sid, acli_sid.principal as acl_principal, acli_sid.sid as acl_sid, "
+			+ "acl_class.class, acl_class.class_id_type "
+			+ "from acl_object_identity descendant "
+			+ "inner join acl_class descendant_class on descendant_class.id = descendant.object_id_class "
+			+ "inner join acl_object_ancestor closure on closure.descendant = descendant.id "
+			+ "inner join acl_object_identity on acl_object_identity.id = closure.ancestor "
+			+ "left join acl_sid acli_sid on acli_sid.id = acl_object_identity.owner_sid "
+			+ "left join acl_class on acl_class.id = acl_object_identity.object_id_class "
+			+ "left join acl_entry on acl_object_identity.id = acl_entry.acl_object_identity "
+			+ "left join acl_sid on acl_entry.sid = acl_sid.id "
+			+ "where ( ";
+	private static final String LOOKUP_KEYS_WHERE_CLAUSE = "(descendant.id = ?)";
+	private static final String LOOKUP_IDENTITIES_WHERE_CLAUSE =
+			"(descendant.object_id_identity = ? and descendant_class.class = ?)";
+	// parents first, as BasicLookupStrategy looks up parents that are not read yet with another query
+	private static final String ORDER_BY_CLAUSE = ") order by closure.depth desc, acl_object_identity.id asc, "
+			+ "acl_entry.ace_order asc";
+
+	public HierarchyLookupStrategy(DataSource dataSource, AclCache aclCache,
+			AclAuthorizationStrategy aclAuthorizationStrategy, PermissionGrantingStrategy grantingStrategy) {
+		super(dataSource, aclCache, aclAuthorizationStrategy, grantingStrategy);
+		setSelectClause(SELECT_CLAUSE);
+		setLookupPrimaryKeysWhereClause(LOOKUP_KEYS_WHERE_CLAUSE);
+		setLookupObjectIdentitiesWhereClause(LOOKUP_IDENTITIES_WHERE_CLAUSE);
+		setOrderByClause(ORDER_BY_CLAUSE);
+	}
+}
@@ -0,0 +1,34 @@
+package com.sap.cp.appsec.config;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts the audit events into the ACL_AUDIT_EVENT table with a JDBC batch per batch of events.
+ */
+public class JdbcAclAuditSink implements AclAuditSink {
+	private static final String INSERT = "insert into acl_audit_event "
+			+ "(created_at, type, object_class, object_identity, sid, principal, mask, granting) "
+			+ "values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public JdbcAclAuditSink(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@Override
+	public void write(List<AclAuditEvent> events) {
+		List<Object[]> rows = new ArrayList<>();
+		for (AclAuditEvent event : events) {
+			rows.add(new Object[]{Timestamp.from(event.getTimestamp()), event.getType().name(),
+					event.getObjectClass(), event.getObjectIdentity(), event.getSid(), event.isPrincipal(),
+					event.getMask(), event.isGranting()});
+		}
+		jdbcTemplate.batchUpdate(INSERT, rows);
+	}
+}
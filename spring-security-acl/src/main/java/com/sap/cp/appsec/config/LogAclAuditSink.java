@@ -0,0 +1,25 @@
+package com.sap.cp.appsec.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Writes the audit events to the logger "acl.audit", which can be routed to a separate log file with the logging
+ * configuration. Denied access is logged as warning.
+ */
+public class LogAclAuditSink implements AclAuditSink {
+	private final Logger logger = LoggerFactory.getLogger("acl.audit");
+
+	@Override
+	public void write(List<AclAuditEvent> events) {
+		for (AclAuditEvent event : events) {
+			if (event.getType() == AclAuditEvent.Type.DENIED) {
+				logger.warn("{} {}", event.getTimestamp(), event);
+			} else {
+				logger.info("{} {}", event.getTimestamp(), event);
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package com.sap.cp.appsec.config;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Invalidation channel based on PostgreSQL LISTEN / NOTIFY. Notifications are delivered by PostgreSQL when the
+ * transaction commits, and are dropped if it is rolled back.
+ *
+ * Every instance keeps one database connection to listen for notifications. It is opened with the given listener data
+ * source, which should not be pooled, so that the connection is not taken from the application's pool for the
+ * lifetime of the instance. In case this connection breaks, notifications might be lost, that's why the local cache is
+ * cleared after reconnecting. Every eviction is announced as {@link AclCacheInvalidatedEvent}.
+ */
+public class NotifyAclCacheInvalidationChannel implements AclCacheInvalidationChannel, ApplicationEventPublisherAware {
+	static final String CHANNEL = "acl_cache_invalidation";
+	private static final int MAX_PAYLOAD_LENGTH = 7000; // PostgreSQL limits the payload to 8000 bytes
+	private static final int RECEIVE_TIMEOUT_MILLIS = 1000;
+	private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+	private final DataSource listenerDataSource;
+	private final JdbcTemplate jdbcTemplate;
+	private final CaffeineAclCache aclCache;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private ApplicationEventPublisher eventPublisher;
+	private volatile boolean running;
+	private Thread listener;
+
+	/**
+	 * @param dataSource         used to notify, within the transaction of the change
+	 * @param listenerDataSource used to open the connection that listens, e.g. a {@link DriverManagerDataSource}
+	 */
+	public NotifyAclCacheInvalidationChannel(DataSource dataSource, DataSource listenerDataSource,
+			CaffeineAclCache aclCache) {
+		this.listenerDataSource = listenerDataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.aclCache = aclCache;
+	}
+
+	@Override
+	public void publish(Collection<? extends Serializable> aclIds) {
+		for (String payload : toPayloads(aclIds)) {
+			jdbcTemplate.queryForList("select pg_notify(?, ?)", CHANNEL, payload);
+		}
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	public void start() {
+		running = true;
+		listener = new Thread(this::listen, "acl-cache-invalidation-listener");
+		listener.setDaemon(true);
+		listener.start();
+	}
+
+	public void stop() throws InterruptedException {
+		running = false;
+		if (listener != null) {
+			listener.interrupt();
+			listener.join(RECEIVE_TIMEOUT_MILLIS * 2L);
+		}
+	}
+
+	private void listen() {
+		boolean reconnect = false;
+		while (running) {
+			try (Connection connection = listenerDataSource.getConnection()) {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("LISTEN " + CHANNEL);
+				}
+				if (reconnect) {
+					aclCache.clearCache();
+					publishInvalidated(null);
+				}
+				logger.info("listening for ACL cache invalidations");
+				receive(connection.unwrap(PGConnection.class));
+			} catch (SQLException e) {
+				logger.warn("ACL cache invalidation listener failed, reconnecting", e);
+				reconnect = true;
+				sleep(RECONNECT_DELAY_MILLIS);
+			}
+		}
+	}
+
+	private void receive(PGConnection connection) throws SQLException {
+		while (running) {
+			PGNotification[] notifications = connection.getNotifications(RECEIVE_TIMEOUT_MILLIS);
+			if (notifications == null) {
+				continue;
+			}
+			List<Long> aclIds = new ArrayList<>();
+			for (PGNotification notification : notifications) {
+				for (String aclId : notification.getParameter().split(",")) {
+					aclIds.add(Long.valueOf(aclId));
+				}
+			}
+			aclCache.evictFromCacheIncludingChildren(aclIds);
+			publishInvalidated(aclIds);
+		}
+	}
+
+	private void publishInvalidated(List<Long> aclIds) {
+		if (eventPublisher != null) {
+			eventPublisher.publishEvent(new AclCacheInvalidatedEvent(this, aclIds));
+		}
+	}
+
+	static List<String> toPayloads(Collection<? extends Serializable> aclIds) {
+		List<String> payloads = new ArrayList<>();
+		StringBuilder payload = new StringBuilder();
+		for (Serializable aclId : aclIds) {
+			if (payload.length() > MAX_PAYLOAD_LENGTH) {
+				payloads.add(payload.toString());
+				payload.setLength(0);
+			}
+			if (payload.length() > 0) {
+				payload.append(',');
+			}
+			payload.append(aclId);
+		}
+		if (payload.length() > 0) {
+			payloads.add(payload.toString());
+		}
+		return payloads;
+	}
+
+	private void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			running = false;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.sap.cp.appsec.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalidation channel based on the ACL_CACHE_INVALIDATION table, which works with any database. The primary keys of
+ * changed ACLs are inserted within the transaction of the change, and every instance polls for new rows.
+ *
+ * A row is stamped with the start time of its transaction, but becomes visible with the commit only. That's why every
+ * poll considers the rows of the {@code lookback} before the last poll as well, which has to exceed the duration of
+ * the transactions that change ACLs. Rows that are older than an hour are deleted. Every eviction is announced as
+ * {@link AclCacheInvalidatedEvent}.
+ */
+public class PollingAclCacheInvalidationChannel implements AclCacheInvalidationChannel,
+		ApplicationEventPublisherAware {
+	private static final String INSERT = "insert into acl_cache_invalidation (acl_id, created_at) values (?, current_timestamp)";
+	private static final String SELECT_NOW = "select current_timestamp";
+	private static final String SELECT_SINCE = "select acl_id from acl_cache_invalidation where created_at >= ?";
+	private static final String DELETE_BEFORE = "delete from acl_cache_invalidation where created_at < ?";
+	private static final long RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private final JdbcTemplate jdbcTemplate;
+	private final CaffeineAclCache aclCache;
+	private final long intervalMillis;
+	private final long lookbackMillis;
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private ApplicationEventPublisher eventPublisher;
+	private ScheduledExecutorService executor;
+	private Timestamp lastPoll;
+
+	public PollingAclCacheInvalidationChannel(DataSource dataSource, CaffeineAclCache aclCache, long intervalMillis,
+			long lookbackMillis) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.aclCache = aclCache;
+		this.intervalMillis = intervalMillis;
+		this.lookbackMillis = lookbackMillis;
+	}
+
+	@Override
+	public void publish(Collection<? extends Serializable> aclIds) {
+		List<Object[]> rows = new ArrayList<>();
+		for (Serializable aclId : aclIds) {
+			rows.add(new Object[]{aclId});
+		}
+		jdbcTemplate.batchUpdate(INSERT, rows);
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	public void start() {
+		lastPoll = now();
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "acl-cache-invalidation-poller");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::pollSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Evicts the ACLs changed since the last poll (minus lookback) from the local cache.
+	 */
+	void poll() {
+		Timestamp now = now();
+		Timestamp since = new Timestamp(lastPoll.getTime() - lookbackMillis);
+		List<Long> aclIds = jdbcTemplate.queryForList(SELECT_SINCE, Long.class, since);
+		if (!aclIds.isEmpty()) {
+			aclCache.evictFromCacheIncludingChildren(aclIds);
+			if (eventPublisher != null) {
+				eventPublisher.publishEvent(new AclCacheInvalidatedEvent(this, aclIds));
+			}
+		}
+		if (now.getTime() / RETENTION_MILLIS != lastPoll.getTime() / RETENTION_MILLIS) {
+			jdbcTemplate.update(DELETE_BEFORE, new Timestamp(now.getTime() - RETENTION_MILLIS));
+		}
+		lastPoll = now;
+	}
+
+	private void pollSafely() {
+		try {
+			poll();
+		} catch (RuntimeException e) { // keep polling
+			logger.warn("polling for ACL cache invalidations failed", e);
+		}
+	}
+
+	private Timestamp now() {
+		return jdbcTemplate.queryForObject(SELECT_NOW, Timestamp.class);
+	}
+}
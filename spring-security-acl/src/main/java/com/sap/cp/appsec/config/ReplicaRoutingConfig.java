@@ -0,0 +1,65 @@
+package com.sap.cp.appsec.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes reads to the read replicas given by {@code datasource.replicas.urls}, see {@link ReplicaRoutingDataSource}.
+ * The primary connection pool is created from the {@code spring.datasource} properties, the replica pools share its
+ * credentials. All pools publish the "hikaricp.*" metrics, tagged with their pool name.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replicas.urls")
+public class ReplicaRoutingConfig {
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		dataSource.setPoolName("primary");
+		return dataSource;
+	}
+
+	@Bean
+	public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+			DataSourceProperties properties, MeterRegistry meterRegistry,
+			@Value("${datasource.replicas.urls}") String[] urls,
+			@Value("${datasource.replicas.sticky-millis:5000}") long stickyMillis) {
+		List<DataSource> replicas = new ArrayList<>();
+		for (String url : urls) {
+			HikariDataSource replica = properties.initializeDataSourceBuilder()
+					.type(HikariDataSource.class)
+					.url(url.trim())
+					.build();
+			replica.setPoolName("replica-" + replicas.size());
+			replica.setReadOnly(true);
+			replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+			replicas.add(replica);
+		}
+		return new ReplicaRoutingDataSource(primaryDataSource, replicas, Duration.ofMillis(stickyMillis));
+	}
+
+	/**
+	 * Used by JPA, Liquibase and the ACL service. The connection is fetched - and hence routed - not before the first
+	 * statement, i.e. after the read-only flag of the transaction is set.
+	 */
+	@Bean
+	@Primary
+	public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+	}
+}
@@ -0,0 +1,116 @@
+package com.sap.cp.appsec.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes connections either to the primary database or - round robin - to one of its read replicas:
+ * <ul>
+ * <li>read-only transactions, e.g. of the queries of {@link com.sap.cp.appsec.domain.AdvertisementAclRepository},
+ * are sent to a replica</li>
+ * <li>read-write transactions and any other statement are sent to the primary</li>
+ * <li>after the commit of a read-write transaction, the reads of the same user stick to the primary for the given
+ * window, so that the user reads their own writes although the replicas lag behind</li>
+ * </ul>
+ * The routing is decided when the connection is fetched, which must be deferred with a
+ * {@link LazyConnectionDataSourceProxy} until the transaction is initialized.
+ * <p>
+ * Reads whose results are shared with other users, e.g. the cached ACLs, must not be read from a replica, as they
+ * would keep a stale state beyond the sticky window. Those use {@link #getPrimary()} directly.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+	private static final String PRIMARY = "primary";
+
+	private final DataSource primary;
+	private final List<DataSource> replicas;
+	private final List<String> replicaKeys = new ArrayList<>();
+	private final AtomicInteger nextReplica = new AtomicInteger();
+	private final Cache<String, Boolean> stickyUsers;
+
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration stickyWindow) {
+		this.primary = primary;
+		this.replicas = replicas;
+		Map<Object, Object> targetDataSources = new HashMap<>();
+		targetDataSources.put(PRIMARY, primary);
+		for (int replica = 0; replica < replicas.size(); replica++) {
+			replicaKeys.add("replica-" + replica);
+			targetDataSources.put(replicaKeys.get(replica), replicas.get(replica));
+		}
+		setTargetDataSources(targetDataSources);
+		setDefaultTargetDataSource(primary);
+		this.stickyUsers = Caffeine.newBuilder()
+				.expireAfterWrite(stickyWindow.toMillis(), TimeUnit.MILLISECONDS)
+				.maximumSize(100_000)
+				.build();
+	}
+
+	/**
+	 * @return the primary database, not routed and not bound to the current transaction
+	 */
+	public DataSource getPrimary() {
+		return primary;
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			stickToPrimaryAfterCommit();
+			return PRIMARY;
+		}
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || replicaKeys.isEmpty() || isSticky()) {
+			return PRIMARY;
+		}
+		return replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size()));
+	}
+
+	/**
+	 * Closes the connection pools of the replicas.
+	 */
+	@Override
+	public void close() {
+		for (DataSource replica : replicas) {
+			if (replica instanceof HikariDataSource) {
+				((HikariDataSource) replica).close();
+			}
+		}
+	}
+
+	private void stickToPrimaryAfterCommit() {
+		String user = getCurrentUser();
+		if (user != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					stickyUsers.put(user, Boolean.TRUE);
+				}
+			});
+		}
+	}
+
+	private boolean isSticky() {
+		String user = getCurrentUser();
+		return user != null && stickyUsers.getIfPresent(user) != null;
+	}
+
+	private static String getCurrentUser() {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		return authentication == null ? null : authentication.getName();
+	}
+}
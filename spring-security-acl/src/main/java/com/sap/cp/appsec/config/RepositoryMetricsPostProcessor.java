@@ -0,0 +1,75 @@
+package com.sap.cp.appsec.config;
+
+import com.sap.cp.appsec.domain.AdvertisementAclRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every method of the {@link AdvertisementAclRepository} as "acl.repository.query", tagged with the method and
+ * the number of sids of the caller. The number is bucketed to keep the cardinality low.
+ */
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+    public static final String METRIC_NAME = "acl.repository.query";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    /**
+     * @param meterRegistry is looked up lazily, as a post processor must not initialize other beans early
+     */
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof AdvertisementAclRepository && bean instanceof Advised) {
+            ((Advised) bean).addAdvice(0, (MethodInterceptor) this::invokeTimed);
+        }
+        return bean;
+    }
+
+    private Object invokeTimed(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            Timer.builder(METRIC_NAME)
+                    .tag("method", invocation.getMethod().getName())
+                    .tag("sids", getSidsBucket(invocation.getArguments()))
+                    .register(meterRegistry.getObject())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String getSidsBucket(Object[] arguments) {
+        for (Object argument : arguments) {
+            if (argument instanceof String[]) {
+                return getSidsBucket(((String[]) argument).length);
+            }
+        }
+        return "none";
+    }
+
+    static String getSidsBucket(int sids) {
+        if (sids <= 1) {
+            return "1";
+        }
+        if (sids <= 5) {
+            return "2-5";
+        }
+        if (sids <= 20) {
+            return "6-20";
+        }
+        if (sids <= 100) {
+            return "21-100";
+        }
+        return ">100";
+    }
+}
@@ -0,0 +1,38 @@
+package com.sap.cp.appsec.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.acls.jdbc.LookupStrategy;
+import org.springframework.security.acls.model.Acl;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.security.acls.model.Sid;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Times the ACL lookups as "acl.lookup", tagged with "cache=hit" in case all ACLs are served from the cache, and
+ * records the number of requested object identities per lookup as "acl.lookup.batch.size".
+ */
+public class TimedLookupStrategy implements LookupStrategy {
+	private final LookupStrategy delegate;
+	private final CaffeineAclCache aclCache;
+	private final MeterRegistry registry;
+	private final DistributionSummary batchSizes;
+
+	public TimedLookupStrategy(LookupStrategy delegate, CaffeineAclCache aclCache, MeterRegistry registry) {
+		this.delegate = delegate;
+		this.aclCache = aclCache;
+		this.registry = registry;
+		this.batchSizes = DistributionSummary.builder("acl.lookup.batch.size")
+				.baseUnit("objects")
+				.register(registry);
+	}
+
+	@Override
+	public Map<ObjectIdentity, Acl> readAclsById(List<ObjectIdentity> objects, List<Sid> sids) {
+		batchSizes.record(objects.size());
+		String cache = aclCache.containsAll(objects) ? "hit" : "miss";
+		return registry.timer("acl.lookup", "cache", cache).record(() -> delegate.readAclsById(objects, sids));
+	}
+}
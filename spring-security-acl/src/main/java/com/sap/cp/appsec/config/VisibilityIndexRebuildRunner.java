@@ -0,0 +1,30 @@
+package com.sap.cp.appsec.config;
+
+import com.sap.cp.appsec.security.AdvertisementVisibilityIndex;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the ACL_ADVERTISEMENT_VISIBILITY and ACL_OBJECT_ANCESTOR tables on startup, in case the application is
+ * started with the {@code --rebuild-acl-visibility} command line option. Existing ACL data is filled in by the
+ * Liquibase changelog, so this is required only whenever ACL data was modified bypassing
+ * {@link com.sap.cp.appsec.security.AclSupport}, e.g. via SQL scripts.
+ */
+@Component
+public class VisibilityIndexRebuildRunner implements ApplicationRunner {
+	static final String REBUILD_OPTION = "rebuild-acl-visibility";
+
+	private final AdvertisementVisibilityIndex visibilityIndex;
+
+	public VisibilityIndexRebuildRunner(AdvertisementVisibilityIndex visibilityIndex) {
+		this.visibilityIndex = visibilityIndex;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (args.containsOption(REBUILD_OPTION)) {
+			visibilityIndex.rebuild();
+		}
+	}
+}
@@ -4,15 +4,19 @@ import com.sap.cloud.security.xsuaa.XsuaaServiceConfiguration;
 import com.sap.cloud.security.xsuaa.token.TokenAuthenticationConverter;
 import com.sap.cp.appsec.domain.AclAttribute;
 import com.sap.cp.appsec.security.CustomTokenAuthorizationsExtractor;
+import com.sap.cp.appsec.security.SidAuthenticationToken;
+import com.sap.cp.appsec.security.VerifiedTokenCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
-import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 
 @Configuration
 @EnableWebSecurity
@@ -21,6 +25,12 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 	@Autowired
 	private XsuaaServiceConfiguration xsuaaServiceConfiguration;
 
+	@Autowired
+	private JwtDecoder jwtDecoder;
+
+	@Value("${security.token-cache.maximum-size:10000}")
+	private long tokenCacheMaximumSize;
+
 	// configure Spring Security, demand authentication and specific scopes
 	@Override
 	public void configure(HttpSecurity http) throws Exception {
@@ -43,14 +53,24 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 			.and()
 				.oauth2ResourceServer()
 				.jwt()
-				.jwtAuthenticationConverter(getJwtAuthoritiesConverter()); // customizes how GrantedAuthority s are derived from a Jwt
+				.decoder(verifiedTokenCache().decoder(jwtDecoder)) // validates tokens that are not cached yet
+				.jwtAuthenticationConverter(verifiedTokenCache().converter(getJwtAuthoritiesConverter())); // customizes how GrantedAuthority s are derived from a Jwt
 		// @formatter:on
 	}
 
 	/**
-	 * Customizes how GrantedAuthority are derived from a Jwt
+	 * Caches the authentication per token, so that repeated requests with the same token skip the validation
+	 */
+	@Bean
+	public VerifiedTokenCache verifiedTokenCache() {
+		return new VerifiedTokenCache(tokenCacheMaximumSize);
+	}
+
+	/**
+	 * Customizes how GrantedAuthority are derived from a Jwt, and computes the sids of the user once per request
 	 */
-	Converter<Jwt, AbstractAuthenticationToken> getJwtAuthoritiesConverter() {
-		return new TokenAuthenticationConverter(new CustomTokenAuthorizationsExtractor(xsuaaServiceConfiguration.getAppId(), AclAttribute.values()));
+	Converter<Jwt, SidAuthenticationToken> getJwtAuthoritiesConverter() {
+		TokenAuthenticationConverter converter = new TokenAuthenticationConverter(new CustomTokenAuthorizationsExtractor(xsuaaServiceConfiguration.getAppId(), AclAttribute.values()));
+		return jwt -> new SidAuthenticationToken(converter.convert(jwt));
 	}
 }
\ No newline at end of file
@@ -1,28 +1,46 @@
 package com.sap.cp.appsec.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.sap.cloud.security.xsuaa.token.Token;
 import com.sap.cp.appsec.domain.Advertisement;
 import com.sap.cp.appsec.dto.*;
 import com.sap.cp.appsec.exceptions.BadRequestException;
+import com.sap.cp.appsec.security.PermissionAssignment;
 import com.sap.cp.appsec.services.AdvertisementService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 import static org.springframework.http.HttpStatus.NO_CONTENT;
 
@@ -32,17 +50,30 @@ import static org.springframework.http.HttpStatus.NO_CONTENT;
 public class AdvertisementAclController {
     static final String PATH = "/api/v1/ads/acl";
     private final AdvertisementService service;
+    private final AdvertisementPageCache pageCache;
+    private final ObjectWriter exportWriter;
+    private final long exportTimeoutMillis;
 
     private static final String PATH_PAGES = PATH + "/my/pages/";
+    static final String PATH_MY_CURSOR = PATH + "/my?after=";
+    static final String PATH_PUBLISHED_CURSOR = PATH + "/published?after=";
     public static final int FIRST_PAGE_ID = 0;
     public static final int DEFAULT_PAGE_SIZE = 20; // allows server side optimization e.g. via caching
+    private static final CacheControl COUNT_CACHE_CONTROL = CacheControl.maxAge(60, TimeUnit.SECONDS).cachePrivate();
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
 
     @Autowired
-    public AdvertisementAclController(AdvertisementService adsService) {
+    public AdvertisementAclController(AdvertisementService adsService, AdvertisementPageCache pageCache,
+                                      ObjectMapper objectMapper,
+                                      @Value("${acl.export.timeout-millis:600000}") long exportTimeoutMillis) {
         this.service = adsService;
+        this.pageCache = pageCache;
+        this.exportWriter = objectMapper.writerFor(AdvertisementDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.exportTimeoutMillis = exportTimeoutMillis;
     }
 
     @PostMapping
@@ -79,28 +110,83 @@ public class AdvertisementAclController {
         throwIfInconsistent(id, updatedAdvertisement.getId());
 
         Advertisement updatedAds = service.update(updatedAdvertisement.toEntity());
+        pageCache.evictAdvertisements(Collections.singletonList(id));
         logger.trace("updated ad with version {}", updatedAdvertisement.metadata.version);
         return new AdvertisementDto(updatedAds);
     }
 
+    /**
+     * Responds with 304 (Not Modified) in case the entity tag given with {@code If-None-Match} is still valid. The
+     * tag is validated with the version only, but the read permission is checked nevertheless.
+     */
     @GetMapping("/{id}")
-    public AdvertisementDto read(@PathVariable("id") @Min(0) Long id) {
-        AdvertisementDto advertisement = new AdvertisementDto(service.findById(id));
+    public ResponseEntity<AdvertisementDto> read(@PathVariable("id") @Min(0) Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(EntityTagBuilder.createETag(id, service.findVersionById(id)))) {
+            return null; // status and ETag header are set already
+        }
+        Advertisement ads = service.findById(id);
+        AdvertisementDto advertisement = new AdvertisementDto(ads);
         logger.trace("returning: {}", advertisement);
-        return advertisement;
+        return ResponseEntity.ok().eTag(EntityTagBuilder.createETag(ads)).body(advertisement);
     }
 
     /**
      * Read all my advertisements, I'm directly authorized to as owner, delegate, admin.
+     * With the {@code after} parameter (may be empty for the first page) the advertisements are read in keyset
+     * pagination mode, i.e. the "next" link contains an opaque cursor instead of a page number.
      */
     @GetMapping("/my")
-    public ResponseEntity<AdvertisementListDto> readAll() {
-        return readMyAdvertisementsPage(FIRST_PAGE_ID, DEFAULT_PAGE_SIZE);
+    public ResponseEntity<byte[]> readAll(@RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "count", defaultValue = "true") boolean count) {
+        if (after != null) {
+            return pageCache.get("my", "after=" + after, () -> {
+                Slice<Advertisement> slice = service.findAllAfter(PageCursor.decode(after), DEFAULT_PAGE_SIZE);
+                return new ResponseEntity<>(new AdvertisementListDto(slice.getContent()),
+                        PageHeaderBuilder.createCursorLinkHeader(slice, PATH_MY_CURSOR), HttpStatus.OK);
+            });
+        }
+        return readMyAdvertisementsPage(FIRST_PAGE_ID, DEFAULT_PAGE_SIZE, count);
     }
 
+    /**
+     * Reads a page of my advertisements. With {@code count=false} the total number of advertisements is not
+     * determined, which saves a query per page. Use {@link #countAll()} instead.
+     */
     @GetMapping("/my/pages/{pageId}")
-    public ResponseEntity<AdvertisementListDto> readPage(@PathVariable("pageId") int pageId) {
-        return readMyAdvertisementsPage(pageId, DEFAULT_PAGE_SIZE);
+    public ResponseEntity<byte[]> readPage(@PathVariable("pageId") int pageId,
+            @RequestParam(value = "count", defaultValue = "true") boolean count) {
+        return readMyAdvertisementsPage(pageId, DEFAULT_PAGE_SIZE, count);
+    }
+
+    /**
+     * Exports all my advertisements as newline delimited JSON, ordered by id descending. The advertisements are read
+     * with a single query and written while they are fetched, i.e. neither pages nor lists are built. The response
+     * is compressed in case the client accepts gzip.
+     * <p>
+     * The response is written asynchronously, with the timeout {@code acl.export.timeout-millis} instead of the one of
+     * all other asynchronous requests.
+     */
+    @GetMapping(value = "/my/export", produces = APPLICATION_NDJSON_VALUE)
+    public WebAsyncTask<Void> exportAll(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return new WebAsyncTask<>(exportTimeoutMillis, () -> {
+            OutputStream outputStream = response.getOutputStream();
+            writeNdjson(gzip ? new GZIPOutputStream(outputStream) : outputStream);
+            return null;
+        });
+    }
+
+    @GetMapping("/my/count")
+    public ResponseEntity<CountDto> countAll() {
+        return ResponseEntity.ok().cacheControl(COUNT_CACHE_CONTROL).body(new CountDto(service.countAll()));
     }
 
     @PutMapping("/grantPermissionsToUser/{id}")
@@ -113,6 +199,19 @@ public class AdvertisementAclController {
         service.removePermissions(id, userPermission.name, userPermission.getPermissions());
     }
 
+    /**
+     * Grants permissions to many users for many advertisements with a single request.
+     */
+    @PutMapping("/grantPermissionsToUsers")
+    public void grantPermissionsToUsers(@RequestBody @Valid BulkPermissionDto bulkPermission) {
+        service.grantPermissions(toPermissionAssignments(bulkPermission));
+    }
+
+    @PutMapping("/removePermissionsFromUsers")
+    public void removePermissionsFromUsers(@RequestBody @Valid BulkPermissionDto bulkPermission) {
+        service.removePermissions(toPermissionAssignments(bulkPermission));
+    }
+
     @PutMapping("/grantPermissionsToUserGroup/{id}")
     public void grantPermissionsToUserGroup(@PathVariable("id") @Min(0) Long id, @RequestBody PermissionDto groupPermission) {
         service.grantPermissionsToUserGroup(id, groupPermission.name, groupPermission.getPermissions());
@@ -131,10 +230,26 @@ public class AdvertisementAclController {
     /**
      * Read all published advertisements, I have directly (owner, delegate)
      * and indirectly read access rights to (attribute: location, board,...).
+     * Supports keyset pagination with the {@code after} parameter and {@code count=false}, see
+     * {@link #readAll(String, boolean)}.
      */
     @GetMapping("/published")
-    public ResponseEntity<AdvertisementListDto> readAllPublished() {
-        return readPublishedAdvertisementsPage(FIRST_PAGE_ID, DEFAULT_PAGE_SIZE);
+    public ResponseEntity<byte[]> readAllPublished(
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "count", defaultValue = "true") boolean count) {
+        if (after != null) {
+            return pageCache.getPublished("after=" + after, () -> {
+                Slice<Advertisement> slice = service.findAllPublishedAfter(PageCursor.decode(after), DEFAULT_PAGE_SIZE);
+                return new ResponseEntity<>(new AdvertisementListDto(slice.getContent()),
+                        PageHeaderBuilder.createCursorLinkHeader(slice, PATH_PUBLISHED_CURSOR), HttpStatus.OK);
+            });
+        }
+        return readPublishedAdvertisementsPage(FIRST_PAGE_ID, DEFAULT_PAGE_SIZE, count);
+    }
+
+    @GetMapping("/published/count")
+    public ResponseEntity<CountDto> countAllPublished() {
+        return ResponseEntity.ok().cacheControl(COUNT_CACHE_CONTROL).body(new CountDto(service.countAllPublished()));
     }
 
     @DeleteMapping("{id}")
@@ -143,18 +258,49 @@ public class AdvertisementAclController {
         service.deleteById(id);
     }
 
-    private ResponseEntity<AdvertisementListDto> readMyAdvertisementsPage(int pageId, int pageSize) {
-        Page page = service.findAll(pageId, pageSize, Sort.Direction.DESC, new String[]{"ads.id"});
+    private ResponseEntity<byte[]> readMyAdvertisementsPage(int pageId, int pageSize, boolean count) {
+        return pageCache.get("my", pageId + "?count=" + count, () -> {
+            String[] properties = new String[]{"ads.id"};
+            Slice<Advertisement> page = count
+                    ? service.findAll(pageId, pageSize, Sort.Direction.DESC, properties)
+                    : service.findAllAsSlice(pageId, pageSize, Sort.Direction.DESC, properties);
 
-        return new ResponseEntity<>(new AdvertisementListDto(page.getContent()),
-                PageHeaderBuilder.createLinkHeader(page, PATH_PAGES), HttpStatus.OK);
+            return new ResponseEntity<>(new AdvertisementListDto(page.getContent()),
+                    PageHeaderBuilder.createLinkHeader(page, PATH_PAGES, count ? "" : "?count=false"), HttpStatus.OK);
+        });
     }
 
-    private ResponseEntity<AdvertisementListDto> readPublishedAdvertisementsPage(int pageId, int pageSize) {
-        Page page = service.findAllPublished(pageId, pageSize, Sort.Direction.DESC, new String[]{"ads.id"});
+    private ResponseEntity<byte[]> readPublishedAdvertisementsPage(int pageId, int pageSize, boolean count) {
+        return pageCache.getPublished(pageId + "?count=" + count, () -> {
+            String[] properties = new String[]{"ads.id"};
+            Slice<Advertisement> page = count
+                    ? service.findAllPublished(pageId, pageSize, Sort.Direction.DESC, properties)
+                    : service.findAllPublishedAsSlice(pageId, pageSize, Sort.Direction.DESC, properties);
+
+            return new ResponseEntity<>(new AdvertisementListDto(page.getContent()),
+                    PageHeaderBuilder.createLinkHeader(page, PATH_PAGES, count ? "" : "?count=false"), HttpStatus.OK);
+        });
+    }
 
-        return new ResponseEntity<>(new AdvertisementListDto(page.getContent()),
-                PageHeaderBuilder.createLinkHeader(page, PATH_PAGES), HttpStatus.OK);
+    private void writeNdjson(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = exportWriter.getFactory().createGenerator(outputStream)) {
+            service.exportAll(ads -> {
+                try {
+                    exportWriter.writeValue(generator, new AdvertisementDto(ads));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // e.g. the client closed the connection
+                }
+            });
+        }
+    }
+
+    private static List<PermissionAssignment> toPermissionAssignments(BulkPermissionDto bulkPermission) {
+        List<PermissionAssignment> assignments = new ArrayList<>();
+        for (BulkPermissionDto.AdvertisementPermissionDto permission : bulkPermission.permissions) {
+            assignments.add(new PermissionAssignment(permission.id, permission.name, permission.getPermissions()));
+        }
+        return assignments;
     }
 
     private void throwIfInconsistent(Long expected, Long actual) {
@@ -0,0 +1,280 @@
+package com.sap.cp.appsec.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.sap.cp.appsec.config.AclCacheInvalidatedEvent;
+import com.sap.cp.appsec.dto.AdvertisementDto;
+import com.sap.cp.appsec.dto.AdvertisementListDto;
+import com.sap.cp.appsec.security.AdvertisementVisibilityChangedEvent;
+import com.sap.cp.appsec.security.AdvertisementVisibilityIndex;
+import com.sap.cp.appsec.security.SidAuthenticationToken;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the serialized pages of the advertisement lists per set of sids. A page is identified by the hash of the
+ * sids, the endpoint and the page number or cursor.
+ * <p>
+ * The published advertisements of users that have not been granted any permission for a published advertisement
+ * themselves depend on their attributes only, i.e. all users with the same attributes - e.g. the same bulletinboard
+ * attribute - share those pages (see {@link SidAuthenticationToken#getAuthoritySidsHash()}). All other pages are
+ * cached per user, as the principal sid is part of their sids (see {@link SidAuthenticationToken#getSidsHash()}).
+ * <p>
+ * Whenever the visibility of advertisements changes or an advertisement is updated, all pages of those sid sets are
+ * evicted that contain one of the advertisements or that contain a sid that could access one of them before or after
+ * the change. The pages are indexed by advertisement and by sid for that purpose. The eviction is repeated after the
+ * transaction completed, to drop pages that were read meanwhile.
+ * Changes of other application instances are evicted as soon as they are received by the configured
+ * {@link com.sap.cp.appsec.config.AclCacheInvalidationChannel}, otherwise they are only considered after the
+ * time-to-live.
+ * <p>
+ * Disabled in case {@code acl.page-cache.maximum-size} is 0. Hit and miss statistics are exported as "cache.*"
+ * metrics and the hit ratio as "cache.hit.ratio", both with tag "cache=advertisement_pages".
+ */
+@Component
+public class AdvertisementPageCache {
+    public static final String CACHE_NAME = "advertisement_pages";
+    private static final String PUBLISHED = "published";
+    private static final String SHARED_PUBLISHED = "published-shared";
+
+    private final ObjectMapper objectMapper;
+    private final AdvertisementVisibilityIndex visibilityIndex;
+    private final boolean enabled;
+    private final Cache<String, CachedPage> cache;
+    private final AtomicLong evictions = new AtomicLong(); // pages read before an eviction are not cached
+    private final Map<Long, Set<CachedPage>> pagesByAdvertisement = new ConcurrentHashMap<>();
+    private final Map<String, Set<CachedPage>> pagesBySid = new ConcurrentHashMap<>();
+    private final Map<String, Set<CachedPage>> pagesBySidsHash = new ConcurrentHashMap<>();
+
+    public AdvertisementPageCache(ObjectMapper objectMapper, AdvertisementVisibilityIndex visibilityIndex,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${acl.page-cache.maximum-size:0}") long maximumSize,
+                                  @Value("${acl.page-cache.time-to-live-seconds:60}") long timeToLiveSeconds) {
+        this.objectMapper = objectMapper;
+        this.visibilityIndex = visibilityIndex;
+        this.enabled = maximumSize > 0;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS)
+                .executor(Runnable::run) // keeps the indexes in sync with the cache
+                .removalListener((String key, CachedPage page, RemovalCause cause) -> unindex(page))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("cache.hit.ratio", cache, pages -> pages.stats().hitRate())
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached page of the current user's sids or reads and caches it.
+     *
+     * @param endpoint e.g. {@code "my"}
+     * @param page     the page number or cursor, including the query parameters that influence the response
+     * @param reader   reads the page in case it is not cached
+     */
+    public ResponseEntity<byte[]> get(String endpoint, String page,
+                                      Supplier<ResponseEntity<AdvertisementListDto>> reader) {
+        if (!enabled) {
+            return serialize(null, null, Collections.emptySet(), reader.get()).toResponseEntity();
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return get(SidAuthenticationToken.getSidsHash(authentication), SidAuthenticationToken.getSids(authentication),
+                endpoint, page, reader);
+    }
+
+    /**
+     * Returns the cached page of published advertisements or reads and caches it. The page is shared with all users
+     * with the same attributes, unless the current user has been granted a permission for a published advertisement.
+     *
+     * @param page   the page number or cursor, including the query parameters that influence the response
+     * @param reader reads the page in case it is not cached
+     */
+    public ResponseEntity<byte[]> getPublished(String page, Supplier<ResponseEntity<AdvertisementListDto>> reader) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!enabled || visibilityIndex.isGrantedAnyPublished(SidAuthenticationToken.getPrincipalSid(authentication))) {
+            return get(PUBLISHED, page, reader);
+        }
+        return get(SidAuthenticationToken.getAuthoritySidsHash(authentication),
+                SidAuthenticationToken.getAuthoritySids(authentication), SHARED_PUBLISHED, page, reader);
+    }
+
+    /**
+     * Evicts the pages that might be affected by changes of the advertisements.
+     */
+    public void evictAdvertisements(Collection<Long> advertisementIds) {
+        if (enabled) {
+            evict(advertisementIds, visibilityIndex.findSids(advertisementIds));
+        }
+    }
+
+    @EventListener
+    public void onVisibilityChanged(AdvertisementVisibilityChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.isFullRebuild()) {
+            evictions.incrementAndGet();
+            cache.invalidateAll();
+        } else {
+            evict(event.getAdvertisementIds(), event.getSids());
+        }
+    }
+
+    /**
+     * Evicts the pages affected by ACL changes of any application instance. All pages are evicted in case a changed
+     * ACL was deleted meanwhile, as its advertisements are not known anymore.
+     */
+    @EventListener
+    public void onAclCacheInvalidated(AclCacheInvalidatedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> advertisementIds = event.isCleared() ? null
+                : visibilityIndex.findAdvertisementIds(event.getAclIds());
+        if (advertisementIds == null) {
+            evictions.incrementAndGet();
+            cache.invalidateAll();
+        } else {
+            evictAdvertisements(advertisementIds);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterVisibilityChanged(AdvertisementVisibilityChangedEvent event) {
+        onVisibilityChanged(event);
+    }
+
+    private ResponseEntity<byte[]> get(String sidsHash, Set<String> sids, String endpoint, String page,
+                                       Supplier<ResponseEntity<AdvertisementListDto>> reader) {
+        String key = sidsHash + " " + endpoint + " " + page;
+
+        CachedPage cachedPage = cache.getIfPresent(key);
+        if (cachedPage == null) {
+            long evictionCount = evictions.get();
+            cachedPage = serialize(key, sidsHash, sids, reader.get());
+            if (evictionCount == evictions.get()) {
+                index(cachedPage); // before it is cached, so that it can be evicted as soon as it is visible
+                cache.put(key, cachedPage);
+                if (evictionCount != evictions.get()) {
+                    cache.asMap().remove(key, cachedPage); // the eviction might have missed it
+                }
+            }
+        }
+        return cachedPage.toResponseEntity();
+    }
+
+    private void evict(Collection<Long> advertisementIds, Collection<String> sids) {
+        evictions.incrementAndGet();
+        Set<String> affectedSidsHashes = new HashSet<>();
+        for (Long advertisementId : advertisementIds) {
+            addSidsHashes(pagesByAdvertisement.get(advertisementId), affectedSidsHashes);
+        }
+        for (String sid : sids) {
+            addSidsHashes(pagesBySid.get(sid), affectedSidsHashes);
+        }
+        for (String sidsHash : affectedSidsHashes) { // the other pages of these sids are shifted
+            Set<CachedPage> pages = pagesBySidsHash.get(sidsHash);
+            if (pages != null) {
+                pages.forEach(page -> cache.asMap().remove(page.key, page));
+            }
+        }
+    }
+
+    private static void addSidsHashes(Set<CachedPage> pages, Set<String> sidsHashes) {
+        if (pages != null) {
+            pages.forEach(page -> sidsHashes.add(page.sidsHash));
+        }
+    }
+
+    private void index(CachedPage page) {
+        page.advertisementIds.forEach(advertisementId -> index(pagesByAdvertisement, advertisementId, page));
+        page.sids.forEach(sid -> index(pagesBySid, sid, page));
+        index(pagesBySidsHash, page.sidsHash, page);
+    }
+
+    private void unindex(CachedPage page) {
+        page.advertisementIds.forEach(advertisementId -> unindex(pagesByAdvertisement, advertisementId, page));
+        page.sids.forEach(sid -> unindex(pagesBySid, sid, page));
+        unindex(pagesBySidsHash, page.sidsHash, page);
+    }
+
+    private static <K> void index(Map<K, Set<CachedPage>> index, K key, CachedPage page) {
+        index.compute(key, (k, pages) -> {
+            Set<CachedPage> indexedPages = pages == null ? ConcurrentHashMap.newKeySet() : pages;
+            indexedPages.add(page);
+            return indexedPages;
+        });
+    }
+
+    private static <K> void unindex(Map<K, Set<CachedPage>> index, K key, CachedPage page) {
+        index.computeIfPresent(key, (k, pages) -> {
+            pages.remove(page);
+            return pages.isEmpty() ? null : pages;
+        });
+    }
+
+    private CachedPage serialize(String key, String sidsHash, Set<String> sids,
+                                 ResponseEntity<AdvertisementListDto> response) {
+        AdvertisementListDto list = response.getBody();
+        Set<Long> advertisementIds = new HashSet<>();
+        for (AdvertisementDto advertisement : list.advertisements) {
+            advertisementIds.add(advertisement.getId());
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        try {
+            return new CachedPage(key, sidsHash, sids, advertisementIds, objectMapper.writeValueAsBytes(list),
+                    HttpHeaders.readOnlyHttpHeaders(headers), response.getStatusCode());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("advertisements could not be serialized", e);
+        }
+    }
+
+    private static class CachedPage {
+        final String key;
+        final String sidsHash;
+        final Set<String> sids;
+        final Set<Long> advertisementIds;
+        final byte[] body;
+        final HttpHeaders headers;
+        final HttpStatus status;
+
+        CachedPage(String key, String sidsHash, Set<String> sids, Set<Long> advertisementIds, byte[] body,
+                   HttpHeaders headers, HttpStatus status) {
+            this.key = key;
+            this.sidsHash = sidsHash;
+            this.sids = sids;
+            this.advertisementIds = advertisementIds;
+            this.body = body;
+            this.headers = headers;
+            this.status = status;
+        }
+
+        ResponseEntity<byte[]> toResponseEntity() {
+            return new ResponseEntity<>(body, headers, status);
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package com.sap.cp.appsec.controllers;
 
 import com.sap.cp.appsec.domain.AclAttribute;
-import com.sap.cp.appsec.security.AclSupport;
+import com.sap.cp.appsec.security.AttributeValueCatalog;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.validation.constraints.Min;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,24 +23,33 @@ public class AttributeFinderController {
     public static final String ATTRIBUTE_BULLETINBOARD = "bulletinboard";
     public static final String ATTRIBUTE_LOCATION = "location";
 
-    private final AclSupport aclSupport;
+    private final AttributeValueCatalog attributeValueCatalog;
 
-    public AttributeFinderController(AclSupport aclSupport) {
-        this.aclSupport = aclSupport;
+    public AttributeFinderController(AttributeValueCatalog attributeValueCatalog) {
+        this.attributeValueCatalog = attributeValueCatalog;
     }
 
+    /**
+     * Returns the known values of the attribute in ascending order, e.g. for type-ahead input fields.
+     *
+     * @param startsWith optional prefix of the values
+     * @param limit      optional maximum number of values
+     */
     @GetMapping("/{ATTRIBUTE_NAME}")
-    public List<String> getAllValuesForAttribute(@PathVariable("ATTRIBUTE_NAME") String attributeName) {
+    public List<String> getAllValuesForAttribute(@PathVariable("ATTRIBUTE_NAME") String attributeName,
+                                                 @RequestParam(value = "startsWith", required = false) String startsWith,
+                                                 @RequestParam(value = "limit", required = false) @Min(1) Integer limit) {
         List<String> attributeValues = new ArrayList<>();
+        int maxValues = limit == null ? Integer.MAX_VALUE : limit;
         switch (attributeName) {
             case ATTRIBUTE_GROUP:
-                attributeValues = getAclAttributeValues(AclAttribute.GROUP);
+                attributeValues = attributeValueCatalog.findValues(AclAttribute.GROUP, startsWith, maxValues);
                 break;
             case ATTRIBUTE_BULLETINBOARD:
-                attributeValues = getAclAttributeValues(AclAttribute.BULLETINBOARD);
+                attributeValues = attributeValueCatalog.findValues(AclAttribute.BULLETINBOARD, startsWith, maxValues);
                 break;
             case ATTRIBUTE_LOCATION:
-                attributeValues = getAclAttributeValues(AclAttribute.LOCATION);
+                attributeValues = attributeValueCatalog.findValues(AclAttribute.LOCATION, startsWith, maxValues);
                 break;
             default:
                 break;
@@ -46,16 +57,6 @@ public class AttributeFinderController {
         return attributeValues;
     }
 
-    private List<String> getAclAttributeValues(AclAttribute aclAttribute) {
-        List<String> attributeValues = new ArrayList<>();
-
-        for (String sid : aclSupport.getAllSidsWithPrefix(aclAttribute.getSidPrefix())) {
-            String attributeValue = sid.replace(aclAttribute.getSidPrefix(), "");
-            attributeValues.add(attributeValue);
-        }
-        return attributeValues;
-    }
-
     @GetMapping
     public List<String> getAllAttributes() {
         List<String> attributes = new ArrayList<>();
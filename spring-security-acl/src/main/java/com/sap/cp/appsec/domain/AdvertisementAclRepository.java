@@ -2,56 +2,51 @@ package com.sap.cp.appsec.domain;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
+/**
+ * The queries run in read-only transactions, unless they participate in a read-write transaction. Hence they are
+ * routed to a read replica, in case one is configured (see {@code com.sap.cp.appsec.config.ReplicaRoutingDataSource}).
+ * The inherited save and delete methods are read-write transactions as declared by {@code SimpleJpaRepository}.
+ */
+@Transactional(readOnly = true)
 public interface AdvertisementAclRepository extends PagingAndSortingRepository<Advertisement, Long> {
 
+    /**
+     * The mask is compared bitwise, which matches an ACE per permission as well as a single ACE with the combined
+     * permissions of the sid (acl.permissions.combined-masks).
+     * Joins on the numeric object_id_identity_num, which - unlike a cast of object_id_identity - can use an index.
+     */
     String FIND_ADS_FOR_SID_SUBQUERY =
             "FROM ACL_OBJECT_IDENTITY obj " +
                     "INNER JOIN ACL_ENTRY entry   ON entry.acl_object_identity = obj.id " +
                     "INNER JOIN ACL_SID sid       ON entry.sid = sid.id " +
-                    "INNER JOIN ADVERTISEMENT ads ON CAST(obj.object_id_identity as bigint) = ads.id " +
+                    "INNER JOIN ADVERTISEMENT ads ON obj.object_id_identity_num = ads.id " +
                 "WHERE sid.sid IN :sid " +
-                    "AND (entry.mask = :mask) " +
+                    "AND BITAND(entry.mask, :mask) <> 0 " +
                     "AND entry.granting = true " +
                     "AND obj.object_id_class = (SELECT id FROM ACL_CLASS WHERE acl_class.class = 'com.sap.cp.appsec.domain.Advertisement')";
 
-    String GET_ALL_ACCESSIBLE_OBJECTS_RECURSIVE_CTE =
-            "WITH RECURSIVE accessibleObjects (id, object_id_class, object_id_identity, parent_object) AS " +
-            "( SELECT    id, " +
-                        "object_id_class, " +
-                        "object_id_identity, " +
-                        "parent_object " +
-            "  FROM     ACL_OBJECT_IDENTITY " +
-            "  WHERE    id IN (SELECT DISTINCT acl_object_identity " +
-                                "FROM ACL_ENTRY entry " +
-                                "INNER JOIN ACL_SID sid              ON entry.sid = sid.id " +
-                                "INNER JOIN ACL_OBJECT_IDENTITY obj  ON entry.acl_object_identity = obj.id " +
-                                "WHERE " +
-                                        "entry.granting = true " + // AND ENTRIES_INHERITING = true to exclude leafs
-                                        "AND entry.mask = :mask " +
-                                        "AND sid.sid IN :sid " +
-                                ") " +
-            "  UNION ALL " +
-                    "SELECT  parent.id, " +
-                            "parent.object_id_class, " +
-                            "parent.object_id_identity, " +
-                            "parent.parent_object " +
-                    "FROM    ACL_OBJECT_IDENTITY parent, accessibleObjects " +
-                    "WHERE	 parent.parent_object = accessibleObjects.id " +
-            ") ";
-
-    String FIND_ADS_FOR_SID_IN_HIERARCHY_SUBQUERY =
-	        "FROM accessibleObjects " +
-            "INNER JOIN ADVERTISEMENT ads ON CAST(object_id_identity AS bigint) = ads.id " +
-                "WHERE ads.is_published = TRUE " +
-                    "AND object_id_class = ( " +
-                        "SELECT id FROM ACL_CLASS WHERE acl_class.class = 'com.sap.cp.appsec.domain.Advertisement' ) " +
-                "ORDER BY ads.id DESC ";
+    /**
+     * ACL_ADVERTISEMENT_VISIBILITY already contains the permissions inherited from parent objects
+     * (bulletinboard, location), see {@link com.sap.cp.appsec.security.AdvertisementVisibilityIndex}.
+     * Note: ADVERTISEMENT must be joined (and not selected from) so that Spring Data applies the "ads.id" sort as is.
+     */
+    String FIND_PUBLISHED_ADS_FOR_SID_SUBQUERY =
+            "FROM (SELECT DISTINCT visibility.advertisement_id " +
+                    "FROM ACL_ADVERTISEMENT_VISIBILITY visibility " +
+                    "INNER JOIN ACL_SID sid ON visibility.sid = sid.id " +
+                    "WHERE sid.sid IN :sid " +
+                        "AND BITAND(visibility.mask, :mask) <> 0) visible " +
+            "INNER JOIN ADVERTISEMENT ads ON visible.advertisement_id = ads.id " +
+                "WHERE ads.is_published = TRUE ";
 
 
     String SELECT_ADS_FOR_SID_QUERY = "SELECT DISTINCT ads.*"
@@ -59,19 +54,80 @@ public interface AdvertisementAclRepository extends PagingAndSortingRepository<A
 
     String COUNT_ADS_FOR_SID_QUERY = "SELECT COUNT( DISTINCT ads.id) " + FIND_ADS_FOR_SID_SUBQUERY;
 
-    String SELECT_ADS_FOR_SID_IN_HIERARCHY_QUERY = GET_ALL_ACCESSIBLE_OBJECTS_RECURSIVE_CTE +
-            "SELECT DISTINCT ads.* " + FIND_ADS_FOR_SID_IN_HIERARCHY_SUBQUERY;
+    String SELECT_PUBLISHED_ADS_FOR_SID_QUERY = "SELECT ads.* " + FIND_PUBLISHED_ADS_FOR_SID_SUBQUERY;
+
+    String COUNT_PUBLISHED_ADS_FOR_SID_QUERY = "SELECT COUNT(ads.id) " + FIND_PUBLISHED_ADS_FOR_SID_SUBQUERY;
+
+    /**
+     * Keyset pagination: reads the advertisements with an id lower than the last id of the previous slice.
+     * Uses EXISTS instead of a join, which makes DISTINCT obsolete, and requires neither an offset nor a count.
+     * Note: as the query is already ordered, an unsorted Pageable must be passed.
+     */
+    String SELECT_ADS_FOR_SID_AFTER_QUERY =
+            "SELECT ads.* FROM ADVERTISEMENT ads " +
+                "WHERE ads.id < :afterId " +
+                    "AND EXISTS (SELECT 1 FROM ACL_OBJECT_IDENTITY obj " +
+                        "INNER JOIN ACL_ENTRY entry ON entry.acl_object_identity = obj.id " +
+                        "INNER JOIN ACL_SID sid     ON entry.sid = sid.id " +
+                        "WHERE obj.object_id_identity_num = ads.id " +
+                            "AND sid.sid IN :sid " +
+                            "AND BITAND(entry.mask, :mask) <> 0 " +
+                            "AND entry.granting = true " +
+                            "AND obj.object_id_class = (SELECT id FROM ACL_CLASS WHERE acl_class.class = 'com.sap.cp.appsec.domain.Advertisement')) " +
+                "ORDER BY ads.id DESC";
 
-    String COUNT_ADS_FOR_SID_IN_HIERARCHY_QUERY = GET_ALL_ACCESSIBLE_OBJECTS_RECURSIVE_CTE +
-            "SELECT COUNT(DISTINCT ads.id) " + FIND_ADS_FOR_SID_IN_HIERARCHY_SUBQUERY;
+    String SELECT_PUBLISHED_ADS_FOR_SID_AFTER_QUERY =
+            "SELECT ads.* FROM ADVERTISEMENT ads " +
+                "WHERE ads.is_published = TRUE " +
+                    "AND ads.id < :afterId " +
+                    "AND EXISTS (SELECT 1 FROM ACL_ADVERTISEMENT_VISIBILITY visibility " +
+                        "INNER JOIN ACL_SID sid ON visibility.sid = sid.id " +
+                        "WHERE visibility.advertisement_id = ads.id " +
+                            "AND sid.sid IN :sid " +
+                            "AND BITAND(visibility.mask, :mask) <> 0) " +
+                "ORDER BY ads.id DESC";
 
 
     @Query(value = SELECT_ADS_FOR_SID_QUERY, countQuery = COUNT_ADS_FOR_SID_QUERY, nativeQuery = true)
     Page<Advertisement> findAllByPermission(@Param("mask") int permissionCode, @Param("sid") String[] sid, Pageable pageable);
 
-    @Query(value = SELECT_ADS_FOR_SID_IN_HIERARCHY_QUERY, countQuery = COUNT_ADS_FOR_SID_IN_HIERARCHY_QUERY, nativeQuery = true)
+    @Query(value = SELECT_PUBLISHED_ADS_FOR_SID_QUERY, countQuery = COUNT_PUBLISHED_ADS_FOR_SID_QUERY, nativeQuery = true)
     Page<Advertisement> findAllPublishedByHierarchicalPermission(
             @Param("mask") int permissionCode, @Param("sid") String[] sid, Pageable pageable);
 
+    /**
+     * Like {@link #findAllByPermission} but without count query: reads pageSize + 1 rows to find out whether there is
+     * a next slice.
+     */
+    @Query(value = SELECT_ADS_FOR_SID_QUERY, nativeQuery = true)
+    Slice<Advertisement> findSliceByPermission(@Param("mask") int permissionCode, @Param("sid") String[] sid, Pageable pageable);
+
+    /**
+     * Like {@link #findAllPublishedByHierarchicalPermission} but without count query.
+     */
+    @Query(value = SELECT_PUBLISHED_ADS_FOR_SID_QUERY, nativeQuery = true)
+    Slice<Advertisement> findSlicePublishedByHierarchicalPermission(
+            @Param("mask") int permissionCode, @Param("sid") String[] sid, Pageable pageable);
+
+    @Query(value = COUNT_ADS_FOR_SID_QUERY, nativeQuery = true)
+    long countByPermission(@Param("mask") int permissionCode, @Param("sid") String[] sid);
+
+    @Query(value = COUNT_PUBLISHED_ADS_FOR_SID_QUERY, nativeQuery = true)
+    long countPublishedByHierarchicalPermission(@Param("mask") int permissionCode, @Param("sid") String[] sid);
+
+    @Query(value = SELECT_ADS_FOR_SID_AFTER_QUERY, nativeQuery = true)
+    Slice<Advertisement> findAllByPermissionAfter(
+            @Param("mask") int permissionCode, @Param("sid") String[] sid, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(value = SELECT_PUBLISHED_ADS_FOR_SID_AFTER_QUERY, nativeQuery = true)
+    Slice<Advertisement> findAllPublishedByHierarchicalPermissionAfter(
+            @Param("mask") int permissionCode, @Param("sid") String[] sid, @Param("afterId") Long afterId, Pageable pageable);
+
     List<Advertisement> findByTitle(String title);
+
+    /**
+     * Reads only the version, e.g. to validate an entity tag without loading the advertisement.
+     */
+    @Query("SELECT ads.version FROM Advertisement ads WHERE ads.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
 }
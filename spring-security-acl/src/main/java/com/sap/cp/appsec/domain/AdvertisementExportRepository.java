@@ -0,0 +1,70 @@
+package com.sap.cp.appsec.domain;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Reads all advertisements the sids have been granted a permission for with a single query, e.g. for an export.
+ * The rows are fetched with a forward-only cursor in chunks of {@code acl.export.fetch-size} rows and are passed one
+ * by one to the caller, i.e. they are neither collected nor attached to the persistence context.
+ * <p>
+ * PostgreSQL uses a cursor within transactions only. The transaction is read-only, hence it is routed to a read
+ * replica in case one is configured.
+ */
+@Repository
+public class AdvertisementExportRepository {
+
+    // corresponds to AdvertisementAclRepository.SELECT_ADS_FOR_SID_AFTER_QUERY
+    private static final String SELECT_ADS_FOR_SID =
+            "SELECT ads.* FROM ADVERTISEMENT ads " +
+                "WHERE EXISTS (SELECT 1 FROM ACL_OBJECT_IDENTITY obj " +
+                    "INNER JOIN ACL_ENTRY entry ON entry.acl_object_identity = obj.id " +
+                    "INNER JOIN ACL_SID sid     ON entry.sid = sid.id " +
+                    "WHERE obj.object_id_identity_num = ads.id " +
+                        "AND sid.sid IN (:sid) " +
+                        "AND BITAND(entry.mask, :mask) <> 0 " +
+                        "AND entry.granting = true " +
+                        "AND obj.object_id_class = (SELECT id FROM ACL_CLASS WHERE acl_class.class = '" +
+                            Advertisement.class.getName() + "')) " +
+                "ORDER BY ads.id DESC";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public AdvertisementExportRepository(DataSource dataSource, @Value("${acl.export.fetch-size:500}") int fetchSize) {
+        JdbcTemplate cursorTemplate = new JdbcTemplate(dataSource);
+        cursorTemplate.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(cursorTemplate);
+    }
+
+    /**
+     * Passes the advertisements any of the sids has been granted the permission for, ordered by id descending.
+     */
+    @Transactional(readOnly = true)
+    public void forEachByPermission(int permissionCode, Collection<String> sids, Consumer<Advertisement> action) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource("mask", permissionCode).addValue("sid", sids);
+        jdbcTemplate.query(SELECT_ADS_FOR_SID, parameters, (RowCallbackHandler) rs -> action.accept(mapRow(rs)));
+    }
+
+    private static Advertisement mapRow(ResultSet rs) throws SQLException {
+        Advertisement advertisement = new Advertisement(rs.getString("title"), rs.getString("contact"));
+        advertisement.id = rs.getLong("id");
+        advertisement.version = rs.getLong("version");
+        advertisement.createdAt = rs.getTimestamp("created_at");
+        advertisement.modifiedAt = rs.getTimestamp("modified_at");
+        advertisement.createdBy = rs.getString("created_by");
+        advertisement.modifiedBy = rs.getString("modified_by");
+        advertisement.setPublished(rs.getBoolean("is_published"));
+        return advertisement;
+    }
+}
@@ -0,0 +1,25 @@
+package com.sap.cp.appsec.dto;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Permissions of many users for many advertisements, e.g. to onboard a team to a set of advertisements with a
+ * single request.
+ */
+public class BulkPermissionDto {
+
+    @NotEmpty
+    @Valid
+    public List<AdvertisementPermissionDto> permissions;
+
+    public static class AdvertisementPermissionDto extends PermissionDto {
+
+        @NotNull
+        @Min(0)
+        public Long id;
+    }
+}
@@ -0,0 +1,18 @@
+package com.sap.cp.appsec.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class CountDto {
+    @JsonProperty("count")
+    public long count;
+
+    /**
+     * Default constructor required by Jackson JSON Converter
+     */
+    public CountDto() {
+    }
+
+    public CountDto(long count) {
+        this.count = count;
+    }
+}
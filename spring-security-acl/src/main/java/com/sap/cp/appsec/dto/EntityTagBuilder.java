@@ -0,0 +1,18 @@
+package com.sap.cp.appsec.dto;
+
+import com.sap.cp.appsec.domain.BaseEntity;
+
+public class EntityTagBuilder {
+
+    /**
+     * Creates a strong entity tag from the id and the version of an entity. The version is incremented with every
+     * update, hence the tag can be validated without loading and serializing the entity.
+     */
+    public static String createETag(Long id, long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    public static String createETag(BaseEntity entity) {
+        return createETag(entity.getId(), entity.getVersion());
+    }
+}
@@ -0,0 +1,41 @@
+package com.sap.cp.appsec.dto;
+
+import com.sap.cp.appsec.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for keyset pagination. It references the id of the last advertisement of the previous page, as pages
+ * are ordered by id descending. Unlike the offset based pages the cursor allows to read deep pages without scanning
+ * the preceding rows.
+ */
+public class PageCursor {
+    private static final String PREFIX = "id:";
+
+    private PageCursor() {}
+
+    public static String encode(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the id of the last advertisement of the previous page or {@code null} for the first page
+     * @throws BadRequestException in case the cursor is not valid
+     */
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(PREFIX)) {
+                return Long.valueOf(decoded.substring(PREFIX.length()));
+            }
+        } catch (IllegalArgumentException e) { // includes NumberFormatException
+            // handled below
+        }
+        throw new BadRequestException("bad request, invalid page cursor: " + cursor);
+    }
+}
@@ -1,25 +1,52 @@
 package com.sap.cp.appsec.dto;
 
-import org.springframework.data.domain.Page;
+import com.sap.cp.appsec.domain.BaseEntity;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 
 public class PageHeaderBuilder {
 
-    public static HttpHeaders createLinkHeader(Page<?> page, String path) {
+    /**
+     * Creates the links to the previous and next page. Accepts a {@link org.springframework.data.domain.Page} as well
+     * as a {@link Slice} that was read without count query.
+     */
+    public static HttpHeaders createLinkHeader(Slice<?> page, String path) {
+        return createLinkHeader(page, path, "");
+    }
+
+    /**
+     * @param query appended to each link, e.g. {@code "?count=false"}
+     */
+    public static HttpHeaders createLinkHeader(Slice<?> page, String path, String query) {
         StringBuilder linkHeader = new StringBuilder();
         if (page.hasPrevious()) {
             int prevNumber = page.getNumber() - 1;
-            linkHeader.append("<").append(path).append(prevNumber).append(">; rel=\"previous\"");
+            linkHeader.append("<").append(path).append(prevNumber).append(query).append(">; rel=\"previous\"");
             if (!page.isLast()) {
                 linkHeader.append(", ");
             }
         }
         if (page.hasNext()) {
             int nextNumber = page.getNumber() + 1;
-            linkHeader.append("<").append(path).append(nextNumber).append(">; rel=\"next\"");
+            linkHeader.append("<").append(path).append(nextNumber).append(query).append(">; rel=\"next\"");
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.LINK, linkHeader.toString());
+        return headers;
+    }
+
+    /**
+     * Creates the link to the next page in keyset pagination mode. The cursor references the last entity of the
+     * given slice and is appended to the path, e.g. {@code /api/v1/ads/acl/my?after=}.
+     */
+    public static HttpHeaders createCursorLinkHeader(Slice<? extends BaseEntity> slice, String path) {
+        StringBuilder linkHeader = new StringBuilder();
+        if (slice.hasNext()) {
+            Long lastId = slice.getContent().get(slice.getNumberOfElements() - 1).getId();
+            linkHeader.append("<").append(path).append(PageCursor.encode(lastId)).append(">; rel=\"next\"");
         }
         HttpHeaders headers = new HttpHeaders();
         headers.add(HttpHeaders.LINK, linkHeader.toString());
         return headers;
     }
-}
\ No newline at end of file
+}
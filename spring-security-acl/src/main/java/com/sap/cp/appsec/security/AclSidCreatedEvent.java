@@ -0,0 +1,27 @@
+package com.sap.cp.appsec.security;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by {@link com.sap.cp.appsec.config.AclConfig.PostgresJdbcMutableAclService} whenever a new sid is
+ * inserted into the ACL_SID table.
+ */
+public class AclSidCreatedEvent extends ApplicationEvent {
+
+    private final String sid;
+    private final boolean principal;
+
+    public AclSidCreatedEvent(Object source, String sid, boolean principal) {
+        super(source);
+        this.sid = sid;
+        this.principal = principal;
+    }
+
+    public String getSid() {
+        return sid;
+    }
+
+    public boolean isPrincipal() {
+        return principal;
+    }
+}
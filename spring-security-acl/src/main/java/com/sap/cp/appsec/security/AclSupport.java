@@ -2,10 +2,19 @@ package com.sap.cp.appsec.security;
 
 import com.sap.cp.appsec.config.AclAuditLogger;
 import com.sap.cp.appsec.config.AclConfig.PostgresJdbcMutableAclService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.acls.domain.AccessControlEntryImpl;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.domain.DefaultPermissionFactory;
 import org.springframework.security.acls.domain.GrantedAuthoritySid;
 import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.domain.PermissionFactory;
 import org.springframework.security.acls.domain.PrincipalSid;
 import org.springframework.security.acls.model.*;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
@@ -14,23 +23,48 @@ import java.util.*;
 
 @Service
 public class AclSupport {
+	private static final PermissionFactory PERMISSION_FACTORY = new DefaultPermissionFactory(BasePermission.class);
 
 	private final PermissionGrantingStrategy permissionGrantingStrategy;
+	private final boolean combinedMasks;
 	private PostgresJdbcMutableAclService aclService;
-	private AclAuditLogger aclAuditLogger = new AclAuditLogger();
+	private final AdvertisementVisibilityIndex visibilityIndex;
+	private final AclAuditLogger aclAuditLogger;
+	private final MeterRegistry meterRegistry;
 
-	public AclSupport(PostgresJdbcMutableAclService aclService, PermissionGrantingStrategy permissionGrantingStrategy) {
+	/**
+	 * @param combinedMasks whether a sid gets a single ACE with the combined mask of its permissions, instead of an
+	 *                      ACE per permission. Requires a {@link PermissionGrantingStrategy} that supports that.
+	 */
+	public AclSupport(PostgresJdbcMutableAclService aclService, PermissionGrantingStrategy permissionGrantingStrategy,
+			AdvertisementVisibilityIndex visibilityIndex, AclAuditLogger aclAuditLogger, MeterRegistry meterRegistry,
+			@Value("${acl.permissions.combined-masks:false}") boolean combinedMasks) {
 		this.aclService = aclService;
 		this.permissionGrantingStrategy = permissionGrantingStrategy;
+		this.visibilityIndex = visibilityIndex;
+		this.aclAuditLogger = aclAuditLogger;
+		this.meterRegistry = meterRegistry;
+		this.combinedMasks = combinedMasks;
 	}
 
 	public AuditableAcl removePermissionFromUser(String type, Long id, String principal, Permission[] permissions) {
-		return removePermissions(type, id, new PrincipalSid(principal), permissions);
+		return timer("remove").record(() -> removePermissions(type, id, new PrincipalSid(principal), permissions));
 	}
 
 	private AuditableAcl removePermissions(String type, Long id, PrincipalSid principalSid, Permission[] permissions) {
 		Assert.notEmpty(permissions, "Permission must be not empty");
 		AuditableAcl acl = get(type, id);
+		if (combinedMasks) {
+			removeCombinedPermissions(acl, principalSid, permissions);
+		} else {
+			removeEntries(acl, principalSid, permissions);
+		}
+		AuditableAcl updatedAcl = (AuditableAcl) aclService.updateAcl(acl);
+		visibilityIndex.refresh(updatedAcl.getId());
+		return updatedAcl;
+	}
+
+	private void removeEntries(MutableAcl acl, Sid principalSid, Permission[] permissions) {
 		int index = 0;
 		for (AccessControlEntry entry : acl.getEntries()) {
 			boolean deletedEntry = false;
@@ -47,27 +81,51 @@ public class AclSupport {
 				aclAuditLogger.logRemovePermission(entry);
 			}
 		}
-		return (AuditableAcl) aclService.updateAcl(acl);
+	}
+
+	/**
+	 * Clears the permissions from the masks of the granting ACEs of the sid. ACEs without any permission left are
+	 * deleted.
+	 */
+	private void removeCombinedPermissions(MutableAcl acl, Sid sid, Permission[] permissions) {
+		List<AccessControlEntry> entries = acl.getEntries();
+		for (int index = entries.size() - 1; index >= 0; index--) {
+			AccessControlEntry entry = entries.get(index);
+			int mask = entry.getPermission().getMask();
+			int remainingMask = mask & ~combine(permissions);
+			if (entry.isGranting() && entry.getSid().equals(sid) && remainingMask != mask) {
+				aclAuditLogger.logRemovePermission(entry);
+				if (remainingMask == 0) {
+					acl.deleteAce(index);
+				} else {
+					acl.updateAce(index, PERMISSION_FACTORY.buildFromMask(remainingMask));
+				}
+			}
+		}
 	}
 
 
 	public AuditableAcl grantPermissionsToUser(String type, Long id, String principal, Permission[] permissions) {
-		return grantPermissions(type, id, new PrincipalSid(principal), permissions);
+		return timer("grant").record(() -> grantPermissions(type, id, new PrincipalSid(principal), permissions));
 	}
 
 	public AuditableAcl grantPermissionsToSid(String type, Long id, String sidName, Permission[] permissions) {
-		return grantPermissions(type, id, new GrantedAuthoritySid(sidName), permissions);
+		return timer("grant").record(() -> grantPermissions(type, id, new GrantedAuthoritySid(sidName), permissions));
 	}
 
 	private AuditableAcl grantPermissions(String type, Long id, Sid sid, Permission[] permissions) {
 		Assert.notEmpty(permissions, "Permission must be not empty");
 		AuditableAcl acl = getOrCreate(type, id);
 		Set<Integer> indices = new HashSet<>();
-		for (Permission permission : permissions) {
-			int index = acl.getEntries().size();
-			boolean granting = true;
-			acl.insertAce(index, permission, sid, granting);
-			indices.add(index);
+		if (combinedMasks) {
+			indices.add(grantCombinedPermissions(acl, sid, permissions));
+		} else {
+			for (Permission permission : permissions) {
+				int index = acl.getEntries().size();
+				boolean granting = true;
+				acl.insertAce(index, permission, sid, granting);
+				indices.add(index);
+			}
 		}
 
 		for (Integer index : indices) {
@@ -75,6 +133,7 @@ public class AclSupport {
 		}
 
 		acl = (AuditableAcl) aclService.updateAcl(acl);
+		visibilityIndex.refresh(acl.getId());
 
 		for (Integer index : indices) {
 			aclAuditLogger.logGrantPermission(acl.getEntries().get(index));
@@ -82,7 +141,30 @@ public class AclSupport {
 		return acl;
 	}
 
+	/**
+	 * Adds the permissions to the mask of the granting ACE of the sid, or appends an ACE in case there is none.
+	 *
+	 * @return the index of the ACE
+	 */
+	private int grantCombinedPermissions(MutableAcl acl, Sid sid, Permission[] permissions) {
+		List<AccessControlEntry> entries = acl.getEntries();
+		int mask = combine(permissions);
+		for (int index = 0; index < entries.size(); index++) {
+			AccessControlEntry entry = entries.get(index);
+			if (entry.isGranting() && entry.getSid().equals(sid)) {
+				acl.updateAce(index, PERMISSION_FACTORY.buildFromMask(entry.getPermission().getMask() | mask));
+				return index;
+			}
+		}
+		acl.insertAce(entries.size(), PERMISSION_FACTORY.buildFromMask(mask), sid, true);
+		return entries.size();
+	}
+
 	public void setParent(String type, Long id, String parentType, Serializable parentId) {
+		timer("setParent").record(() -> updateParent(type, id, parentType, parentId));
+	}
+
+	private void updateParent(String type, Long id, String parentType, Serializable parentId) {
 		MutableAcl acl = get(type, id);
 		Assert.notNull(acl, "Acl (type =" + type + ", id =" + id + ") could not be retrieved");
 
@@ -90,7 +172,267 @@ public class AclSupport {
 		Assert.notNull(aclParent, "Acl of parent (type =" + parentType + ", id =" + parentId + ") could not be retrieved");
 
 		acl.setParent(aclParent);
-		aclService.updateAcl(acl);
+		aclService.updateParent(acl);
+		visibilityIndex.refresh(acl.getId());
+	}
+
+	/**
+	 * Checks with a batched ACL lookup whether the current user has the given permission for all objects.
+	 *
+	 * @throws AccessDeniedException listing the ids of all objects the permission is not granted for
+	 */
+	public void checkPermission(String type, Collection<Long> ids, Permission permission) {
+		List<Sid> sids = SidAuthenticationToken.getAclSids(SecurityContextHolder.getContext().getAuthentication());
+		Map<ObjectIdentity, Acl> acls = readAcls(type, ids);
+
+		Set<Long> deniedIds = new TreeSet<>();
+		for (Long id : ids) {
+			Acl acl = acls.get(new ObjectIdentityImpl(type, id));
+			if (acl == null || !isGranted(acl, permission, sids)) {
+				deniedIds.add(id);
+			}
+		}
+		if (!deniedIds.isEmpty()) {
+			throw new AccessDeniedException("Access is denied (type =" + type + ", ids =" + deniedIds + ")");
+		}
+	}
+
+	/**
+	 * Grants the permissions to the user principals for many objects at once. The ACLs are read with a batched
+	 * lookup and only ACEs that don't exist yet are inserted with a JDBC batch.
+	 */
+	public void grantPermissionsToUsers(String type, List<PermissionAssignment> assignments) {
+		timer("grantToUsers").record(() -> {
+			if (combinedMasks) {
+				grantCombinedPermissionsToUsers(type, assignments);
+			} else {
+				grantSeparatePermissionsToUsers(type, assignments);
+			}
+		});
+	}
+
+	private void grantSeparatePermissionsToUsers(String type, List<PermissionAssignment> assignments) {
+		Map<ObjectIdentity, Acl> acls = readAcls(type, getObjectIds(assignments));
+		Map<Serializable, List<AccessControlEntry>> newAcesByAcl = new LinkedHashMap<>();
+
+		for (PermissionAssignment assignment : assignments) {
+			Assert.notEmpty(assignment.getPermissions(), "Permission must be not empty");
+			ObjectIdentity objectIdentity = new ObjectIdentityImpl(type, assignment.getObjectId());
+			MutableAcl acl = (MutableAcl) acls.computeIfAbsent(objectIdentity, oid -> create(type, assignment.getObjectId()));
+			List<AccessControlEntry> newAces = newAcesByAcl.getOrDefault(acl.getId(), Collections.emptyList());
+			Sid sid = new PrincipalSid(assignment.getPrincipal());
+
+			for (Permission permission : assignment.getPermissions()) {
+				if (findGrantingEntry(acl.getEntries(), sid, permission) == null
+						&& findGrantingEntry(newAces, sid, permission) == null) {
+					// only ACLs that gain an ACE are refreshed
+					newAces = newAcesByAcl.computeIfAbsent(acl.getId(), aclId -> new ArrayList<>());
+					newAces.add(new AccessControlEntryImpl(null, acl, sid, permission, true, true, true));
+				}
+			}
+		}
+
+		List<AccessControlEntry> newAces = new ArrayList<>();
+		newAcesByAcl.values().forEach(newAces::addAll);
+		aclService.insertAces(newAces);
+		visibilityIndex.refreshAll(newAcesByAcl.keySet());
+
+		for (AccessControlEntry ace : newAces) {
+			aclAuditLogger.logGrantPermission(ace);
+		}
+	}
+
+	/**
+	 * Removes the permissions from the user principals for many objects at once, using a batched ACL lookup and a
+	 * JDBC batch.
+	 */
+	public void removePermissionsFromUsers(String type, List<PermissionAssignment> assignments) {
+		timer("removeFromUsers").record(() -> {
+			if (combinedMasks) {
+				removeCombinedPermissionsFromUsers(type, assignments);
+			} else {
+				removeSeparatePermissionsFromUsers(type, assignments);
+			}
+		});
+	}
+
+	private void removeSeparatePermissionsFromUsers(String type, List<PermissionAssignment> assignments) {
+		Map<ObjectIdentity, Acl> acls = readAcls(type, getObjectIds(assignments));
+		List<AccessControlEntry> removedAces = new ArrayList<>();
+		Set<Serializable> aclIds = new LinkedHashSet<>();
+
+		for (PermissionAssignment assignment : assignments) {
+			Assert.notEmpty(assignment.getPermissions(), "Permission must be not empty");
+			MutableAcl acl = (MutableAcl) acls.get(new ObjectIdentityImpl(type, assignment.getObjectId()));
+			if (acl == null) {
+				continue;
+			}
+			Sid sid = new PrincipalSid(assignment.getPrincipal());
+			for (Permission permission : assignment.getPermissions()) {
+				AccessControlEntry entry = findGrantingEntry(acl.getEntries(), sid, permission);
+				if (entry != null && !removedAces.contains(entry)) {
+					removedAces.add(entry);
+					aclIds.add(acl.getId());
+				}
+			}
+		}
+
+		aclService.deleteAces(removedAces);
+		visibilityIndex.refreshAll(aclIds);
+
+		for (AccessControlEntry ace : removedAces) {
+			aclAuditLogger.logRemovePermission(ace);
+		}
+	}
+
+	private void grantCombinedPermissionsToUsers(String type, List<PermissionAssignment> assignments) {
+		Map<ObjectIdentity, Acl> acls = readAcls(type, getObjectIds(assignments));
+		List<AccessControlEntry> newAces = new ArrayList<>();
+		List<AccessControlEntry> updatedAces = new ArrayList<>();
+		Set<Serializable> aclIds = new LinkedHashSet<>();
+
+		combineMasks(assignments).forEach((objectId, masks) -> {
+			MutableAcl acl = (MutableAcl) acls.computeIfAbsent(new ObjectIdentityImpl(type, objectId),
+					oid -> create(type, objectId));
+			masks.forEach((sid, mask) -> {
+				AccessControlEntry entry = findGrantingEntry(acl.getEntries(), sid);
+				if (entry == null) {
+					newAces.add(new AccessControlEntryImpl(null, acl, sid, PERMISSION_FACTORY.buildFromMask(mask),
+							true, true, true));
+					aclIds.add(acl.getId());
+				} else if ((entry.getPermission().getMask() | mask) != entry.getPermission().getMask()) {
+					updatedAces.add(withMask(entry, entry.getPermission().getMask() | mask));
+					aclIds.add(acl.getId());
+				}
+			});
+		});
+
+		aclService.insertAces(newAces);
+		aclService.updateAceMasks(updatedAces);
+		visibilityIndex.refreshAll(aclIds);
+
+		newAces.forEach(aclAuditLogger::logGrantPermission);
+		updatedAces.forEach(aclAuditLogger::logGrantPermission);
+	}
+
+	private void removeCombinedPermissionsFromUsers(String type, List<PermissionAssignment> assignments) {
+		Map<ObjectIdentity, Acl> acls = readAcls(type, getObjectIds(assignments));
+		List<AccessControlEntry> removedAces = new ArrayList<>();
+		List<AccessControlEntry> updatedAces = new ArrayList<>();
+		Set<Serializable> aclIds = new LinkedHashSet<>();
+
+		combineMasks(assignments).forEach((objectId, masks) -> {
+			MutableAcl acl = (MutableAcl) acls.get(new ObjectIdentityImpl(type, objectId));
+			if (acl == null) {
+				return;
+			}
+			for (AccessControlEntry entry : acl.getEntries()) {
+				Integer mask = masks.get(entry.getSid());
+				if (!entry.isGranting() || mask == null || (entry.getPermission().getMask() & mask) == 0) {
+					continue;
+				}
+				int remainingMask = entry.getPermission().getMask() & ~mask;
+				if (remainingMask == 0) {
+					removedAces.add(entry);
+				} else {
+					updatedAces.add(withMask(entry, remainingMask));
+				}
+				aclIds.add(acl.getId());
+			}
+		});
+
+		aclService.deleteAces(removedAces);
+		aclService.updateAceMasks(updatedAces);
+		visibilityIndex.refreshAll(aclIds);
+
+		removedAces.forEach(aclAuditLogger::logRemovePermission);
+		updatedAces.forEach(aclAuditLogger::logRemovePermission);
+	}
+
+	/**
+	 * @return the combined masks of the permissions per object id and user principal
+	 */
+	private static Map<Long, Map<Sid, Integer>> combineMasks(List<PermissionAssignment> assignments) {
+		Map<Long, Map<Sid, Integer>> masks = new LinkedHashMap<>();
+		for (PermissionAssignment assignment : assignments) {
+			Assert.notEmpty(assignment.getPermissions(), "Permission must be not empty");
+			masks.computeIfAbsent(assignment.getObjectId(), objectId -> new LinkedHashMap<>())
+					.merge(new PrincipalSid(assignment.getPrincipal()), combine(assignment.getPermissions()),
+							(left, right) -> left | right);
+		}
+		return masks;
+	}
+
+	private static int combine(Permission[] permissions) {
+		int mask = 0;
+		for (Permission permission : permissions) {
+			mask |= permission.getMask();
+		}
+		return mask;
+	}
+
+	private static AccessControlEntry withMask(AccessControlEntry entry, int mask) {
+		AuditableAccessControlEntry auditable = (AuditableAccessControlEntry) entry;
+		return new AccessControlEntryImpl(entry.getId(), entry.getAcl(), entry.getSid(),
+				PERMISSION_FACTORY.buildFromMask(mask), entry.isGranting(), auditable.isAuditSuccess(),
+				auditable.isAuditFailure());
+	}
+
+	/**
+	 * Reads the ACLs with a batched lookup. Objects without ACL are not contained in the result.
+	 */
+	private Map<ObjectIdentity, Acl> readAcls(String type, Collection<Long> ids) {
+		List<ObjectIdentity> objectIdentities = new ArrayList<>();
+		for (Long id : new LinkedHashSet<>(ids)) {
+			objectIdentities.add(new ObjectIdentityImpl(type, id));
+		}
+		try {
+			return new HashMap<>(aclService.readAclsById(objectIdentities));
+		} catch (NotFoundException exception) {
+			// at least one object has no ACL yet: fall back to reading them one by one
+			Map<ObjectIdentity, Acl> acls = new HashMap<>();
+			for (ObjectIdentity objectIdentity : objectIdentities) {
+				Acl acl = get(type, objectIdentity.getIdentifier());
+				if (acl != null) {
+					acls.put(objectIdentity, acl);
+				}
+			}
+			return acls;
+		}
+	}
+
+	private static List<Long> getObjectIds(List<PermissionAssignment> assignments) {
+		List<Long> ids = new ArrayList<>();
+		for (PermissionAssignment assignment : assignments) {
+			ids.add(assignment.getObjectId());
+		}
+		return ids;
+	}
+
+	private static AccessControlEntry findGrantingEntry(List<AccessControlEntry> entries, Sid sid) {
+		for (AccessControlEntry entry : entries) {
+			if (entry.isGranting() && entry.getSid().equals(sid)) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private static AccessControlEntry findGrantingEntry(List<AccessControlEntry> entries, Sid sid, Permission permission) {
+		for (AccessControlEntry entry : entries) {
+			if (entry.isGranting() && entry.getSid().equals(sid) && entry.getPermission().equals(permission)) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isGranted(Acl acl, Permission permission, List<Sid> sids) {
+		try {
+			return acl.isGranted(Collections.singletonList(permission), sids, false);
+		} catch (NotFoundException exception) { // no ACE applies
+			return false;
+		}
 	}
 
 	private AuditableAcl getOrCreate(String type, Long id) {
@@ -116,6 +458,10 @@ public class AclSupport {
 	}
 
 	public boolean hasUserPermission(String type, Long id, String principal, Permission[] permissions) {
+		return timer("hasUserPermission").record(() -> isGranted(type, id, principal, permissions));
+	}
+
+	private boolean isGranted(String type, Long id, String principal, Permission[] permissions) {
 		try {
 			Acl acl = aclService.readAclById(new ObjectIdentityImpl(type, id));
 			if (acl != null) {
@@ -133,7 +479,11 @@ public class AclSupport {
 		}
 	}
 
-	public List<String> getAllSidsWithPrefix(String sidPrefix) {
-		return aclService.getAllSidsWithPrefix(sidPrefix);
+	/**
+	 * @return timer "acl.support" of the operation, the percentile histograms are configured with
+	 * management.metrics.distribution.percentiles-histogram.acl
+	 */
+	private Timer timer(String operation) {
+		return meterRegistry.timer("acl.support", "operation", operation);
 	}
 }
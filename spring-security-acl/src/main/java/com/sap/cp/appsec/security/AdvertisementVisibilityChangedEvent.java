@@ -0,0 +1,46 @@
+package com.sap.cp.appsec.security;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Published by {@link AdvertisementVisibilityIndex} whenever the visibility of advertisements has changed, e.g. as
+ * permissions were granted or removed or as an advertisement was published to a bulletinboard.
+ */
+public class AdvertisementVisibilityChangedEvent extends ApplicationEvent {
+
+    private final List<Long> advertisementIds;
+    private final Set<String> sids;
+
+    /**
+     * @param source           the component that changed the visibility
+     * @param advertisementIds ids of the affected advertisements, {@code null} in case all advertisements are affected
+     * @param sids             names of the sids that could access any of the advertisements before or after the
+     *                         change, {@code null} in case all advertisements are affected
+     */
+    public AdvertisementVisibilityChangedEvent(Object source, Collection<Long> advertisementIds,
+                                               Collection<String> sids) {
+        super(source);
+        this.advertisementIds = advertisementIds == null ? null
+                : Collections.unmodifiableList(new ArrayList<>(advertisementIds));
+        this.sids = sids == null ? Collections.emptySet() : Collections.unmodifiableSet(new TreeSet<>(sids));
+    }
+
+    public boolean isFullRebuild() {
+        return advertisementIds == null;
+    }
+
+    public List<Long> getAdvertisementIds() {
+        return advertisementIds == null ? Collections.emptyList() : advertisementIds;
+    }
+
+    public Set<String> getSids() {
+        return sids;
+    }
+}
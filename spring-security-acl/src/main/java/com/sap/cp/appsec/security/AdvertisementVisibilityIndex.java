@@ -0,0 +1,277 @@
+package com.sap.cp.appsec.security;
+
+import com.sap.cp.appsec.config.AclObjectAncestors;
+import com.sap.cp.appsec.domain.Advertisement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.transaction.Transactional;
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Maintains the denormalized ACL_ADVERTISEMENT_VISIBILITY table. For every sid it holds the advertisements the sid
+ * has granted access to - directly or inherited from a parent like a bulletinboard or a location - together with the
+ * effective permission mask, i.e. the combination of all granting ACEs along the object hierarchy.
+ * <p>
+ * {@link AclSupport} refreshes the affected rows within the transaction of every ACL mutation. This allows to list
+ * the published advertisements with a single indexed join instead of walking the object hierarchy on each request.
+ * The ancestors and descendants of the changed objects are read from the closure table maintained by
+ * {@link AclObjectAncestors}. Use {@link #rebuild()} for ACL data that was loaded bypassing {@link AclSupport}.
+ * <p>
+ * Every change is announced as {@link AdvertisementVisibilityChangedEvent}, together with the sids whose access
+ * might have changed.
+ */
+@Component
+public class AdvertisementVisibilityIndex {
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String SELECT_OBJECTS =
+            "SELECT obj.id, obj.parent_object, obj.entries_inheriting, obj.object_id_identity, cls.class " +
+            "FROM ACL_OBJECT_IDENTITY obj " +
+            "INNER JOIN ACL_CLASS cls ON obj.object_id_class = cls.id ";
+    // the objects themselves are contained, too (depth 0)
+    private static final String SELECT_ANCESTOR_OBJECTS = SELECT_OBJECTS +
+            "INNER JOIN ACL_OBJECT_ANCESTOR closure ON closure.ancestor = obj.id WHERE closure.descendant IN (:ids)";
+    private static final String SELECT_DESCENDANT_OBJECTS = SELECT_OBJECTS +
+            "INNER JOIN ACL_OBJECT_ANCESTOR closure ON closure.descendant = obj.id WHERE closure.ancestor IN (:ids)";
+
+    private static final String SELECT_GRANTING_ENTRIES =
+            "SELECT acl_object_identity, sid, mask FROM ACL_ENTRY WHERE granting = true";
+    private static final String SELECT_GRANTING_ENTRIES_BY_OBJECT =
+            SELECT_GRANTING_ENTRIES + " AND acl_object_identity IN (:ids)";
+
+    private static final String DELETE_ALL = "DELETE FROM ACL_ADVERTISEMENT_VISIBILITY";
+    private static final String DELETE_BY_ADVERTISEMENT = DELETE_ALL + " WHERE advertisement_id IN (:ids)";
+    private static final String INSERT =
+            "INSERT INTO ACL_ADVERTISEMENT_VISIBILITY (sid, advertisement_id, mask) VALUES (?, ?, ?)";
+    private static final String SELECT_SIDS_BY_ADVERTISEMENT =
+            "SELECT DISTINCT sid.sid FROM ACL_ADVERTISEMENT_VISIBILITY visibility " +
+            "INNER JOIN ACL_SID sid ON visibility.sid = sid.id WHERE visibility.advertisement_id IN (:ids)";
+    private static final String SELECT_PUBLISHED_BY_PRINCIPAL =
+            "SELECT 1 FROM ACL_ADVERTISEMENT_VISIBILITY visibility " +
+            "INNER JOIN ACL_SID sid ON visibility.sid = sid.id " +
+            "INNER JOIN ADVERTISEMENT ads ON visibility.advertisement_id = ads.id " +
+            "WHERE sid.sid = :sid AND sid.principal = TRUE AND ads.is_published = TRUE LIMIT 1";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AclObjectAncestors aclObjectAncestors;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    public AdvertisementVisibilityIndex(NamedParameterJdbcTemplate jdbcTemplate,
+                                        ApplicationEventPublisher eventPublisher,
+                                        AclObjectAncestors aclObjectAncestors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.aclObjectAncestors = aclObjectAncestors;
+    }
+
+    /**
+     * Recomputes the visibility of all advertisements within the subtree of the given object identity,
+     * e.g. after ACEs of this object were changed or after it was assigned to another parent.
+     *
+     * @param objectIdentityId primary key of the changed ACL (see {@code Acl.getId()})
+     */
+    public void refresh(Serializable objectIdentityId) {
+        refreshAll(Collections.singletonList(objectIdentityId));
+    }
+
+    /**
+     * Recomputes the visibility of all advertisements within the subtrees of the given object identities at once.
+     *
+     * @param objectIdentityIds primary keys of the changed ACLs
+     */
+    public void refreshAll(Collection<? extends Serializable> objectIdentityIds) {
+        List<Long> rootIds = new ArrayList<>();
+        for (Serializable objectIdentityId : objectIdentityIds) {
+            rootIds.add(Long.valueOf(objectIdentityId.toString()));
+        }
+        Map<Long, ObjectNode> nodes = new HashMap<>();
+
+        // the changed objects and all their ancestors, as their ACEs are inherited by the subtree
+        for (ObjectNode node : queryObjects(SELECT_ANCESTOR_OBJECTS, rootIds)) {
+            nodes.put(node.id, node);
+        }
+
+        // the changed objects and all their descendants
+        Set<Long> subtree = new HashSet<>();
+        for (ObjectNode node : queryObjects(SELECT_DESCENDANT_OBJECTS, rootIds)) {
+            if (subtree.add(node.id)) {
+                nodes.put(node.id, node);
+            }
+        }
+
+        for (List<Long> chunk : chunks(nodes.keySet())) {
+            jdbcTemplate.query(SELECT_GRANTING_ENTRIES_BY_OBJECT, new MapSqlParameterSource("ids", chunk),
+                    (RowCallbackHandler) rs -> addGrantedMask(nodes, rs));
+        }
+
+        List<ObjectNode> advertisements = new ArrayList<>();
+        List<Long> advertisementIds = new ArrayList<>();
+        for (Long id : subtree) {
+            ObjectNode node = nodes.get(id);
+            if (node != null && node.advertisementId != null) {
+                advertisements.add(node);
+                advertisementIds.add(node.advertisementId);
+            }
+        }
+        Set<String> sids = findSids(advertisementIds); // the ones that lose access, too
+        for (List<Long> chunk : chunks(advertisementIds)) {
+            jdbcTemplate.update(DELETE_BY_ADVERTISEMENT, new MapSqlParameterSource("ids", chunk));
+        }
+        insert(advertisements, nodes);
+        sids.addAll(findSids(advertisementIds));
+        eventPublisher.publishEvent(new AdvertisementVisibilityChangedEvent(this, advertisementIds, sids));
+    }
+
+    /**
+     * @return names of the sids that have been granted any permission for one of the advertisements
+     */
+    public Set<String> findSids(Collection<Long> advertisementIds) {
+        Set<String> sids = new HashSet<>();
+        for (List<Long> chunk : chunks(advertisementIds)) {
+            sids.addAll(jdbcTemplate.queryForList(SELECT_SIDS_BY_ADVERTISEMENT, new MapSqlParameterSource("ids", chunk),
+                    String.class));
+        }
+        return sids;
+    }
+
+    /**
+     * @return whether the principal sid has been granted any permission for a published advertisement, directly or
+     * inherited. If not, the published advertisements the user can access depend on the granted authority sids only.
+     */
+    public boolean isGrantedAnyPublished(String principalSid) {
+        Boolean granted = jdbcTemplate.query(SELECT_PUBLISHED_BY_PRINCIPAL,
+                new MapSqlParameterSource("sid", principalSid), (ResultSetExtractor<Boolean>) ResultSet::next);
+        return Boolean.TRUE.equals(granted);
+    }
+
+    /**
+     * @param objectIdentityIds primary keys of ACLs, e.g. of advertisements, bulletinboards or locations
+     * @return ids of the advertisements within the subtrees of the given object identities, {@code null} in case one
+     * of the object identities does not exist (anymore)
+     */
+    public Set<Long> findAdvertisementIds(Collection<Long> objectIdentityIds) {
+        Set<Long> advertisementIds = new HashSet<>();
+        Set<Long> found = new HashSet<>();
+        for (ObjectNode node : queryObjects(SELECT_DESCENDANT_OBJECTS, new HashSet<>(objectIdentityIds))) {
+            found.add(node.id);
+            if (node.advertisementId != null) {
+                advertisementIds.add(node.advertisementId);
+            }
+        }
+        return found.containsAll(objectIdentityIds) ? advertisementIds : null;
+    }
+
+    /**
+     * Recreates the whole table from the ACL tables, including the closure table of the object hierarchy.
+     */
+    @Transactional
+    public void rebuild() {
+        aclObjectAncestors.rebuild();
+        Map<Long, ObjectNode> nodes = new HashMap<>();
+        for (ObjectNode node : jdbcTemplate.getJdbcOperations().query(SELECT_OBJECTS, this::mapObjectNode)) {
+            nodes.put(node.id, node);
+        }
+        jdbcTemplate.getJdbcOperations().query(SELECT_GRANTING_ENTRIES, (RowCallbackHandler) rs -> addGrantedMask(nodes, rs));
+
+        List<ObjectNode> advertisements = new ArrayList<>();
+        for (ObjectNode node : nodes.values()) {
+            if (node.advertisementId != null) {
+                advertisements.add(node);
+            }
+        }
+        jdbcTemplate.getJdbcOperations().update(DELETE_ALL);
+        int rows = insert(advertisements, nodes);
+        logger.info("rebuilt advertisement visibility: {} rows for {} advertisements", rows, advertisements.size());
+        eventPublisher.publishEvent(new AdvertisementVisibilityChangedEvent(this, null, null));
+    }
+
+    private int insert(List<ObjectNode> advertisements, Map<Long, ObjectNode> nodes) {
+        List<Object[]> rows = new ArrayList<>();
+        for (ObjectNode advertisement : advertisements) {
+            for (Map.Entry<Long, Integer> sidMask : effectiveMasks(advertisement, nodes).entrySet()) {
+                rows.add(new Object[]{sidMask.getKey(), advertisement.advertisementId, sidMask.getValue()});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.getJdbcOperations().batchUpdate(INSERT, rows);
+        }
+        return rows.size();
+    }
+
+    /**
+     * Combines the granted masks per sid of the object and - as long as entries are inherited - of its ancestors.
+     */
+    private static Map<Long, Integer> effectiveMasks(ObjectNode node, Map<Long, ObjectNode> nodes) {
+        Map<Long, Integer> masks = new HashMap<>();
+        ObjectNode current = node;
+        while (current != null) {
+            current.grantedMasks.forEach((sid, mask) -> masks.merge(sid, mask, (left, right) -> left | right));
+            current = current.entriesInheriting && current.parentId != null ? nodes.get(current.parentId) : null;
+        }
+        return masks;
+    }
+
+    private List<ObjectNode> queryObjects(String sql, Collection<Long> ids) {
+        List<ObjectNode> objects = new ArrayList<>();
+        for (List<Long> chunk : chunks(ids)) {
+            objects.addAll(jdbcTemplate.query(sql, new MapSqlParameterSource("ids", chunk), this::mapObjectNode));
+        }
+        return objects;
+    }
+
+    private ObjectNode mapObjectNode(ResultSet rs, int rowNum) throws SQLException {
+        long parentId = rs.getLong("parent_object");
+        Long parent = rs.wasNull() ? null : parentId;
+        Long advertisementId = null;
+        if (Advertisement.class.getName().equals(rs.getString("class"))) {
+            try {
+                advertisementId = Long.valueOf(rs.getString("object_id_identity"));
+            } catch (NumberFormatException e) {
+                logger.warn("ignore advertisement with non-numeric identity {}", rs.getString("object_id_identity"));
+            }
+        }
+        return new ObjectNode(rs.getLong("id"), parent, rs.getBoolean("entries_inheriting"), advertisementId);
+    }
+
+    private static void addGrantedMask(Map<Long, ObjectNode> nodes, ResultSet rs) throws SQLException {
+        ObjectNode node = nodes.get(rs.getLong("acl_object_identity"));
+        if (node != null) {
+            node.grantedMasks.merge(rs.getLong("sid"), rs.getInt("mask"), (left, right) -> left | right);
+        }
+    }
+
+    private static List<List<Long>> chunks(Collection<Long> ids) {
+        List<Long> list = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += CHUNK_SIZE) {
+            chunks.add(list.subList(from, Math.min(from + CHUNK_SIZE, list.size())));
+        }
+        return chunks;
+    }
+
+    private static class ObjectNode {
+        final Long id;
+        final Long parentId;
+        final boolean entriesInheriting;
+        final Long advertisementId; // null in case the object is no advertisement (e.g. bulletinboard)
+        final Map<Long, Integer> grantedMasks = new HashMap<>(); // sid -> combined mask of granting ACEs
+
+        ObjectNode(Long id, Long parentId, boolean entriesInheriting, Long advertisementId) {
+            this.id = id;
+            this.parentId = parentId;
+            this.entriesInheriting = entriesInheriting;
+            this.advertisementId = advertisementId;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.sap.cp.appsec.security;
+
+import com.sap.cp.appsec.domain.AclAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory catalog of the values of all {@link AclAttribute}s, i.e. of the non-principal sids, sorted per attribute
+ * to answer prefix queries without database access.
+ *
+ * Sids created by this application instance are added with the {@link AclSidCreatedEvent}. Sids created or deleted
+ * otherwise, e.g. by other instances or SQL scripts, are considered with every {@link #refresh()}, which reloads all
+ * non-principal sids every {@code acl.attribute-catalog.refresh-seconds}. The ids of the sids are not increasing,
+ * e.g. the populated sids have higher ids than the sequence generates.
+ */
+@Component
+public class AttributeValueCatalog {
+    private static final String SELECT_SIDS = "SELECT sid FROM ACL_SID WHERE principal = false";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final long refreshSeconds;
+    private final Map<AclAttribute, NavigableSet<String>> valuesByAttribute = new EnumMap<>(AclAttribute.class);
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private ScheduledExecutorService executor;
+
+    public AttributeValueCatalog(NamedParameterJdbcTemplate jdbcTemplate,
+                                 @Value("${acl.attribute-catalog.refresh-seconds:60}") long refreshSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.refreshSeconds = refreshSeconds;
+        for (AclAttribute attribute : AclAttribute.values()) {
+            valuesByAttribute.put(attribute, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    /**
+     * @param prefix prefix of the values, {@code null} or empty for all values
+     * @param limit  maximum number of values
+     * @return the values of the attribute in ascending order
+     */
+    public List<String> findValues(AclAttribute attribute, String prefix, int limit) {
+        NavigableSet<String> values = valuesByAttribute.get(attribute);
+        List<String> result = new ArrayList<>();
+        for (String value : prefix == null ? values : values.tailSet(prefix, true)) {
+            if (result.size() >= limit || (prefix != null && !value.startsWith(prefix))) {
+                break;
+            }
+            result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Reloads all sids. Values that are added meanwhile, e.g. with an {@link AclSidCreatedEvent}, are kept.
+     */
+    public synchronized void refresh() {
+        Map<AclAttribute, Set<String>> previousValues = new EnumMap<>(AclAttribute.class);
+        Map<AclAttribute, Set<String>> loadedValues = new EnumMap<>(AclAttribute.class);
+        for (AclAttribute attribute : AclAttribute.values()) {
+            previousValues.put(attribute, new HashSet<>(valuesByAttribute.get(attribute)));
+            loadedValues.put(attribute, new HashSet<>());
+        }
+        jdbcTemplate.query(SELECT_SIDS, (RowCallbackHandler) rs -> add(rs.getString("sid"), loadedValues));
+
+        for (AclAttribute attribute : AclAttribute.values()) {
+            Set<String> removedValues = previousValues.get(attribute);
+            removedValues.removeAll(loadedValues.get(attribute));
+            valuesByAttribute.get(attribute).addAll(loadedValues.get(attribute));
+            valuesByAttribute.get(attribute).removeAll(removedValues);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        refresh();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attribute-catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::refreshSafely, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds sids after they are committed, or immediately in case there is no transaction.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSidCreated(AclSidCreatedEvent event) {
+        if (!event.isPrincipal()) {
+            add(event.getSid(), valuesByAttribute);
+        }
+    }
+
+    private static void add(String sid, Map<AclAttribute, ? extends Set<String>> values) {
+        for (AclAttribute attribute : AclAttribute.values()) {
+            String sidPrefix = attribute.getSidPrefix();
+            if (sid.startsWith(sidPrefix) && sid.length() > sidPrefix.length()) {
+                values.get(attribute).add(sid.substring(sidPrefix.length()));
+                return;
+            }
+        }
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (RuntimeException e) { // keep refreshing
+            logger.warn("refresh of attribute catalog failed", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.sap.cp.appsec.security;
+
+import org.springframework.security.acls.model.Permission;
+
+/**
+ * A set of permissions on a single object for a user principal, used for bulk grants and revocations.
+ */
+public class PermissionAssignment {
+
+    private final Long objectId;
+    private final String principal;
+    private final Permission[] permissions;
+
+    public PermissionAssignment(Long objectId, String principal, Permission[] permissions) {
+        this.objectId = objectId;
+        this.principal = principal;
+        this.permissions = permissions;
+    }
+
+    public Long getObjectId() {
+        return objectId;
+    }
+
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public Permission[] getPermissions() {
+        return permissions;
+    }
+}
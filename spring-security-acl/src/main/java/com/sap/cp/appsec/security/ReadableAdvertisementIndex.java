@@ -0,0 +1,277 @@
+package com.sap.cp.appsec.security;
+
+import com.sap.cp.appsec.config.AclCacheInvalidatedEvent;
+import com.sap.cp.appsec.domain.Advertisement;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional in-memory index, that keeps per sid a compressed bitmap of the advertisement ids the sid can read. A
+ * request ORs the bitmaps of the callers sids and fetches only the ids of the requested page from the ADVERTISEMENT
+ * table, instead of joining the ACL tables with a potentially large list of sids.
+ * <p>
+ * The index is loaded on startup and kept up-to-date with every {@link AdvertisementVisibilityChangedEvent}. ACL
+ * changes of other application instances are applied as soon as they are received as
+ * {@link AclCacheInvalidatedEvent}, i.e. in case an {@code acl.cache.invalidation} channel is configured, otherwise
+ * only after a restart. Enable it with {@code acl.readable-index.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "acl.readable-index.enabled", havingValue = "true")
+public class ReadableAdvertisementIndex {
+    public static final String SORT_PROPERTY = "ads.id";
+
+    private static final int CHUNK_SIZE = 1000;
+
+    // direct permissions, corresponds to AdvertisementAclRepository.FIND_ADS_FOR_SID_SUBQUERY
+    private static final String SELECT_DIRECT_GRANTS =
+            "SELECT sid.sid, obj.object_id_identity_num AS advertisement_id " +
+            "FROM ACL_ENTRY entry " +
+            "INNER JOIN ACL_OBJECT_IDENTITY obj ON entry.acl_object_identity = obj.id " +
+            "INNER JOIN ACL_CLASS cls ON obj.object_id_class = cls.id " +
+            "INNER JOIN ACL_SID sid ON entry.sid = sid.id " +
+            "WHERE cls.class = '" + Advertisement.class.getName() + "' " +
+                "AND obj.object_id_identity_num IS NOT NULL " +
+                "AND entry.granting = true " +
+                "AND BITAND(entry.mask, :mask) <> 0";
+    private static final String SELECT_DIRECT_GRANTS_BY_ID =
+            SELECT_DIRECT_GRANTS + " AND obj.object_id_identity_num IN (:ids)";
+
+    // permissions including the ones inherited from bulletinboard and location
+    private static final String SELECT_HIERARCHICAL_GRANTS =
+            "SELECT sid.sid, visibility.advertisement_id " +
+            "FROM ACL_ADVERTISEMENT_VISIBILITY visibility " +
+            "INNER JOIN ACL_SID sid ON visibility.sid = sid.id " +
+            "WHERE BITAND(visibility.mask, :mask) <> 0";
+    private static final String SELECT_HIERARCHICAL_GRANTS_BY_ID =
+            SELECT_HIERARCHICAL_GRANTS + " AND visibility.advertisement_id IN (:ids)";
+
+    private static final String SELECT_PUBLISHED = "SELECT id FROM ADVERTISEMENT WHERE is_published = TRUE";
+    private static final String SELECT_PUBLISHED_BY_ID = SELECT_PUBLISHED + " AND id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final AdvertisementVisibilityIndex visibilityIndex;
+    private final int mask = BasePermission.READ.getMask();
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object writeMonitor = new Object();
+    private Map<String, Roaring64NavigableMap> directBySid = new HashMap<>();
+    private Map<String, Roaring64NavigableMap> hierarchicalBySid = new HashMap<>();
+    private Roaring64NavigableMap published = new Roaring64NavigableMap();
+
+    public ReadableAdvertisementIndex(NamedParameterJdbcTemplate jdbcTemplate,
+                                      AdvertisementVisibilityIndex visibilityIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.visibilityIndex = visibilityIndex;
+    }
+
+    /**
+     * @return ids of the advertisements any of the sids has been granted read permission for explicitly
+     */
+    public Roaring64NavigableMap findReadable(Collection<String> sids) {
+        lock.readLock().lock();
+        try {
+            return union(directBySid, sids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of the published advertisements any of the sids can read, explicitly or inherited via its parents
+     */
+    public Roaring64NavigableMap findReadablePublished(Collection<String> sids) {
+        lock.readLock().lock();
+        try {
+            Roaring64NavigableMap result = union(hierarchicalBySid, sids);
+            result.and(published);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The index provides the ids in their natural order only.
+     */
+    public static boolean supports(Sort sort) {
+        Iterator<Sort.Order> orders = sort.iterator();
+        return !orders.hasNext() || (orders.next().getProperty().equals(SORT_PROPERTY) && !orders.hasNext());
+    }
+
+    /**
+     * @return the ids of the requested page, ordered according to the direction of the {@link #SORT_PROPERTY} sort
+     */
+    public static List<Long> getPage(Roaring64NavigableMap ids, Pageable pageable) {
+        Sort.Order order = pageable.getSort().getOrderFor(SORT_PROPERTY);
+        boolean descending = order != null && order.isDescending();
+        long cardinality = ids.getLongCardinality();
+        long end = Math.min(cardinality, pageable.getOffset() + pageable.getPageSize());
+
+        List<Long> page = new ArrayList<>();
+        for (long position = pageable.getOffset(); position < end; position++) {
+            page.add(ids.select(descending ? cardinality - 1 - position : position));
+        }
+        return page;
+    }
+
+    /**
+     * Keyset pagination: takes the ids that are lower than the given id in descending order.
+     *
+     * @param afterId last id of the previous slice, {@code null} for the first slice
+     */
+    public static List<Long> getIdsAfter(Roaring64NavigableMap ids, Long afterId, int limit) {
+        List<Long> slice = new ArrayList<>();
+        if (afterId != null && afterId <= 0) {
+            return slice;
+        }
+        long position = afterId == null ? ids.getLongCardinality() : ids.rankLong(afterId - 1);
+        while (position > 0 && slice.size() < limit) {
+            slice.add(ids.select(--position));
+        }
+        return slice;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        synchronized (writeMonitor) {
+            Map<String, Roaring64NavigableMap> direct = new HashMap<>();
+            Map<String, Roaring64NavigableMap> hierarchical = new HashMap<>();
+            Roaring64NavigableMap publishedIds = new Roaring64NavigableMap();
+            MapSqlParameterSource parameters = new MapSqlParameterSource("mask", mask);
+
+            jdbcTemplate.query(SELECT_DIRECT_GRANTS, parameters, (RowCallbackHandler) rs -> bitmap(direct,
+                    rs.getString("sid")).addLong(rs.getLong("advertisement_id")));
+            jdbcTemplate.query(SELECT_HIERARCHICAL_GRANTS, parameters, (RowCallbackHandler) rs -> bitmap(hierarchical,
+                    rs.getString("sid")).addLong(rs.getLong("advertisement_id")));
+            jdbcTemplate.getJdbcOperations().query(SELECT_PUBLISHED, (RowCallbackHandler) rs ->
+                    publishedIds.addLong(rs.getLong("id")));
+            optimize(direct.values());
+            optimize(hierarchical.values());
+            publishedIds.runOptimize();
+
+            lock.writeLock().lock();
+            try {
+                directBySid = direct;
+                hierarchicalBySid = hierarchical;
+                published = publishedIds;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("loaded readable advertisement index: {} sids with direct, {} sids with hierarchical permissions, "
+                    + "{} published advertisements", direct.size(), hierarchical.size(), publishedIds.getLongCardinality());
+        }
+    }
+
+    /**
+     * Applies the changes after the ACL changes are committed, or immediately in case there is no transaction.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVisibilityChanged(AdvertisementVisibilityChangedEvent event) {
+        if (event.isFullRebuild()) {
+            load();
+        } else if (!event.getAdvertisementIds().isEmpty()) {
+            update(event.getAdvertisementIds());
+        }
+    }
+
+    /**
+     * Applies the ACL changes of any application instance. The whole index is reloaded in case a changed ACL was
+     * deleted meanwhile, as its advertisements are not known anymore.
+     */
+    @EventListener
+    public void onAclCacheInvalidated(AclCacheInvalidatedEvent event) {
+        Set<Long> advertisementIds = event.isCleared() ? null
+                : visibilityIndex.findAdvertisementIds(event.getAclIds());
+        if (advertisementIds == null) {
+            load();
+        } else if (!advertisementIds.isEmpty()) {
+            update(new ArrayList<>(advertisementIds));
+        }
+    }
+
+    private void update(List<Long> advertisementIds) {
+        synchronized (writeMonitor) {
+            Roaring64NavigableMap changed = new Roaring64NavigableMap();
+            Map<String, Roaring64NavigableMap> direct = new HashMap<>();
+            Map<String, Roaring64NavigableMap> hierarchical = new HashMap<>();
+            Roaring64NavigableMap publishedIds = new Roaring64NavigableMap();
+
+            for (int from = 0; from < advertisementIds.size(); from += CHUNK_SIZE) {
+                List<Long> chunk = advertisementIds.subList(from, Math.min(from + CHUNK_SIZE, advertisementIds.size()));
+                for (Long id : chunk) {
+                    changed.addLong(id);
+                }
+                MapSqlParameterSource parameters = new MapSqlParameterSource("mask", mask)
+                        .addValue("ids", chunk);
+
+                jdbcTemplate.query(SELECT_DIRECT_GRANTS_BY_ID, parameters, (RowCallbackHandler) rs -> bitmap(
+                        direct, rs.getString("sid")).addLong(rs.getLong("advertisement_id")));
+                jdbcTemplate.query(SELECT_HIERARCHICAL_GRANTS_BY_ID, parameters, (RowCallbackHandler) rs -> bitmap(
+                        hierarchical, rs.getString("sid")).addLong(rs.getLong("advertisement_id")));
+                jdbcTemplate.query(SELECT_PUBLISHED_BY_ID, parameters, (RowCallbackHandler) rs ->
+                        publishedIds.addLong(rs.getLong("id")));
+            }
+
+            lock.writeLock().lock();
+            try {
+                replace(directBySid, changed, direct);
+                replace(hierarchicalBySid, changed, hierarchical);
+                published.andNot(changed);
+                published.or(publishedIds);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static void replace(Map<String, Roaring64NavigableMap> index, Roaring64NavigableMap changed,
+                                Map<String, Roaring64NavigableMap> changes) {
+        Iterator<Roaring64NavigableMap> bitmaps = index.values().iterator();
+        while (bitmaps.hasNext()) {
+            Roaring64NavigableMap bitmap = bitmaps.next();
+            bitmap.andNot(changed);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove();
+            }
+        }
+        changes.forEach((sid, ids) -> bitmap(index, sid).or(ids));
+    }
+
+    private static Roaring64NavigableMap union(Map<String, Roaring64NavigableMap> index, Collection<String> sids) {
+        Roaring64NavigableMap result = new Roaring64NavigableMap();
+        for (String sid : sids) {
+            Roaring64NavigableMap bitmap = index.get(sid);
+            if (bitmap != null) {
+                result.or(bitmap);
+            }
+        }
+        return result;
+    }
+
+    private static Roaring64NavigableMap bitmap(Map<String, Roaring64NavigableMap> index, String sid) {
+        return index.computeIfAbsent(sid, key -> new Roaring64NavigableMap());
+    }
+
+    private static void optimize(Collection<Roaring64NavigableMap> bitmaps) {
+        for (Roaring64NavigableMap bitmap : bitmaps) {
+            bitmap.runOptimize();
+        }
+    }
+}
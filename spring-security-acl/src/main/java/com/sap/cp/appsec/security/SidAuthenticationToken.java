@@ -0,0 +1,203 @@
+package com.sap.cp.appsec.security;
+
+import org.springframework.security.acls.domain.GrantedAuthoritySid;
+import org.springframework.security.acls.domain.PrincipalSid;
+import org.springframework.security.acls.domain.SidRetrievalStrategyImpl;
+import org.springframework.security.acls.model.Sid;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Wraps the authentication created from the JWT token, and computes the sids of the user once per request, i.e. the
+ * principal sid and the granted authority sids as provided by {@link SidRetrievalStrategyImpl}.
+ *
+ * The principal is still the token, so that {@code @AuthenticationPrincipal Token} and
+ * {@link com.sap.cloud.security.xsuaa.token.SpringSecurityContext#getToken()} keep working.
+ */
+public class SidAuthenticationToken extends AbstractAuthenticationToken {
+
+    private final Authentication authentication;
+    private final List<Sid> aclSids;
+    private final SortedSet<String> sids;
+    private final String sidsHash;
+    private final SortedSet<String> authoritySids;
+    private final String authoritySidsHash;
+
+    public SidAuthenticationToken(Authentication authentication) {
+        super(authentication.getAuthorities());
+        this.authentication = authentication;
+        this.aclSids = retrieveAclSids(authentication);
+        this.sids = toNames(aclSids, true);
+        this.sidsHash = hash(sids);
+        this.authoritySids = toNames(aclSids, false);
+        this.authoritySidsHash = hash(authoritySids);
+        setDetails(authentication.getDetails());
+        setAuthenticated(authentication.isAuthenticated());
+    }
+
+    /**
+     * Creates a new authentication with the authorities and sids of the given one, but with the details of the wrapped
+     * authentication, e.g. for another request with the same token.
+     */
+    public SidAuthenticationToken(SidAuthenticationToken authentication) {
+        super(authentication.getAuthorities());
+        this.authentication = authentication.authentication;
+        this.aclSids = authentication.aclSids;
+        this.sids = authentication.sids;
+        this.sidsHash = authentication.sidsHash;
+        this.authoritySids = authentication.authoritySids;
+        this.authoritySidsHash = authentication.authoritySidsHash;
+        setDetails(this.authentication.getDetails());
+        setAuthenticated(authentication.isAuthenticated());
+    }
+
+    @Override
+    public Object getCredentials() {
+        return authentication.getCredentials();
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return authentication.getPrincipal();
+    }
+
+    @Override
+    public String getName() {
+        return authentication.getName();
+    }
+
+    /**
+     * @return the unmodifiable principal sid and granted authority sids, e.g. to check the permissions of an ACL
+     */
+    public List<Sid> getAclSids() {
+        return aclSids;
+    }
+
+    /**
+     * @return the sorted, unmodifiable names of the principal sid and granted authority sids
+     */
+    public SortedSet<String> getSids() {
+        return sids;
+    }
+
+    /**
+     * @return a hash of {@link #getSids()}, which is equal for users with the same sids
+     */
+    public String getSidsHash() {
+        return sidsHash;
+    }
+
+    /**
+     * @return the sorted, unmodifiable names of the granted authority sids, i.e. without the principal sid
+     */
+    public SortedSet<String> getAuthoritySids() {
+        return authoritySids;
+    }
+
+    /**
+     * @return a hash of {@link #getAuthoritySids()}, which is equal for users with the same attributes
+     */
+    public String getAuthoritySidsHash() {
+        return authoritySidsHash;
+    }
+
+    /**
+     * @return the principal sid and granted authority sids of the authentication, precomputed in case it is a
+     * {@link SidAuthenticationToken}
+     */
+    public static List<Sid> getAclSids(Authentication authentication) {
+        if (authentication instanceof SidAuthenticationToken) {
+            return ((SidAuthenticationToken) authentication).getAclSids();
+        }
+        return retrieveAclSids(authentication);
+    }
+
+    /**
+     * @return the sids of the authentication, precomputed in case it is a {@link SidAuthenticationToken}
+     */
+    public static SortedSet<String> getSids(Authentication authentication) {
+        if (authentication instanceof SidAuthenticationToken) {
+            return ((SidAuthenticationToken) authentication).getSids();
+        }
+        return toNames(retrieveAclSids(authentication), true);
+    }
+
+    /**
+     * @return the granted authority sids of the authentication, precomputed in case it is a
+     * {@link SidAuthenticationToken}
+     */
+    public static SortedSet<String> getAuthoritySids(Authentication authentication) {
+        if (authentication instanceof SidAuthenticationToken) {
+            return ((SidAuthenticationToken) authentication).getAuthoritySids();
+        }
+        return toNames(retrieveAclSids(authentication), false);
+    }
+
+    /**
+     * @return the hash of the sids of the authentication, precomputed in case it is a {@link SidAuthenticationToken}
+     */
+    public static String getSidsHash(Authentication authentication) {
+        if (authentication instanceof SidAuthenticationToken) {
+            return ((SidAuthenticationToken) authentication).getSidsHash();
+        }
+        return hash(toNames(retrieveAclSids(authentication), true));
+    }
+
+    /**
+     * @return the hash of the granted authority sids of the authentication, precomputed in case it is a
+     * {@link SidAuthenticationToken}
+     */
+    public static String getAuthoritySidsHash(Authentication authentication) {
+        if (authentication instanceof SidAuthenticationToken) {
+            return ((SidAuthenticationToken) authentication).getAuthoritySidsHash();
+        }
+        return hash(toNames(retrieveAclSids(authentication), false));
+    }
+
+    /**
+     * @return the name of the principal sid of the authentication
+     */
+    public static String getPrincipalSid(Authentication authentication) {
+        return new PrincipalSid(authentication).getPrincipal();
+    }
+
+    private static List<Sid> retrieveAclSids(Authentication authentication) {
+        return Collections.unmodifiableList(new SidRetrievalStrategyImpl().getSids(authentication));
+    }
+
+    private static SortedSet<String> toNames(List<Sid> aclSids, boolean includePrincipal) {
+        SortedSet<String> sids = new TreeSet<>();
+        for (Sid sid : aclSids) {
+            if (sid instanceof PrincipalSid) {
+                if (includePrincipal) {
+                    sids.add(((PrincipalSid) sid).getPrincipal());
+                }
+            } else if (sid instanceof GrantedAuthoritySid) {
+                sids.add(((GrantedAuthoritySid) sid).getGrantedAuthority());
+            }
+        }
+        return Collections.unmodifiableSortedSet(sids);
+    }
+
+    private static String hash(SortedSet<String> sids) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String sid : sids) {
+                digest.update(sid.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.sap.cp.appsec.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Caches the authentication built from a JWT token until the token expires, so that clients that send the same token
+ * with many requests pay for the signature validation and the extraction of the authorities only once.
+ *
+ * The cache is keyed by the SHA-256 digest of the token, so the tokens are not kept in memory as key. Every request
+ * gets a new {@link SidAuthenticationToken} with the cached authorities and sids, as the authentication provider sets
+ * the details of the request (e.g. the remote address) on it.
+ *
+ * Hit, miss and eviction statistics are exported as "cache.*" metrics with tag "cache=verified_tokens".
+ */
+public class VerifiedTokenCache implements MeterBinder {
+    public static final String CACHE_NAME = "verified_tokens";
+
+    private final Cache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String digest, VerifiedToken token, long currentTime) {
+                        Instant expiresAt = token.jwt.getExpiresAt();
+                        return expiresAt == null ? 0 : Math.max(0, Duration.between(Instant.now(), expiresAt).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(digest, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return decoder that validates only tokens that are not cached yet
+     */
+    public JwtDecoder decoder(JwtDecoder jwtDecoder) {
+        return tokenValue -> {
+            VerifiedToken verifiedToken = cache.getIfPresent(digest(tokenValue));
+            return verifiedToken != null ? verifiedToken.jwt : jwtDecoder.decode(tokenValue);
+        };
+    }
+
+    /**
+     * @return converter that caches the authentication built by the given converter, and returns a copy of it
+     */
+    public Converter<Jwt, AbstractAuthenticationToken> converter(Converter<Jwt, SidAuthenticationToken> converter) {
+        return jwt -> {
+            String digest = digest(jwt.getTokenValue());
+            VerifiedToken verifiedToken = cache.asMap().get(digest); // hit or miss is recorded by the decoder
+            if (verifiedToken == null || verifiedToken.jwt != jwt) {
+                verifiedToken = new VerifiedToken(jwt, converter.convert(jwt));
+                cache.put(digest, verifiedToken);
+            }
+            return new SidAuthenticationToken(verifiedToken.authentication);
+        };
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    private static String digest(String tokenValue) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(tokenValue.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static class VerifiedToken {
+        private final Jwt jwt;
+        private final SidAuthenticationToken authentication;
+
+        VerifiedToken(Jwt jwt, SidAuthenticationToken authentication) {
+            this.jwt = jwt;
+            this.authentication = authentication;
+        }
+    }
+}
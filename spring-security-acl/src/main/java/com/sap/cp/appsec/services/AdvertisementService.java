@@ -4,21 +4,27 @@ import com.sap.cloud.security.xsuaa.token.XsuaaToken;
 import com.sap.cp.appsec.domain.AclAttribute;
 import com.sap.cp.appsec.domain.Advertisement;
 import com.sap.cp.appsec.domain.AdvertisementAclRepository;
+import com.sap.cp.appsec.domain.AdvertisementExportRepository;
 import com.sap.cp.appsec.exceptions.NotFoundException;
 import com.sap.cp.appsec.security.AclSupport;
+import com.sap.cp.appsec.security.PermissionAssignment;
+import com.sap.cp.appsec.security.ReadableAdvertisementIndex;
+import com.sap.cp.appsec.security.SidAuthenticationToken;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.acls.domain.BasePermission;
-import org.springframework.security.acls.domain.GrantedAuthoritySid;
 import org.springframework.security.acls.domain.PrincipalSid;
-import org.springframework.security.acls.domain.SidRetrievalStrategyImpl;
 import org.springframework.security.acls.model.Permission;
-import org.springframework.security.acls.model.Sid;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -26,10 +32,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 
 import javax.transaction.Transactional;
 import javax.validation.constraints.Min;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Consumer;
 
 
 @Service
@@ -37,16 +41,24 @@ public class AdvertisementService {
 
     private final AdvertisementAclRepository repository;
 
+    private final AdvertisementExportRepository exportRepository;
+
     private final AclSupport aclService;
 
+    private final ReadableAdvertisementIndex readableIndex; // null in case not enabled
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
 
     @Autowired
     public AdvertisementService(AdvertisementAclRepository repository,
-                                AclSupport aclService) {
+                                AdvertisementExportRepository exportRepository,
+                                AclSupport aclService,
+                                ObjectProvider<ReadableAdvertisementIndex> readableIndex) {
         this.repository = repository;
+        this.exportRepository = exportRepository;
         this.aclService = aclService;
+        this.readableIndex = readableIndex.getIfAvailable();
     }
 
     @Transactional
@@ -75,26 +87,120 @@ public class AdvertisementService {
         return advertisement.get();
     }
 
-    public Page<Advertisement> findAll(int pageNumber, int pageSize, Sort.Direction sortDirection, String[] properties) throws NotFoundException {
-        MySidRetrievalStrategyImpl sidRetrievalStrategy = new MySidRetrievalStrategyImpl();
-        Set<String> sids = sidRetrievalStrategy.getGrantedAuthorities(SecurityContextHolder.getContext().getAuthentication());
-        sids.add(sidRetrievalStrategy.getPrincipalSid(SecurityContextHolder.getContext().getAuthentication()));
+    /**
+     * Like {@link #findById(Long)}, but reads only the version of the advertisement.
+     */
+    @PreAuthorize("hasPermission(#id, 'com.sap.cp.appsec.domain.Advertisement', 'read')")
+    public long findVersionById(Long id) throws NotFoundException {
+        return repository.findVersionById(id).orElseThrow(() -> {
+            NotFoundException notFoundException = new NotFoundException("no Advertisement with id " + id);
+            logger.warn("request failed", notFoundException);
+            return notFoundException;
+        });
+    }
 
+    public Page<Advertisement> findAll(int pageNumber, int pageSize, Sort.Direction sortDirection, String[] properties) throws NotFoundException {
+        Set<String> sids = getCurrentSids();
         PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, new Sort(sortDirection, properties));
 
+        if (readableIndex != null && ReadableAdvertisementIndex.supports(pageRequest.getSort())) {
+            return findPage(readableIndex.findReadable(sids), pageRequest);
+        }
         return repository.findAllByPermission(BasePermission.READ.getMask(), sids.toArray(new String[0]), pageRequest);
     }
 
     public Page<Advertisement> findAllPublished(int pageNumber, int pageSize, Sort.Direction sortDirection, String[] properties) throws NotFoundException {
-        MySidRetrievalStrategyImpl sidRetrievalStrategy = new MySidRetrievalStrategyImpl();
-        Set<String> sids = sidRetrievalStrategy.getGrantedAuthorities(SecurityContextHolder.getContext().getAuthentication());
-        sids.add(sidRetrievalStrategy.getPrincipalSid(SecurityContextHolder.getContext().getAuthentication()));
-
+        Set<String> sids = getCurrentSids();
         PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, new Sort(sortDirection, properties));
 
+        if (readableIndex != null && ReadableAdvertisementIndex.supports(pageRequest.getSort())) {
+            return findPage(readableIndex.findReadablePublished(sids), pageRequest);
+        }
         return repository.findAllPublishedByHierarchicalPermission(BasePermission.READ.getMask(), sids.toArray(new String[0]), pageRequest);
     }
 
+    /**
+     * Like {@link #findAll} but skips the count query, i.e. the slice tells only whether there is a next page.
+     */
+    public Slice<Advertisement> findAllAsSlice(int pageNumber, int pageSize, Sort.Direction sortDirection, String[] properties) {
+        Set<String> sids = getCurrentSids();
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, new Sort(sortDirection, properties));
+
+        if (readableIndex != null && ReadableAdvertisementIndex.supports(pageRequest.getSort())) {
+            return findPage(readableIndex.findReadable(sids), pageRequest); // count is for free
+        }
+        return repository.findSliceByPermission(BasePermission.READ.getMask(), sids.toArray(new String[0]), pageRequest);
+    }
+
+    /**
+     * Like {@link #findAllPublished} but skips the count query, i.e. the slice tells only whether there is a next page.
+     */
+    public Slice<Advertisement> findAllPublishedAsSlice(int pageNumber, int pageSize, Sort.Direction sortDirection, String[] properties) {
+        Set<String> sids = getCurrentSids();
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, new Sort(sortDirection, properties));
+
+        if (readableIndex != null && ReadableAdvertisementIndex.supports(pageRequest.getSort())) {
+            return findPage(readableIndex.findReadablePublished(sids), pageRequest);
+        }
+        return repository.findSlicePublishedByHierarchicalPermission(BasePermission.READ.getMask(), sids.toArray(new String[0]), pageRequest);
+    }
+
+    public long countAll() {
+        Set<String> sids = getCurrentSids();
+
+        if (readableIndex != null) {
+            return readableIndex.findReadable(sids).getLongCardinality();
+        }
+        return repository.countByPermission(BasePermission.READ.getMask(), sids.toArray(new String[0]));
+    }
+
+    public long countAllPublished() {
+        Set<String> sids = getCurrentSids();
+
+        if (readableIndex != null) {
+            return readableIndex.findReadablePublished(sids).getLongCardinality();
+        }
+        return repository.countPublishedByHierarchicalPermission(BasePermission.READ.getMask(), sids.toArray(new String[0]));
+    }
+
+    /**
+     * Keyset pagination ordered by id descending.
+     *
+     * @param afterId id of the last advertisement of the previous slice, {@code null} for the first slice
+     */
+    public Slice<Advertisement> findAllAfter(Long afterId, int pageSize) {
+        Set<String> sids = getCurrentSids();
+
+        if (readableIndex != null) {
+            return findSlice(readableIndex.findReadable(sids), afterId, pageSize);
+        }
+        return repository.findAllByPermissionAfter(BasePermission.READ.getMask(), sids.toArray(new String[0]),
+                afterId == null ? Long.MAX_VALUE : afterId, PageRequest.of(0, pageSize));
+    }
+
+    /**
+     * Keyset pagination ordered by id descending.
+     *
+     * @param afterId id of the last advertisement of the previous slice, {@code null} for the first slice
+     */
+    public Slice<Advertisement> findAllPublishedAfter(Long afterId, int pageSize) {
+        Set<String> sids = getCurrentSids();
+
+        if (readableIndex != null) {
+            return findSlice(readableIndex.findReadablePublished(sids), afterId, pageSize);
+        }
+        return repository.findAllPublishedByHierarchicalPermissionAfter(BasePermission.READ.getMask(),
+                sids.toArray(new String[0]), afterId == null ? Long.MAX_VALUE : afterId, PageRequest.of(0, pageSize));
+    }
+
+    /**
+     * Passes all advertisements the current user has read permission for to the action, ordered by id descending.
+     * Unlike the pages, they are read with a single query and are not kept in memory.
+     */
+    public void exportAll(Consumer<Advertisement> action) {
+        exportRepository.forEachByPermission(BasePermission.READ.getMask(), getCurrentSids(), action);
+    }
+
     @PreAuthorize("hasPermission(#updatedAds, 'write')")
     public Advertisement update(Advertisement updatedAds) {
         assert repository.existsById(updatedAds.getId());
@@ -123,6 +229,30 @@ public class AdvertisementService {
                 permissions);
     }
 
+    /**
+     * Grants permissions for many advertisements at once. Requires administration permission for all of them.
+     */
+    @Transactional
+    public void grantPermissions(List<PermissionAssignment> assignments) {
+        List<PermissionAssignment> uniqueAssignments = getUniqueUserNames(assignments);
+        aclService.checkPermission(Advertisement.class.getName(), getAdvertisementIds(uniqueAssignments),
+                BasePermission.ADMINISTRATION);
+
+        aclService.grantPermissionsToUsers(Advertisement.class.getName(), uniqueAssignments);
+    }
+
+    /**
+     * Removes permissions for many advertisements at once. Requires administration permission for all of them.
+     */
+    @Transactional
+    public void removePermissions(List<PermissionAssignment> assignments) {
+        List<PermissionAssignment> uniqueAssignments = getUniqueUserNames(assignments);
+        aclService.checkPermission(Advertisement.class.getName(), getAdvertisementIds(uniqueAssignments),
+                BasePermission.ADMINISTRATION);
+
+        aclService.removePermissionsFromUsers(Advertisement.class.getName(), uniqueAssignments);
+    }
+
     @PreAuthorize("hasPermission(#id, 'com.sap.cp.appsec.domain.Advertisement', 'administration')")
     @Transactional
     public void grantPermissionsToUserGroup(Long id, String groupName, Permission[] permissions) {
@@ -156,6 +286,39 @@ public class AdvertisementService {
     }
 
 
+    private Set<String> getCurrentSids() {
+        return SidAuthenticationToken.getSids(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    /**
+     * Fetches the advertisements of the requested page, taking the total number of elements from the index.
+     */
+    private Page<Advertisement> findPage(Roaring64NavigableMap ids, PageRequest pageRequest) {
+        List<Long> pageIds = ReadableAdvertisementIndex.getPage(ids, pageRequest);
+        return new PageImpl<>(findAllInOrder(pageIds), pageRequest, ids.getLongCardinality());
+    }
+
+    private Slice<Advertisement> findSlice(Roaring64NavigableMap ids, Long afterId, int pageSize) {
+        List<Long> sliceIds = ReadableAdvertisementIndex.getIdsAfter(ids, afterId, pageSize + 1);
+        boolean hasNext = sliceIds.size() > pageSize;
+        return new SliceImpl<>(findAllInOrder(hasNext ? sliceIds.subList(0, pageSize) : sliceIds),
+                PageRequest.of(0, pageSize), hasNext);
+    }
+
+    private List<Advertisement> findAllInOrder(List<Long> ids) {
+        Map<Long, Advertisement> adsById = new HashMap<>();
+        repository.findAllById(ids).forEach(ads -> adsById.put(ads.getId(), ads));
+
+        List<Advertisement> content = new ArrayList<>();
+        for (Long id : ids) {
+            Advertisement ads = adsById.get(id);
+            if (ads != null) {
+                content.add(ads);
+            }
+        }
+        return content;
+    }
+
     private String getUniqueCurrentUserName() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         return new PrincipalSid(auth).getPrincipal();
@@ -167,31 +330,20 @@ public class AdvertisementService {
         return origin == null ? userName : XsuaaToken.getUniquePrincipalName(origin, userName);
     }
 
-    // TODO: contribute?? maybe this can be implemented by SidRetrievalStrategyImpl
-    private class MySidRetrievalStrategyImpl extends SidRetrievalStrategyImpl {
-
-        Set<String> getGrantedAuthorities(Authentication authentication) {
-            List<Sid> sids = super.getSids(authentication);
-
-            Set<String> grantedAuthorities = new HashSet<>();
-            for (Sid sid : sids) {
-                if (sid instanceof GrantedAuthoritySid) {
-                    grantedAuthorities.add(((GrantedAuthoritySid) sid).getGrantedAuthority());
-                }
-            }
-            return grantedAuthorities;
+    private List<PermissionAssignment> getUniqueUserNames(List<PermissionAssignment> assignments) {
+        List<PermissionAssignment> uniqueAssignments = new ArrayList<>();
+        for (PermissionAssignment assignment : assignments) {
+            uniqueAssignments.add(new PermissionAssignment(assignment.getObjectId(),
+                    getUniqueUserName(assignment.getPrincipal()), assignment.getPermissions()));
         }
+        return uniqueAssignments;
+    }
 
-        String getPrincipalSid(Authentication authentication) {
-            List<Sid> sids = super.getSids(authentication);
-
-            for (Sid sid : sids) {
-                if (sid instanceof PrincipalSid) {
-                    return ((PrincipalSid) sid).getPrincipal();
-                }
-            }
-            logger.error("Unexpected error: there is no Principal Sid for user");
-            return null; //Should never happen
+    private static Set<Long> getAdvertisementIds(List<PermissionAssignment> assignments) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (PermissionAssignment assignment : assignments) {
+            ids.add(assignment.getObjectId());
         }
+        return ids;
     }
 }
@@ -0,0 +1,15 @@
+-- Effective masks of all advertisements per sid, like AdvertisementVisibilityIndex.rebuild(): the granting ACEs of
+-- the advertisement and of its ancestors, as long as all objects in between inherit their entries.
+INSERT INTO acl_advertisement_visibility (sid, advertisement_id, mask)
+SELECT entry.sid, obj.object_id_identity_num, BIT_OR(entry.mask)
+FROM acl_object_identity obj
+INNER JOIN acl_class cls ON cls.id = obj.object_id_class
+INNER JOIN acl_object_ancestor closure ON closure.descendant = obj.id
+INNER JOIN acl_entry entry ON entry.acl_object_identity = closure.ancestor AND entry.granting = TRUE
+WHERE cls.class = 'com.sap.cp.appsec.domain.Advertisement' AND obj.object_id_identity_num IS NOT NULL
+AND NOT EXISTS (
+    SELECT 1 FROM acl_object_ancestor between_closure
+    INNER JOIN acl_object_identity between_obj ON between_obj.id = between_closure.ancestor
+    WHERE between_closure.descendant = obj.id AND between_closure.depth < closure.depth
+    AND between_obj.entries_inheriting = FALSE)
+GROUP BY entry.sid, obj.object_id_identity_num;
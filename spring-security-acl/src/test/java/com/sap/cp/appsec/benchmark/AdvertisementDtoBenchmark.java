@@ -0,0 +1,76 @@
+package com.sap.cp.appsec.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sap.cp.appsec.domain.Advertisement;
+import com.sap.cp.appsec.dto.AdvertisementDto;
+import com.sap.cp.appsec.dto.AdvertisementListDto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the mapping of a page of advertisements to {@link AdvertisementListDto}, with and without writing it as
+ * JSON response.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sap.cp.appsec.benchmark.AdvertisementDtoBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdvertisementDtoBenchmark {
+
+    @Param({"1", "20", "200"})
+    private int pageSize;
+
+    private List<Advertisement> advertisements;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        advertisements = new ArrayList<>();
+        for (long id = 0; id < pageSize; id++) {
+            Advertisement advertisement = new Advertisement("Advertisement " + id, "contact" + id + "@sap.com");
+            advertisement.setId(id);
+            advertisement.setPublished(id % 2 == 0);
+            // the audit fields are set by JPA only
+            ReflectionTestUtils.setField(advertisement, "createdAt", now);
+            ReflectionTestUtils.setField(advertisement, "modifiedAt", now);
+            ReflectionTestUtils.setField(advertisement, "createdBy", "adOwner");
+            ReflectionTestUtils.setField(advertisement, "modifiedBy", "adOwner");
+            advertisements.add(advertisement);
+        }
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public AdvertisementDto toDto() {
+        return new AdvertisementDto(advertisements.get(0));
+    }
+
+    @Benchmark
+    public AdvertisementListDto toListDto() {
+        return new AdvertisementListDto(advertisements);
+    }
+
+    @Benchmark
+    public byte[] toJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(new AdvertisementListDto(advertisements));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AdvertisementDtoBenchmark.class.getSimpleName()).build()).run();
+    }
+}
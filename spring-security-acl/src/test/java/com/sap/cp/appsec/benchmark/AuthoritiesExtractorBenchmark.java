@@ -0,0 +1,76 @@
+package com.sap.cp.appsec.benchmark;
+
+import com.sap.cloud.security.xsuaa.token.XsuaaToken;
+import com.sap.cp.appsec.domain.AclAttribute;
+import com.sap.cp.appsec.security.CustomTokenAuthorizationsExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CustomTokenAuthorizationsExtractor#getAuthorities} for tokens with a growing number of XS user
+ * attribute values, i.e. the groups, bulletinboards and locations of a user.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sap.cp.appsec.benchmark.AuthoritiesExtractorBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthoritiesExtractorBenchmark {
+    private static final String APP_ID = "bulletinboard!t1";
+
+    @Param({"1", "10", "100"})
+    private int attributeValues;
+
+    private CustomTokenAuthorizationsExtractor extractor;
+    private XsuaaToken token;
+
+    @Setup
+    public void setUp() {
+        extractor = new CustomTokenAuthorizationsExtractor(APP_ID, AclAttribute.values());
+
+        Map<String, List<String>> attributes = new HashMap<>();
+        for (AclAttribute attribute : AclAttribute.values()) {
+            List<String> values = new ArrayList<>();
+            for (int value = 0; value < attributeValues; value++) {
+                values.add(attribute.name() + "_" + value);
+            }
+            attributes.put(attribute.getXSUserAttributeName(), values);
+        }
+        Instant now = Instant.now();
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("user_name", "adOwner");
+        claims.put("origin", "useridp");
+        claims.put("zid", "uaa");
+        claims.put("client_id", "sb-" + APP_ID);
+        claims.put("cid", "sb-" + APP_ID);
+        claims.put("grant_type", "authorization_code");
+        claims.put("scope", Arrays.asList(APP_ID + ".Display", APP_ID + ".Update", "openid"));
+        claims.put("xs.user.attributes", attributes);
+        claims.put("iat", now);
+        claims.put("exp", now.plus(1, ChronoUnit.HOURS));
+        token = new XsuaaToken(new Jwt("token", now, now.plus(1, ChronoUnit.HOURS),
+                Collections.singletonMap("alg", "RS256"), claims));
+    }
+
+    @Benchmark
+    public Collection<GrantedAuthority> getAuthorities() {
+        return extractor.getAuthorities(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AuthoritiesExtractorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
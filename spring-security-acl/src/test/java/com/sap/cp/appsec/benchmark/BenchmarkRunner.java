@@ -0,0 +1,28 @@
+package com.sap.cp.appsec.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks of this package, or the ones matching the regular expressions passed as arguments, and
+ * reports the allocation rate per operation ("gc.alloc.rate.norm") next to the time.
+ *
+ * Run with {@code mvn -P benchmark integration-test}, or {@code mvn -P benchmark integration-test
+ * -Dbenchmark.include=PermissionGrantingStrategyBenchmark} to run a single benchmark.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        if (args.length == 0) {
+            options.include(BenchmarkRunner.class.getPackage().getName());
+        }
+        for (String include : args) {
+            options.include(include);
+        }
+        options.addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+}
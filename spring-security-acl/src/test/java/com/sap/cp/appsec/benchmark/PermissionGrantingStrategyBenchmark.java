@@ -0,0 +1,108 @@
+package com.sap.cp.appsec.benchmark;
+
+import com.sap.cp.appsec.config.CompiledPermissionGrantingStrategy;
+import com.sap.cp.appsec.domain.AclAttribute;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.acls.domain.*;
+import org.springframework.security.acls.model.*;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DefaultPermissionGrantingStrategy#isGranted} and {@link CompiledPermissionGrantingStrategy#isGranted}
+ * for ACLs with a growing number of ACEs and parents.
+ * Only the root ACL grants the permission, so that every ACE of the chain is visited, which is the worst case of an
+ * advertisement that is visible due to the bulletinboard it is published to.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sap.cp.appsec.benchmark.PermissionGrantingStrategyBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PermissionGrantingStrategyBenchmark {
+    private static final String ADVERTISEMENT = "com.sap.cp.appsec.domain.Advertisement";
+    private static final Sid OWNER = new PrincipalSid("owner");
+    private static final Sid GROUP = new GrantedAuthoritySid(AclAttribute.GROUP.getSidForAttributeValue("GROUP_1"));
+
+    @Param({"1", "10", "100"})
+    private int aceCount;
+
+    @Param({"0", "1", "3"})
+    private int parentDepth;
+
+    @Param({"default", "compiled"})
+    private String strategyType;
+
+    private PermissionGrantingStrategy strategy;
+    private Acl acl;
+    private List<Permission> read;
+    private List<Permission> administration;
+    private List<Sid> sids;
+
+    @Setup
+    public void setUp() {
+        strategy = "compiled".equals(strategyType)
+                ? new CompiledPermissionGrantingStrategy(new ConsoleAuditLogger(), false)
+                : new DefaultPermissionGrantingStrategy(new ConsoleAuditLogger());
+        AclAuthorizationStrategy authorizationStrategy = new AclAuthorizationStrategyImpl(
+                new SimpleGrantedAuthority("ROLE_ACL_ADMIN"));
+
+        // the authenticated owner may change the ACEs
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken("owner", null, "ROLE_USER"));
+        try {
+            MutableAcl parent = null;
+            for (long id = 0; id <= parentDepth; id++) {
+                MutableAcl current = new AclImpl(new ObjectIdentityImpl(ADVERTISEMENT, id), id, authorizationStrategy,
+                        strategy, parent, null, true, OWNER);
+                for (int ace = 0; ace < aceCount; ace++) {
+                    current.insertAce(ace, BasePermission.READ, new PrincipalSid("user" + ace), true);
+                }
+                if (parent == null) {
+                    current.insertAce(aceCount, BasePermission.READ, GROUP, true);
+                }
+                parent = current;
+            }
+            acl = parent;
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        read = Collections.singletonList(BasePermission.READ);
+        administration = Collections.singletonList(BasePermission.ADMINISTRATION);
+        sids = Arrays.asList(new PrincipalSid("reader"), GROUP,
+                new GrantedAuthoritySid(AclAttribute.LOCATION.getSidForAttributeValue("DE")));
+    }
+
+    @Benchmark
+    public boolean grantedByRoot() {
+        return strategy.isGranted(acl, read, sids, false);
+    }
+
+    @Benchmark
+    public boolean notGranted() {
+        try {
+            return strategy.isGranted(acl, administration, sids, false);
+        } catch (NotFoundException e) {
+            return false; // as AclSupport and the AclPermissionEvaluator do
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PermissionGrantingStrategyBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
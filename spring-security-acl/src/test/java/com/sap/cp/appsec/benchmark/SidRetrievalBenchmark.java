@@ -0,0 +1,70 @@
+package com.sap.cp.appsec.benchmark;
+
+import com.sap.cp.appsec.domain.AclAttribute;
+import com.sap.cp.appsec.security.SidAuthenticationToken;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the sids, the {@code AdvertisementService} passes to every repository query, are built for users with
+ * a growing number of authorities: once per request by {@link SidAuthenticationToken}, or per call from a plain
+ * authentication.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sap.cp.appsec.benchmark.SidRetrievalBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SidRetrievalBenchmark {
+
+    @Param({"5", "50", "500"})
+    private int authorityCount;
+
+    private Authentication authentication;
+    private Authentication sidAuthentication;
+
+    @Setup
+    public void setUp() {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        authorities.add(new SimpleGrantedAuthority("SCOPE_Display"));
+        for (int authority = 1; authority < authorityCount; authority++) {
+            authorities.add(new SimpleGrantedAuthority(AclAttribute.GROUP.getSidForAttributeValue("GROUP_" + authority)));
+        }
+        authentication = new UsernamePasswordAuthenticationToken("adOwner", null, authorities);
+        sidAuthentication = new SidAuthenticationToken(authentication);
+    }
+
+    @Benchmark
+    public Authentication createSidAuthenticationToken() {
+        return new SidAuthenticationToken(authentication);
+    }
+
+    @Benchmark
+    public Set<String> getPrecomputedSids() {
+        return SidAuthenticationToken.getSids(sidAuthentication);
+    }
+
+    @Benchmark
+    public Set<String> retrieveSids() {
+        return SidAuthenticationToken.getSids(authentication);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SidRetrievalBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,124 @@
+package com.sap.cp.appsec.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sap.cloud.security.xsuaa.token.TokenAuthenticationConverter;
+import com.sap.cp.appsec.domain.AclAttribute;
+import com.sap.cp.appsec.security.CustomTokenAuthorizationsExtractor;
+import com.sap.cp.appsec.security.SidAuthenticationToken;
+import com.sap.cp.appsec.security.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the CPU time to authenticate a request, with and without {@link VerifiedTokenCache}. The decoder validates
+ * a RS256 signature like the XSUAA decoder, and the converter is the one of the application.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sap.cp.appsec.benchmark.VerifiedTokenCacheBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VerifiedTokenCacheBenchmark {
+    private static final String APP_ID = "bulletinboard!t1";
+
+    private String tokenValue;
+    private JwtDecoder decoder;
+    private Converter<Jwt, SidAuthenticationToken> converter;
+    private JwtDecoder cachingDecoder;
+    private Converter<Jwt, AbstractAuthenticationToken> cachingConverter;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException, JOSEException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        Map<String, List<String>> attributes = new HashMap<>();
+        attributes.put(AclAttribute.GROUP.getXSUserAttributeName(), Arrays.asList("GROUP_1", "GROUP_2"));
+        attributes.put(AclAttribute.LOCATION.getXSUserAttributeName(), Collections.singletonList("DE"));
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .claim("user_name", "adOwner")
+                .claim("origin", "useridp")
+                .claim("zid", "uaa")
+                .claim("client_id", "sb-" + APP_ID)
+                .claim("cid", "sb-" + APP_ID)
+                .claim("grant_type", "authorization_code")
+                .claim("scope", Arrays.asList(APP_ID + ".Display", APP_ID + ".Update", "openid"))
+                .claim("xs.user.attributes", attributes)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(1, ChronoUnit.HOURS)))
+                .build();
+        SignedJWT signedJwt = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), claims);
+        signedJwt.sign(new RSASSASigner(keyPair.getPrivate()));
+        tokenValue = signedJwt.serialize();
+
+        RSASSAVerifier verifier = new RSASSAVerifier((RSAPublicKey) keyPair.getPublic());
+        decoder = token -> verify(token, verifier);
+        TokenAuthenticationConverter tokenConverter = new TokenAuthenticationConverter(
+                new CustomTokenAuthorizationsExtractor(APP_ID, AclAttribute.values()));
+        converter = jwt -> new SidAuthenticationToken(tokenConverter.convert(jwt));
+
+        VerifiedTokenCache cache = new VerifiedTokenCache(1000);
+        cachingDecoder = cache.decoder(decoder);
+        cachingConverter = cache.converter(converter);
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken withoutCache() {
+        return converter.convert(decoder.decode(tokenValue));
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken withCache() {
+        return cachingConverter.convert(cachingDecoder.decode(tokenValue));
+    }
+
+    private static Jwt verify(String token, RSASSAVerifier verifier) {
+        try {
+            SignedJWT signedJwt = SignedJWT.parse(token);
+            if (!signedJwt.verify(verifier)) {
+                throw new JwtException("invalid signature");
+            }
+            JWTClaimsSet claimsSet = signedJwt.getJWTClaimsSet();
+            Map<String, Object> claims = new HashMap<>(claimsSet.getClaims());
+            claims.put("iat", claimsSet.getIssueTime().toInstant());
+            claims.put("exp", claimsSet.getExpirationTime().toInstant());
+            return new Jwt(token, claimsSet.getIssueTime().toInstant(), claimsSet.getExpirationTime().toInstant(),
+                    signedJwt.getHeader().toJSONObject(), claims);
+        } catch (ParseException | JOSEException e) {
+            throw new JwtException("invalid token", e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(VerifiedTokenCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package com.sap.cp.appsec.config;
+
+import org.junit.Test;
+import org.springframework.security.acls.domain.*;
+import org.springframework.security.acls.model.Acl;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AclAuditPipelineTest {
+
+    @Test
+    public void ringBuffer_isBoundedAndKeepsOrder() {
+        AclAuditRingBuffer<Integer> buffer = new AclAuditRingBuffer<>(4);
+        for (int element = 0; element < 4; element++) {
+            assertThat(buffer.offer(element), is(true));
+        }
+        assertThat(buffer.offer(4), is(false));
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(buffer.drainTo(drained, 3), is(3));
+        assertThat(buffer.offer(4), is(true));
+        buffer.drainTo(drained, 10);
+
+        assertThat(drained, contains(0, 1, 2, 3, 4));
+        assertThat(buffer.size(), is(0));
+    }
+
+    @Test
+    public void fullBuffer_dropsEvents() {
+        AclAuditPipeline pipeline = new AclAuditPipeline(Collections.emptyList(), 2, 10,
+                AclAuditPipeline.Backpressure.DROP);
+
+        for (int i = 0; i < 3; i++) {
+            pipeline.publish(createEvent());
+        }
+
+        assertThat(pipeline.getDroppedCount(), is(1L));
+    }
+
+    @Test
+    public void stop_writesRemainingEvents() throws InterruptedException {
+        List<AclAuditEvent> written = Collections.synchronizedList(new ArrayList<>());
+        AclAuditPipeline pipeline = new AclAuditPipeline(Collections.singletonList(written::addAll), 16, 2,
+                AclAuditPipeline.Backpressure.BLOCK);
+        pipeline.start();
+
+        for (int i = 0; i < 5; i++) {
+            pipeline.publish(createEvent());
+        }
+        pipeline.stop();
+
+        assertThat(written, hasSize(5));
+        assertThat(written.get(0).getSid(), is("owner"));
+        assertThat(written.get(0).getMask(), is(BasePermission.READ.getMask()));
+    }
+
+    private static AclAuditEvent createEvent() {
+        Acl acl = new AclImpl(new ObjectIdentityImpl("com.sap.cp.appsec.domain.Advertisement", 4711L), 1L,
+                new AclAuthorizationStrategyImpl(new SimpleGrantedAuthority("ROLE_ACL_ADMIN")), new ConsoleAuditLogger());
+        return new AclAuditEvent(AclAuditEvent.Type.CREATED, new AccessControlEntryImpl(1L, acl,
+                new PrincipalSid("owner"), BasePermission.READ, true, true, true));
+    }
+}
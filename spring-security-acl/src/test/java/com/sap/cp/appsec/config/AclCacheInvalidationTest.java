@@ -0,0 +1,100 @@
+package com.sap.cp.appsec.config;
+
+import com.sap.cp.appsec.Application;
+import com.sap.cp.appsec.domain.Advertisement;
+import com.sap.cp.appsec.security.AclSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.domain.PrincipalSid;
+import org.springframework.security.acls.model.Acl;
+import org.springframework.security.acls.model.MutableAclService;
+import org.springframework.security.acls.model.NotFoundException;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Starts two application instances on the same database and checks, that an ACL change made by one instance becomes
+ * visible to the other one, although the other one has cached the ACL before.
+ */
+public class AclCacheInvalidationTest {
+
+    private static final String ADVERTISEMENT = Advertisement.class.getName();
+    private static final Long ADVERTISEMENT_ID = 4711L;
+    private static final String OWNER = "owner";
+    private static final String VIEWER = "viewer";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private ConfigurableApplicationContext instance1;
+    private ConfigurableApplicationContext instance2;
+
+    @Before
+    public void setUp() {
+        instance1 = startInstance();
+        instance2 = startInstance();
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(OWNER, null, "ROLE_USER"));
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        instance2.close();
+        instance1.close();
+    }
+
+    @Test
+    public void pollingChannel_keepsCachesCoherent() throws InterruptedException {
+        Permission[] permissions = new Permission[]{BasePermission.READ};
+        inTransaction(instance1, () -> instance1.getBean(AclSupport.class)
+                .grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, VIEWER, permissions));
+        assertThat(isReadable(instance2), is(true)); // caches the ACL
+
+        inTransaction(instance1, () -> instance1.getBean(AclSupport.class)
+                .removePermissionFromUser(ADVERTISEMENT, ADVERTISEMENT_ID, VIEWER, permissions));
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (isReadable(instance2) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(isReadable(instance2), is(false));
+    }
+
+    private static ConfigurableApplicationContext startInstance() {
+        return new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:cache_invalidation;DB_CLOSE_DELAY=-1",
+                        "acl.cache.invalidation=polling",
+                        "acl.cache.invalidation.polling.interval-millis=100")
+                .run();
+    }
+
+    private static void inTransaction(ConfigurableApplicationContext instance, Runnable action) {
+        new TransactionTemplate(instance.getBean(PlatformTransactionManager.class)).execute(status -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private static boolean isReadable(ConfigurableApplicationContext instance) {
+        Acl acl = instance.getBean(MutableAclService.class).readAclById(new ObjectIdentityImpl(ADVERTISEMENT, ADVERTISEMENT_ID));
+        try {
+            return acl.isGranted(Collections.singletonList(BasePermission.READ),
+                    Collections.singletonList(new PrincipalSid(VIEWER)), false);
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.sap.cp.appsec.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.acls.domain.*;
+import org.springframework.security.acls.model.MutableAcl;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CaffeineAclCacheTest {
+
+	private CaffeineAclCache cut;
+
+	@Before
+	public void setUp() {
+		cut = new CaffeineAclCache(3, 1, TimeUnit.MINUTES);
+	}
+
+	@Test
+	public void putInCache_canBeReadByObjectIdentityAndPrimaryKey() {
+		MutableAcl acl = createAcl(1L, 4711L);
+		cut.putInCache(acl);
+
+		assertThat(cut.getFromCache(acl.getObjectIdentity()), is(sameInstance(acl)));
+		assertThat(cut.getFromCache(1L), is(sameInstance(acl)));
+	}
+
+	@Test
+	public void evictFromCacheByPrimaryKey_evictsObjectIdentity() {
+		MutableAcl acl = createAcl(1L, 4711L);
+		cut.putInCache(acl);
+
+		cut.evictFromCache(1L);
+
+		assertThat(cut.getFromCache(acl.getObjectIdentity()), is(nullValue()));
+	}
+
+	@Test
+	public void evictFromCacheByObjectIdentity_evictsPrimaryKey() {
+		MutableAcl acl = createAcl(1L, 4711L);
+		cut.putInCache(acl);
+
+		cut.evictFromCache(acl.getObjectIdentity());
+
+		assertThat(cut.getFromCache(1L), is(nullValue()));
+	}
+
+	@Test
+	public void cacheIsBoundedByWeight() {
+		for (long id = 1; id <= 5; id++) {
+			cut.putInCache(createAcl(id, 4710L + id));
+		}
+
+		int cached = 0;
+		for (long id = 1; id <= 5; id++) {
+			cached += cut.getFromCache(id) == null ? 0 : 1;
+		}
+		assertThat(cached, is(3));
+	}
+
+	@Test
+	public void statistics_areExportedAsMetrics() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		cut.bindTo(registry);
+		MutableAcl acl = createAcl(1L, 4711L);
+		cut.putInCache(acl);
+
+		cut.getFromCache(acl.getObjectIdentity());
+		cut.getFromCache(2L);
+
+		assertThat(registry.get("cache.gets").tag("result", "hit").functionCounter().count(), is(1.0));
+		assertThat(registry.get("cache.gets").tag("result", "miss").functionCounter().count(), is(1.0));
+	}
+
+	private static MutableAcl createAcl(Long id, Long objectId) {
+		ObjectIdentity objectIdentity = new ObjectIdentityImpl("com.sap.cp.appsec.domain.Advertisement", objectId);
+		ConsoleAuditLogger auditLogger = new ConsoleAuditLogger();
+		return new AclImpl(objectIdentity, id,
+				new AclAuthorizationStrategyImpl(new SimpleGrantedAuthority("ROLE_ACL_ADMIN")),
+				new DefaultPermissionGrantingStrategy(auditLogger), null, null, true, new PrincipalSid("owner"));
+	}
+}
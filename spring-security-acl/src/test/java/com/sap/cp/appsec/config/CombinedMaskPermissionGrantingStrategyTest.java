@@ -0,0 +1,89 @@
+package com.sap.cp.appsec.config;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.acls.domain.*;
+import org.springframework.security.acls.model.MutableAcl;
+import org.springframework.security.acls.model.NotFoundException;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.acls.model.Sid;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CombinedMaskPermissionGrantingStrategyTest {
+
+    private static final Sid OWNER = new PrincipalSid("owner");
+    private static final Sid OTHER = new PrincipalSid("other");
+
+    private MutableAcl acl;
+
+    @Before
+    public void setUp() {
+        // the authenticated owner may change the ACEs
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken("owner", null, "ROLE_USER"));
+
+        acl = new AclImpl(new ObjectIdentityImpl("com.sap.cp.appsec.domain.Advertisement", 4711L), 1L,
+                new AclAuthorizationStrategyImpl(new SimpleGrantedAuthority("ROLE_ACL_ADMIN")),
+                new CombinedMaskPermissionGrantingStrategy(new ConsoleAuditLogger()), null, null, true, OWNER);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void combinedMask_grantsEachPermission() {
+        acl.insertAce(0, combine(BasePermission.READ, BasePermission.WRITE), OWNER, true);
+
+        assertThat(acl.isGranted(permissions(BasePermission.READ), sids(OWNER), false), is(true));
+        assertThat(acl.isGranted(permissions(BasePermission.WRITE), sids(OWNER), false), is(true));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void combinedMask_doesNotGrantOtherPermissions() {
+        acl.insertAce(0, combine(BasePermission.READ, BasePermission.WRITE), OWNER, true);
+
+        acl.isGranted(permissions(BasePermission.ADMINISTRATION), sids(OWNER), false);
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void combinedMask_doesNotGrantOtherSids() {
+        acl.insertAce(0, combine(BasePermission.READ, BasePermission.WRITE), OWNER, true);
+
+        acl.isGranted(permissions(BasePermission.READ), sids(OTHER), false);
+    }
+
+    @Test
+    public void denyingCombinedMask_prevails() {
+        acl.insertAce(0, combine(BasePermission.READ, BasePermission.WRITE), OTHER, false);
+        acl.insertAce(1, BasePermission.READ, OTHER, true);
+
+        assertThat(acl.isGranted(permissions(BasePermission.READ), sids(OTHER), false), is(false));
+    }
+
+    private static Permission combine(Permission... permissions) {
+        CumulativePermission combined = new CumulativePermission();
+        for (Permission permission : permissions) {
+            combined.set(permission);
+        }
+        return combined;
+    }
+
+    private static List<Permission> permissions(Permission permission) {
+        return Collections.singletonList(permission);
+    }
+
+    private static List<Sid> sids(Sid sid) {
+        return Collections.singletonList(sid);
+    }
+}
@@ -0,0 +1,160 @@
+package com.sap.cp.appsec.config;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.acls.domain.*;
+import org.springframework.security.acls.model.*;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the decisions and audit logs of {@link CompiledPermissionGrantingStrategy} with the ones of the strategy it
+ * replaces, for many random ACL hierarchies, sids and permissions.
+ */
+public class CompiledPermissionGrantingStrategyTest {
+
+    private static final int CASES = 5000;
+    private static final Sid OWNER = new PrincipalSid("owner");
+    private static final List<Sid> SIDS = Arrays.asList(OWNER, new PrincipalSid("other"),
+            new GrantedAuthoritySid("ATTR:GROUP=UG_MY_TEAM"), new GrantedAuthoritySid("ATTR:LOCATION=DE"));
+    private static final int[] SINGLE_MASKS = {1, 2, 4, 8, 16};
+    private static final AclAuthorizationStrategy AUTHORIZATION_STRATEGY = new AclAuthorizationStrategyImpl(
+            new SimpleGrantedAuthority("ROLE_ACL_ADMIN"));
+
+    @Before
+    public void setUp() {
+        // the authenticated owner may change the ACEs
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken("owner", null, "ROLE_USER"));
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void decidesLikeDefaultStrategy() {
+        for (long seed = 0; seed < CASES; seed++) {
+            RecordingAuditLogger expectedLog = new RecordingAuditLogger();
+            RecordingAuditLogger actualLog = new RecordingAuditLogger();
+
+            String expected = evaluate(new DefaultPermissionGrantingStrategy(expectedLog), seed);
+            String actual = evaluate(new CompiledPermissionGrantingStrategy(actualLog, false), seed);
+
+            assertThat("seed " + seed, actual, is(expected));
+            assertThat("seed " + seed, actualLog.entries, is(expectedLog.entries));
+        }
+    }
+
+    @Test
+    public void decidesLikeCombinedMaskStrategy() {
+        for (long seed = 0; seed < CASES; seed++) {
+            RecordingAuditLogger expectedLog = new RecordingAuditLogger();
+            RecordingAuditLogger actualLog = new RecordingAuditLogger();
+
+            String expected = evaluate(new CombinedMaskPermissionGrantingStrategy(expectedLog), seed);
+            String actual = evaluate(new CompiledPermissionGrantingStrategy(actualLog, true), seed);
+
+            assertThat("seed " + seed, actual, is(expected));
+            assertThat("seed " + seed, actualLog.entries, is(expectedLog.entries));
+        }
+    }
+
+    @Test
+    public void evict_compilesModifiedAclAgain() {
+        CompiledPermissionGrantingStrategy strategy = new CompiledPermissionGrantingStrategy(
+                new RecordingAuditLogger(), false);
+        MutableAcl acl = createAcl(strategy, 1L, null, true);
+        acl.insertAce(0, BasePermission.READ, OWNER, false);
+        List<Permission> read = Collections.singletonList(BasePermission.READ);
+        assertThat(acl.isGranted(read, Collections.singletonList(OWNER), false), is(false));
+
+        acl.updateAce(0, BasePermission.WRITE);
+        acl.insertAce(1, BasePermission.READ, OWNER, true);
+        strategy.evict(acl);
+
+        assertThat(acl.isGranted(read, Collections.singletonList(OWNER), false), is(true));
+    }
+
+    /**
+     * Creates an ACL hierarchy and a request from the seed and evaluates the request with the given strategy.
+     *
+     * @return the decision, or "not found" in case no ACE applies
+     */
+    private static String evaluate(PermissionGrantingStrategy strategy, long seed) {
+        Random random = new Random(seed);
+
+        MutableAcl acl = null;
+        int depth = random.nextInt(4);
+        for (long level = 0; level <= depth; level++) {
+            acl = createAcl(strategy, level, acl, random.nextInt(4) > 0);
+            int aceCount = random.nextInt(9);
+            for (int index = 0; index < aceCount; index++) {
+                acl.insertAce(index, permission(nextMask(random)), SIDS.get(random.nextInt(SIDS.size())),
+                        random.nextInt(10) < 7);
+            }
+        }
+
+        List<Permission> permissions = new ArrayList<>();
+        int permissionCount = 1 + random.nextInt(3);
+        for (int index = 0; index < permissionCount; index++) {
+            permissions.add(permission(nextMask(random)));
+        }
+        List<Sid> sids = new ArrayList<>(SIDS);
+        Collections.shuffle(sids, random);
+        sids = sids.subList(0, 1 + random.nextInt(sids.size()));
+        boolean administrativeMode = random.nextInt(5) == 0;
+
+        try {
+            return String.valueOf(strategy.isGranted(acl, permissions, sids, administrativeMode));
+        } catch (NotFoundException e) {
+            return "not found";
+        }
+    }
+
+    private static MutableAcl createAcl(PermissionGrantingStrategy strategy, long id, Acl parent, boolean inheriting) {
+        return new AclImpl(new ObjectIdentityImpl("com.sap.cp.appsec.domain.Advertisement", id), id,
+                AUTHORIZATION_STRATEGY, strategy, parent, null, inheriting, OWNER);
+    }
+
+    /**
+     * @return mostly single bit masks, as used by {@link BasePermission}, but also combined and empty masks
+     */
+    private static int nextMask(Random random) {
+        if (random.nextInt(10) < 7) {
+            return SINGLE_MASKS[random.nextInt(SINGLE_MASKS.length)];
+        }
+        return random.nextInt(32);
+    }
+
+    private static Permission permission(int mask) {
+        return new AbstractPermission(mask) {
+        };
+    }
+
+    private static class RecordingAuditLogger implements AuditLogger {
+        private final List<String> entries = new ArrayList<>();
+
+        @Override
+        public void logIfNeeded(boolean granted, AccessControlEntry ace) {
+            List<AccessControlEntry> aces = ace.getAcl().getEntries();
+            int index = 0;
+            while (aces.get(index) != ace) {
+                index++;
+            }
+            entries.add(granted + " " + ace.getAcl().getObjectIdentity().getIdentifier() + "/" + index);
+        }
+    }
+}
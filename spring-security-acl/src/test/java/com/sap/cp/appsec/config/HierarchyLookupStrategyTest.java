@@ -0,0 +1,121 @@
+package com.sap.cp.appsec.config;
+
+import com.sap.cp.appsec.domain.Advertisement;
+import com.sap.cp.appsec.security.AclSupport;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.acls.domain.AclAuthorizationStrategy;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.domain.PrincipalSid;
+import org.springframework.security.acls.jdbc.BasicLookupStrategy;
+import org.springframework.security.acls.model.AccessControlEntry;
+import org.springframework.security.acls.model.Acl;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.acls.model.PermissionGrantingStrategy;
+import org.springframework.security.acls.model.Sid;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the ACLs loaded by {@link HierarchyLookupStrategy} with the ones of {@link BasicLookupStrategy}. The
+ * closure join is plain SQL, hence it is tested on H2, although it is only configured for PostgreSQL.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class HierarchyLookupStrategyTest {
+
+    private static final String ADVERTISEMENT = Advertisement.class.getName();
+    private static final Long ADVERTISEMENT_ID = 4713L;
+    private static final String OWNER = "owner";
+    private static final List<Sid> SIDS = Collections.singletonList(new PrincipalSid(OWNER));
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private AclAuthorizationStrategy aclAuthorizationStrategy;
+
+    @Autowired
+    private PermissionGrantingStrategy permissionGrantingStrategy;
+
+    @Autowired
+    private AclSupport aclSupport;
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void readAclsById_loadsSameHierarchyAsBasicStrategy() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER,
+                new Permission[]{BasePermission.READ, BasePermission.WRITE});
+        aclSupport.setParent(ADVERTISEMENT, ADVERTISEMENT_ID, "bulletinboard", "DE_WDF03_Board");
+        List<ObjectIdentity> objectIdentities = Arrays.asList(new ObjectIdentityImpl(ADVERTISEMENT, ADVERTISEMENT_ID),
+                new ObjectIdentityImpl("bulletinboard", "IL_RAA03_Board"), new ObjectIdentityImpl("location", "DE"));
+
+        Map<ObjectIdentity, Acl> expected = createBasicStrategy(newCache()).readAclsById(objectIdentities, SIDS);
+        Map<ObjectIdentity, Acl> actual = createHierarchyStrategy(newCache()).readAclsById(objectIdentities, SIDS);
+
+        for (ObjectIdentity objectIdentity : objectIdentities) {
+            assertThat(describe(actual.get(objectIdentity)), is(describe(expected.get(objectIdentity))));
+        }
+    }
+
+    @Test
+    public void readAclsById_cachesAllAncestors() {
+        CaffeineAclCache aclCache = newCache();
+
+        createHierarchyStrategy(aclCache).readAclsById(
+                Collections.singletonList(new ObjectIdentityImpl("bulletinboard", "DE_WDF03_Board")), SIDS);
+
+        assertThat(aclCache.getFromCache(new ObjectIdentityImpl("bulletinboard", "DE_WDF03_Board")), notNullValue());
+        assertThat(aclCache.getFromCache(new ObjectIdentityImpl("location", "DE")), notNullValue());
+    }
+
+    private HierarchyLookupStrategy createHierarchyStrategy(CaffeineAclCache aclCache) {
+        return new HierarchyLookupStrategy(dataSource, aclCache, aclAuthorizationStrategy, permissionGrantingStrategy);
+    }
+
+    private BasicLookupStrategy createBasicStrategy(CaffeineAclCache aclCache) {
+        BasicLookupStrategy strategy = new BasicLookupStrategy(dataSource, aclCache, aclAuthorizationStrategy,
+                permissionGrantingStrategy);
+        strategy.setAclClassIdSupported(true);
+        return strategy;
+    }
+
+    private static CaffeineAclCache newCache() {
+        return new CaffeineAclCache(1000, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @return the object identities, owners and ACEs of the ACL and all its ancestors
+     */
+    private static List<String> describe(Acl acl) {
+        List<String> levels = new ArrayList<>();
+        for (Acl current = acl; current != null; current = current.getParentAcl()) {
+            StringBuilder level = new StringBuilder(current.getObjectIdentity() + " " + current.getOwner()
+                    + " " + current.isEntriesInheriting());
+            for (AccessControlEntry ace : current.getEntries()) {
+                level.append(" | ").append(ace.getId()).append(' ').append(ace.getSid()).append(' ')
+                        .append(ace.getPermission().getMask()).append(' ').append(ace.isGranting());
+            }
+            levels.add(level.toString());
+        }
+        return levels;
+    }
+}
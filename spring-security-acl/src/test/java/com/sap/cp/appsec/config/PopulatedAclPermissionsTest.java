@@ -0,0 +1,59 @@
+package com.sap.cp.appsec.config;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.domain.PrincipalSid;
+import org.springframework.security.acls.model.AccessControlEntry;
+import org.springframework.security.acls.model.Acl;
+import org.springframework.security.acls.model.MutableAclService;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.acls.model.Sid;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Boots with the default Liquibase context, i.e. the populated ACEs must not be merged into combined masks, as the
+ * default permission granting strategy matches the masks exactly.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class PopulatedAclPermissionsTest {
+
+    private static final List<Sid> LOCATION_ADMIN = Collections.singletonList(
+            new PrincipalSid("user/userIdp/locationAdmin"));
+
+    @Autowired
+    private MutableAclService aclService;
+
+    @Test
+    public void populatedAces_keepOneAcePerPermission() {
+        Acl acl = aclService.readAclById(new ObjectIdentityImpl("location", "DE"), LOCATION_ADMIN);
+
+        int aces = 0;
+        for (AccessControlEntry ace : acl.getEntries()) {
+            if (ace.getSid().equals(LOCATION_ADMIN.get(0))) {
+                aces++;
+            }
+        }
+        assertThat(aces, is(3));
+    }
+
+    @Test
+    public void populatedAces_grantReadWriteAndAdministration() {
+        Acl acl = aclService.readAclById(new ObjectIdentityImpl("location", "DE"), LOCATION_ADMIN);
+
+        for (Permission permission : new Permission[]{BasePermission.READ, BasePermission.WRITE,
+                BasePermission.ADMINISTRATION}) {
+            assertThat(acl.isGranted(Collections.singletonList(permission), LOCATION_ADMIN, false), is(true));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.sap.cp.appsec.config;
+
+import com.sap.cp.appsec.domain.Advertisement;
+import com.sap.cp.appsec.security.AclSupport;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.model.MutableAcl;
+import org.springframework.security.acls.model.MutableAclService;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.transaction.Transactional;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class PostgresJdbcMutableAclServiceTest {
+
+    private static final String ADVERTISEMENT = Advertisement.class.getName();
+    private static final Long ADVERTISEMENT_ID = 4712L;
+    private static final String OWNER = "owner";
+
+    @Autowired
+    private AclSupport aclSupport;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MutableAclService aclService;
+
+    @Autowired
+    private AclObjectAncestors aclObjectAncestors;
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void grantPermission_keepsExistingEntries() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER, new Permission[]{BasePermission.READ});
+        Long readEntryId = getEntries().get(0).get("id");
+
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER, new Permission[]{BasePermission.WRITE});
+
+        List<Map<String, Long>> entries = getEntries();
+        assertThat(entries, hasSize(2));
+        assertThat(entries.get(0).get("id"), is(readEntryId));
+        assertThat(entries.get(1).get("ace_order"), is(1L));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void removePermission_movesSubsequentEntries() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER,
+                new Permission[]{BasePermission.READ, BasePermission.WRITE});
+        Long writeEntryId = getEntries().get(1).get("id");
+
+        aclSupport.removePermissionFromUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER, new Permission[]{BasePermission.READ});
+
+        List<Map<String, Long>> entries = getEntries();
+        assertThat(entries, hasSize(1));
+        assertThat(entries.get(0).get("id"), is(writeEntryId));
+        assertThat(entries.get(0).get("ace_order"), is(0L));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void setParent_keepsEntries() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER, new Permission[]{BasePermission.READ});
+        Long readEntryId = getEntries().get(0).get("id");
+
+        aclSupport.setParent(ADVERTISEMENT, ADVERTISEMENT_ID, "bulletinboard", "DE_WDF03_Board");
+
+        assertThat(getEntries().get(0).get("id"), is(readEntryId));
+        assertThat(jdbcTemplate.queryForObject("SELECT parent_object FROM ACL_OBJECT_IDENTITY "
+                + "WHERE object_id_identity = ?", Long.class, ADVERTISEMENT_ID.toString()), is(notNullValue()));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void setParent_maintainsAncestors() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER, new Permission[]{BasePermission.READ});
+        assertThat(getAncestors(), hasSize(0));
+
+        aclSupport.setParent(ADVERTISEMENT, ADVERTISEMENT_ID, "bulletinboard", "DE_WDF03_Board");
+        assertThat(getAncestors(), contains("DE_WDF03_Board", "DE"));
+
+        aclSupport.setParent(ADVERTISEMENT, ADVERTISEMENT_ID, "location", "DE");
+        assertThat(getAncestors(), contains("DE"));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER, authorities = "ROLE_ACL_ADMIN")
+    public void updateAcl_movesAncestorsOfSubtree() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER, new Permission[]{BasePermission.READ});
+        aclSupport.setParent(ADVERTISEMENT, ADVERTISEMENT_ID, "bulletinboard", "DE_WDF03_Board");
+
+        MutableAcl board = (MutableAcl) aclService.readAclById(
+                new ObjectIdentityImpl("bulletinboard", "DE_WDF03_Board"));
+        board.setParent(aclService.readAclById(new ObjectIdentityImpl("location", "IL")));
+        aclService.updateAcl(board);
+
+        assertThat(getAncestors(), contains("DE_WDF03_Board", "IL"));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void rebuildAncestors_matchesMaintainedRows() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER, new Permission[]{BasePermission.READ});
+        aclSupport.setParent(ADVERTISEMENT, ADVERTISEMENT_ID, "bulletinboard", "DE_WDF03_Board");
+        List<Map<String, Object>> maintained = getAllAncestors();
+
+        aclObjectAncestors.rebuild();
+
+        assertThat(getAllAncestors(), is(maintained));
+    }
+
+    /**
+     * @return the identities of the ancestors of the advertisement, starting with the parent
+     */
+    private List<String> getAncestors() {
+        return jdbcTemplate.queryForList("SELECT ancestor.object_id_identity FROM ACL_OBJECT_ANCESTOR closure "
+                + "INNER JOIN ACL_OBJECT_IDENTITY obj ON closure.descendant = obj.id "
+                + "INNER JOIN ACL_OBJECT_IDENTITY ancestor ON closure.ancestor = ancestor.id "
+                + "WHERE obj.object_id_identity = ? AND closure.depth > 0 ORDER BY closure.depth",
+                String.class, ADVERTISEMENT_ID.toString());
+    }
+
+    private List<Map<String, Object>> getAllAncestors() {
+        return jdbcTemplate.queryForList("SELECT descendant, ancestor, depth FROM ACL_OBJECT_ANCESTOR "
+                + "ORDER BY descendant, ancestor");
+    }
+
+    private List<Map<String, Long>> getEntries() {
+        return jdbcTemplate.query("SELECT entry.id, entry.ace_order FROM ACL_ENTRY entry "
+                        + "INNER JOIN ACL_OBJECT_IDENTITY obj ON entry.acl_object_identity = obj.id "
+                        + "WHERE obj.object_id_identity = ? ORDER BY entry.ace_order",
+                (rs, rowNum) -> {
+                    Map<String, Long> entry = new HashMap<>();
+                    entry.put("id", rs.getLong("id"));
+                    entry.put("ace_order", rs.getLong("ace_order"));
+                    return entry;
+                }, ADVERTISEMENT_ID.toString());
+    }
+}
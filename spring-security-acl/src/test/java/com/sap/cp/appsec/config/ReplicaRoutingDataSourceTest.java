@@ -0,0 +1,105 @@
+package com.sap.cp.appsec.config;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Uses in-memory H2 databases as stand-ins for the primary and two replicas, each of them knows its own name.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private ReplicaRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate readWriteTransaction;
+
+    @Before
+    public void setUp() {
+        routingDataSource = new ReplicaRoutingDataSource(createDatabase("primary"),
+                Arrays.asList(createDatabase("replica1"), createDatabase("replica2")), Duration.ofMinutes(1));
+        routingDataSource.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void readOnlyTransactions_roundRobinReplicas() {
+        assertThat(readOnlyTransaction.execute(status -> getInstanceName()), is("replica1"));
+        assertThat(readOnlyTransaction.execute(status -> getInstanceName()), is("replica2"));
+        assertThat(readOnlyTransaction.execute(status -> getInstanceName()), is("replica1"));
+    }
+
+    @Test
+    public void readWriteTransactionsAndOtherStatements_usePrimary() {
+        assertThat(readWriteTransaction.execute(status -> getInstanceName()), is("primary"));
+        assertThat(getInstanceName(), is("primary"));
+    }
+
+    @Test
+    public void getPrimary_isNotRoutedToReplicas() {
+        JdbcTemplate primaryTemplate = new JdbcTemplate(routingDataSource.getPrimary());
+
+        assertThat(readOnlyTransaction.execute(status -> primaryTemplate.queryForObject("SELECT name FROM instance",
+                String.class)), is("primary"));
+    }
+
+    @Test
+    public void readsOfUser_stickToPrimaryAfterWrite() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("writer", null));
+        readWriteTransaction.execute(status -> jdbcTemplate.update("UPDATE instance SET name = name"));
+
+        assertThat(readOnlyTransaction.execute(status -> getInstanceName()), is("primary"));
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("reader", null));
+        assertThat(readOnlyTransaction.execute(status -> getInstanceName()), is("replica1"));
+    }
+
+    @Test
+    public void rolledBackWrite_doesNotStick() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("writer", null));
+        readWriteTransaction.execute(status -> {
+            status.setRollbackOnly();
+            return jdbcTemplate.update("UPDATE instance SET name = name");
+        });
+
+        assertThat(readOnlyTransaction.execute(status -> getInstanceName()), is("replica1"));
+    }
+
+    private String getInstanceName() {
+        return jdbcTemplate.queryForObject("SELECT name FROM instance", String.class);
+    }
+
+    private static DataSource createDatabase(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS instance");
+        jdbcTemplate.execute("CREATE TABLE instance (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO instance (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -7,7 +7,9 @@ import com.sap.cloud.security.xsuaa.test.JwtGenerator;
 import com.sap.cp.appsec.domain.AclAttribute;
 import com.sap.cp.appsec.dto.AdvertisementDto;
 import com.sap.cp.appsec.dto.BulletinboardDto;
+import com.sap.cp.appsec.dto.BulkPermissionDto;
 import com.sap.cp.appsec.dto.PermissionDto;
+import com.sap.cp.appsec.security.AdvertisementVisibilityIndex;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -24,16 +26,28 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import static com.sap.cp.appsec.controllers.AdvertisementAclController.FIRST_PAGE_ID;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -53,6 +67,7 @@ public class AdvertisementACLControllerTest {
     private static final String BOARD_VIEWER = "boardViewer";
     private static final String USER_DE = "viewer_DE";
     private static final String BOARD_OWNER = "boardAdmin";
+    private static final String EXPORTER = "exporter";
 
     private static final String GROUP = "GROUP_1";
     private static final String OTHER_GROUP = "GROUP_2";
@@ -83,9 +98,13 @@ public class AdvertisementACLControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private AdvertisementVisibilityIndex visibilityIndex;
+
     @Before
     public void setUp() throws Exception {
         Mockito.doAnswer(invocation -> Optional.of(OWNER)).when(auditorAware).getCurrentAuditor();
+        visibilityIndex.rebuild(); // considers ACL test data inserted with @Sql
 
         jwtToken_adsOwner = new JwtGenerator(xsuaaServiceConfiguration.getClientId())
                 .setUserName(OWNER)
@@ -145,6 +164,57 @@ public class AdvertisementACLControllerTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    public void owner_getsNotModifiedForUnchangedAdvertisement() throws Exception {
+        String id = performPostAndGetId(jwtToken_adsOwner);
+        MockHttpServletResponse response = mockMvc.perform(buildGetRequest(id).with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse();
+        String eTag = response.getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(buildGetRequest(id).header(HttpHeaders.IF_NONE_MATCH, eTag).with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+        mockMvc.perform(buildGetRequest(id).header(HttpHeaders.IF_NONE_MATCH, eTag).with(bearerToken(jwtToken_anyone)))
+                .andExpect(status().isForbidden());
+
+        AdvertisementDto advertisement = convertJsonContent(response, AdvertisementDto.class);
+        advertisement.title = "SOME_OTHER_TITLE";
+        mockMvc.perform(buildPutRequest(id, advertisement).with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk());
+        mockMvc.perform(buildGetRequest(id).header(HttpHeaders.IF_NONE_MATCH, eTag).with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("SOME_OTHER_TITLE")));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // the export is written by another thread
+    public void owner_canExportAllItsAdvertisements() throws Exception {
+        String jwtToken = new JwtGenerator(xsuaaServiceConfiguration.getClientId())
+                .setUserName(EXPORTER)
+                .getToken().getTokenValue();
+        List<String> ids = Arrays.asList(performPostAndGetId(jwtToken), performPostAndGetId(jwtToken));
+        try {
+            MockHttpServletResponse response = performExport(jwtToken, "identity");
+            assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING), is(nullValue()));
+            assertExportedIds(response.getContentAsString(), ids.get(1), ids.get(0));
+
+            response = performExport(jwtToken, "gzip, deflate");
+            assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING), is("gzip"));
+            String content = StreamUtils.copyToString(
+                    new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())),
+                    StandardCharsets.UTF_8);
+            assertExportedIds(content, ids.get(1), ids.get(0));
+        } finally {
+            for (String id : ids) {
+                mockMvc.perform(buildDeleteRequest(id).with(bearerToken(jwtToken)))
+                        .andExpect(status().isNoContent());
+            }
+        }
+    }
+
     @Test
     public void authorizedUser_canReadAdvertisement() throws Exception {
         String id = performPostAndGetId(jwtToken_adsOwner);
@@ -177,6 +247,40 @@ public class AdvertisementACLControllerTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    public void authorizedUsers_canReadAdvertisementsAfterBulkGrant() throws Exception {
+        String id = performPostAndGetId(jwtToken_adsOwner);
+        String otherId = performPostAndGetId(jwtToken_adsOwner);
+
+        BulkPermissionDto bulkPermission = createBulkPermissions(ANYONE, new Character[]{'R'}, id, otherId);
+        mockMvc.perform(buildBulkPermissionRequest("grantPermissionsToUsers", bulkPermission)
+                .with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk());
+        mockMvc.perform(buildGetRequest(id).with(bearerToken(jwtToken_anyone)))
+                .andExpect(status().isOk());
+        mockMvc.perform(buildGetRequest(otherId).with(bearerToken(jwtToken_anyone)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(buildBulkPermissionRequest("removePermissionsFromUsers", bulkPermission)
+                .with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk());
+        mockMvc.perform(buildGetRequest(otherId).with(bearerToken(jwtToken_anyone)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void anyone_canNotGrantPermissionsInBulkWithoutAdministrationPermission() throws Exception {
+        String id = performPostAndGetId(jwtToken_adsOwner);
+        String ownId = performPostAndGetId(jwtToken_anyone);
+
+        mockMvc.perform(buildBulkPermissionRequest("grantPermissionsToUsers",
+                createBulkPermissions(ANYONE, new Character[]{'R'}, ownId, id))
+                .with(bearerToken(jwtToken_anyone)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(buildGetRequest(id).with(bearerToken(jwtToken_anyone)))
+                .andExpect(status().isForbidden());
+    }
+
     @Test
     public void authorizedGroupMember_canReadButNotModifyAdvertisement() throws Exception {
         MockHttpServletResponse response = mockMvc.perform(buildPostRequest()
@@ -275,6 +379,53 @@ public class AdvertisementACLControllerTest {
                 .andExpect(jsonPath("$.value", hasSize(9)));
     }
 
+    @Test
+    @Sql({"/db/data/acl_test_data_mass.sql"})
+    public void owner_canReadAllItsAdvertisementsWithoutCount() throws Exception {
+        mockMvc.perform(buildGetRequest("/my/pages/" + FIRST_PAGE_ID + "?count=false").with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.value", hasSize(20)))
+                .andExpect(header().string(HttpHeaders.LINK, is("<" + AdvertisementAclController.PATH + "/my/pages/1?count=false>; rel=\"next\"")));
+        mockMvc.perform(buildGetRequest("/my/pages/1?count=false").with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.value", hasSize(9)))
+                .andExpect(header().string(HttpHeaders.LINK, is("<" + AdvertisementAclController.PATH + "/my/pages/0?count=false>; rel=\"previous\"")));
+    }
+
+    @Test
+    @Sql({"/db/data/acl_test_data_mass.sql"})
+    public void owner_canCountAllItsAdvertisements() throws Exception {
+        mockMvc.perform(buildGetRequest("/my/count").with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, is("max-age=60, private")))
+                .andExpect(jsonPath("$.count", is(29)));
+    }
+
+    @Test
+    @Sql({"/db/data/acl_test_data_mass.sql"})
+    public void owner_canReadAllItsAdvertisementsWithCursor() throws Exception {
+        String linkHeader = mockMvc.perform(buildGetRequest("/my?after=").with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON_UTF8))
+                .andExpect(jsonPath("$.value", hasSize(20)))
+                .andExpect(jsonPath("$.value[0].id", is(899)))
+                .andExpect(header().string(HttpHeaders.LINK, startsWith("<" + AdvertisementAclController.PATH_MY_CURSOR)))
+                .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+
+        String nextLink = linkHeader.substring(1, linkHeader.indexOf('>'));
+        mockMvc.perform(get(nextLink).with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON_UTF8))
+                .andExpect(jsonPath("$.value", hasSize(9)))
+                .andExpect(header().string(HttpHeaders.LINK, is("")));
+    }
+
+    @Test
+    public void readWithInvalidCursor_400() throws Exception {
+        mockMvc.perform(buildGetRequest("/my?after=invalid").with(bearerToken(jwtToken_adsOwner)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Sql({"/db/data/acl_test_data_mass.sql"})
     public void groupMember_canReadAllAdvertisementsOfGroup() throws Exception {
@@ -467,6 +618,31 @@ public class AdvertisementACLControllerTest {
         return getIdFromLocation(response.getHeader(LOCATION));
     }
 
+    private MockHttpServletResponse performExport(String jwtToken, String acceptEncoding) throws Exception {
+        MvcResult result = mockMvc.perform(buildGetRequest("my/export")
+                .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding)
+                .with(bearerToken(jwtToken)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(AdvertisementAclController.APPLICATION_NDJSON_VALUE))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn().getResponse();
+    }
+
+    /**
+     * Asserts that the content consists of one JSON object per line, with the given ids in that order.
+     */
+    private void assertExportedIds(String content, String... ids) throws IOException {
+        String[] lines = content.split("\n");
+        assertThat(lines.length, is(ids.length));
+        for (int line = 0; line < lines.length; line++) {
+            AdvertisementDto advertisement = new ObjectMapper().readValue(lines[line], AdvertisementDto.class);
+            assertThat(String.valueOf(advertisement.getId()), is(ids[line]));
+        }
+    }
+
     private MockHttpServletRequestBuilder buildGetRequest(String path) {
         return get(AdvertisementAclController.PATH + "/" + path);
     }
@@ -489,6 +665,12 @@ public class AdvertisementACLControllerTest {
                 .contentType(APPLICATION_JSON_UTF8);
     }
 
+    private MockHttpServletRequestBuilder buildBulkPermissionRequest(String action, BulkPermissionDto bulkPermission) throws Exception {
+        return put(AdvertisementAclController.PATH + "/" + action)
+                .content(toJson(bulkPermission))
+                .contentType(APPLICATION_JSON_UTF8);
+    }
+
     private MockHttpServletRequestBuilder buildPublishRequest(String id, BulletinboardDto bulletinboard) throws Exception {
         return put(AdvertisementAclController.PATH + "/publish/" + id)
                 .content(toJson(bulletinboard))
@@ -538,6 +720,19 @@ public class AdvertisementACLControllerTest {
         return newPermission;
     }
 
+    private BulkPermissionDto createBulkPermissions(String name, Character[] permissionCodes, String... ids) {
+        BulkPermissionDto bulkPermission = new BulkPermissionDto();
+        bulkPermission.permissions = new ArrayList<>();
+        for (String id : ids) {
+            BulkPermissionDto.AdvertisementPermissionDto permission = new BulkPermissionDto.AdvertisementPermissionDto();
+            permission.id = Long.valueOf(id);
+            permission.name = name;
+            permission.permissionCodes = permissionCodes;
+            bulkPermission.permissions.add(permission);
+        }
+        return bulkPermission;
+    }
+
     private static class BearerTokenRequestPostProcessor implements RequestPostProcessor {
         private String token;
 
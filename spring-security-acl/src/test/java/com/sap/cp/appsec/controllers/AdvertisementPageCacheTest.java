@@ -0,0 +1,185 @@
+package com.sap.cp.appsec.controllers;
+
+import com.sap.cp.appsec.config.AclCacheInvalidatedEvent;
+import com.sap.cp.appsec.domain.Advertisement;
+import com.sap.cp.appsec.dto.AdvertisementListDto;
+import com.sap.cp.appsec.security.AclSupport;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.model.MutableAcl;
+import org.springframework.security.acls.model.MutableAclService;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.transaction.Transactional;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "acl.page-cache.maximum-size=100")
+@Transactional
+public class AdvertisementPageCacheTest {
+
+    private static final String ADVERTISEMENT = Advertisement.class.getName();
+    private static final String OWNER = "owner";
+    private static final Long CACHED_ID = 4711L;
+    private static final Long PUBLISHED_ID = 4713L;
+
+    @Autowired
+    private AdvertisementPageCache pageCache;
+
+    @Autowired
+    private AclSupport aclSupport;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MutableAclService aclService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final AtomicInteger reads = new AtomicInteger();
+    private Supplier<ResponseEntity<AdvertisementListDto>> reader;
+
+    @Before
+    public void setUp() {
+        Advertisement advertisement = new Advertisement("title", "contact");
+        advertisement.setId(CACHED_ID);
+        reader = () -> {
+            reads.incrementAndGet();
+            return new ResponseEntity<>(new AdvertisementListDto(Collections.singletonList(advertisement)),
+                    HttpStatus.OK);
+        };
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void get_readsPageOnce() {
+        ResponseEntity<byte[]> first = pageCache.get("my", "readsOnce", reader);
+        ResponseEntity<byte[]> second = pageCache.get("my", "readsOnce", reader);
+
+        assertThat(reads.get(), is(1));
+        assertThat(new String(second.getBody()), is(new String(first.getBody())));
+        assertThat(meterRegistry.get("cache.hit.ratio").tag("cache", AdvertisementPageCache.CACHE_NAME).gauge()
+                .value(), greaterThan(0.0));
+    }
+
+    @Test
+    public void get_readsPagePerSids() {
+        readAs("someone", "perSids");
+        readAs("other", "perSids");
+
+        assertThat(reads.get(), is(2));
+    }
+
+    @Test
+    public void getPublished_sharesPageOfUsersWithSameAttributes() {
+        readPublishedAs("someone", "shared");
+        readPublishedAs("other", "shared");
+
+        assertThat(reads.get(), is(1));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void getPublished_readsPagePerUserWithGrantForPublishedAdvertisement() {
+        jdbcTemplate.update("INSERT INTO ADVERTISEMENT (id, version, created_at, created_by, title, is_published, " +
+                "contact) VALUES (?, 0, CURRENT_TIMESTAMP, ?, 'title', TRUE, 'contact')", PUBLISHED_ID, OWNER);
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, PUBLISHED_ID, OWNER, new Permission[]{BasePermission.READ});
+
+        readPublishedAs(OWNER, "granted");
+        readPublishedAs("other", "granted");
+        readPublishedAs("someone", "granted");
+
+        assertThat(reads.get(), is(2));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void grantToSid_evictsPagesOfSid() {
+        pageCache.get("published", "grant", reader);
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, 4712L, OWNER, new Permission[]{BasePermission.READ});
+        pageCache.get("published", "grant", reader);
+
+        assertThat(reads.get(), is(2));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void changedAdvertisement_evictsPagesContainingIt() {
+        pageCache.get("my", "changed", reader);
+        pageCache.evictAdvertisements(Collections.singletonList(4799L));
+        pageCache.get("my", "changed", reader);
+        assertThat(reads.get(), is(1));
+
+        pageCache.evictAdvertisements(Collections.singletonList(CACHED_ID));
+        pageCache.get("my", "changed", reader);
+        assertThat(reads.get(), is(2));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void remoteInvalidation_evictsPagesContainingAdvertisement() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, CACHED_ID, OWNER, new Permission[]{BasePermission.READ});
+        Long aclId = (Long) ((MutableAcl) aclService.readAclById(new ObjectIdentityImpl(ADVERTISEMENT, CACHED_ID)))
+                .getId();
+        pageCache.get("my", "remote", reader);
+
+        eventPublisher.publishEvent(new AclCacheInvalidatedEvent(this, Collections.singletonList(aclId)));
+        pageCache.get("my", "remote", reader);
+
+        assertThat(reads.get(), is(2));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void remoteInvalidationOfDeletedAcl_evictsAllPages() {
+        pageCache.get("my", "deleted", reader);
+
+        eventPublisher.publishEvent(new AclCacheInvalidatedEvent(this, Collections.singletonList(-1L)));
+        pageCache.get("my", "deleted", reader);
+
+        assertThat(reads.get(), is(2));
+    }
+
+    private void readAs(String user, String page) {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user, null, "ROLE_USER"));
+        try {
+            pageCache.get("my", page, reader);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private void readPublishedAs(String user, String page) {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user, null, "ROLE_USER"));
+        try {
+            pageCache.getPublished(page, reader);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
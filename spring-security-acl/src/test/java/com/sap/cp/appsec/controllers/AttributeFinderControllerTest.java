@@ -1,11 +1,13 @@
 package com.sap.cp.appsec.controllers;
 
+import com.sap.cp.appsec.security.AttributeValueCatalog;
 import net.minidev.json.JSONArray;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -25,10 +27,22 @@ public class AttributeFinderControllerTest {
             "(90002, false, 'ATTR:GROUP_=GROUP')," +
             "(90003, false, 'ATTR:GROUP_:GROUP')," +
             "(90004, false, 'ATTR:GROUP=ADMIN');";
+    private static final String ACL_SID_PREFIX_INSERT_STMT = "INSERT INTO ACL_SID (ID, PRINCIPAL, SID) VALUES " +
+            "(90010, false, 'ATTR:GROUP=GRAPHICS')," +
+            "(90011, false, 'ATTR:GROUP=GRAPHICS_DESIGN')," +
+            "(90012, false, 'ATTR:LOCATION=GR');";
+    private static final String ACL_SID_DELETE_INSERT_STMT = "INSERT INTO ACL_SID (ID, PRINCIPAL, SID) VALUES " +
+            "(90020, false, 'ATTR:GROUP=DELETED');";
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private AttributeValueCatalog attributeValueCatalog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     public void getAll() throws Exception {
         // check that the returned location is correct
@@ -41,6 +55,8 @@ public class AttributeFinderControllerTest {
     @Test
     @Sql(statements = ACL_SID_INSERT_STMT)
     public void createAndGetByAclAttribute() throws Exception {
+        attributeValueCatalog.refresh(); // considers sids inserted with @Sql
+
         // check that the returned location is correct
         mockMvc.perform(get(AttributeFinderController.PATH + "/" + AttributeFinderController.ATTRIBUTE_GROUP))
                 .andExpect(status().isOk())
@@ -49,4 +65,40 @@ public class AttributeFinderControllerTest {
                 .andExpect(jsonPath("$", hasItem("GROUP")))
                 .andExpect(jsonPath("$", hasItem("ADMIN")));
     }
+
+    @Test
+    @Sql(statements = ACL_SID_PREFIX_INSERT_STMT)
+    public void getByAclAttributeWithPrefixAndLimit() throws Exception {
+        attributeValueCatalog.refresh();
+
+        mockMvc.perform(get(AttributeFinderController.PATH + "/" + AttributeFinderController.ATTRIBUTE_GROUP)
+                .param("startsWith", "GRAPH"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[0]", is("GRAPHICS")))
+                .andExpect(jsonPath("$[1]", is("GRAPHICS_DESIGN")));
+
+        mockMvc.perform(get(AttributeFinderController.PATH + "/" + AttributeFinderController.ATTRIBUTE_GROUP)
+                .param("startsWith", "GRAPH")
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)));
+    }
+
+    @Test
+    @Sql(statements = ACL_SID_DELETE_INSERT_STMT)
+    public void refresh_removesDeletedSids() throws Exception {
+        attributeValueCatalog.refresh();
+        mockMvc.perform(get(AttributeFinderController.PATH + "/" + AttributeFinderController.ATTRIBUTE_GROUP)
+                .param("startsWith", "DELETED"))
+                .andExpect(jsonPath("$.length()", is(1)));
+
+        jdbcTemplate.update("DELETE FROM ACL_SID WHERE ID = 90020"); // e.g. by another instance
+        attributeValueCatalog.refresh();
+
+        mockMvc.perform(get(AttributeFinderController.PATH + "/" + AttributeFinderController.ATTRIBUTE_GROUP)
+                .param("startsWith", "DELETED"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(0)));
+    }
 }
@@ -0,0 +1,54 @@
+package com.sap.cp.appsec.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names of the locations, bulletinboards, groups and users of a dataset created by {@link AclDatasetGenerator}.
+ */
+public class AclDataset {
+    private final List<Integer> boardsPerLocation = new ArrayList<>();
+    private final int users;
+    private final int groups;
+
+    AclDataset(AclDatasetSettings settings) {
+        this.users = settings.getUsers();
+        this.groups = settings.getGroups();
+    }
+
+    void addLocation(int boards) {
+        boardsPerLocation.add(boards);
+    }
+
+    public int getLocations() {
+        return boardsPerLocation.size();
+    }
+
+    public int getBoards(int location) {
+        return boardsPerLocation.get(location);
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getGroups() {
+        return groups;
+    }
+
+    public String getLocationName(int location) {
+        return String.format("LOC%03d", location);
+    }
+
+    public String getBoardName(int location, int board) {
+        return String.format("%s_BOARD%03d", getLocationName(location), board);
+    }
+
+    public String getGroupName(int group) {
+        return String.format("UG_%05d", group);
+    }
+
+    public String getUserName(int user) {
+        return String.format("user%06d", user);
+    }
+}
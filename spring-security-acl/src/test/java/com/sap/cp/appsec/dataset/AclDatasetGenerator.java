@@ -0,0 +1,310 @@
+package com.sap.cp.appsec.dataset;
+
+import com.sap.cloud.security.xsuaa.token.XsuaaToken;
+import com.sap.cp.appsec.domain.AclAttribute;
+import com.sap.cp.appsec.domain.Advertisement;
+import liquibase.Contexts;
+import liquibase.Liquibase;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.model.Permission;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Generates a large, reproducible ACL dataset with the shape given by {@link AclDatasetSettings}, replacing the few
+ * rows of {@code db.population} for performance measurements:
+ * <ul>
+ * <li>locations, owned by the location admin and readable by the location attribute sid</li>
+ * <li>bulletinboards per location, owned by the board admin and readable by the board attribute sid</li>
+ * <li>advertisements per bulletinboard, owned by a random user, readable by random groups and inheriting from the
+ * bulletinboard in case they are published</li>
+ * </ul>
+ * The rows are written with {@code COPY} on PostgreSQL and with JDBC batches on H2, their ids start at
+ * {@link AclDatasetSettings#getIdOffset()}. Existing classes and sids are reused. As the rows bypass
+ * {@link com.sap.cp.appsec.security.AclSupport}, start the application once with {@code --rebuild-acl-visibility}.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.sap.cp.appsec.dataset.AclDatasetGenerator
+ * -Dexec.args="jdbc:postgresql://localhost:5432/test testuser test123!"}, the database is migrated with Liquibase
+ * first. The matching mock tokens are written by {@link MockTokenWriter}.
+ */
+public class AclDatasetGenerator {
+    static final String ORIGIN = "userIdp";
+    static final String LOCATION_ADMIN = "locationAdmin";
+    static final String BOARD_ADMIN = "boardAdmin";
+    private static final String ADVERTISEMENT = Advertisement.class.getName();
+    private static final String LOCATION = AclAttribute.LOCATION.getAttributeName();
+    private static final String BULLETINBOARD = AclAttribute.BULLETINBOARD.getAttributeName();
+    private static final Permission[] OWNER_PERMISSIONS = {
+            BasePermission.READ, BasePermission.WRITE, BasePermission.ADMINISTRATION};
+    private static final int BATCH_SIZE = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AclDatasetSettings settings;
+    private final BulkWriter writer;
+    private final Random random;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Table advertisements = new Table("advertisement", "id", "version", "created_at", "created_by",
+            "title", "is_published", "contact");
+    private final Table objectIdentities = new Table("acl_object_identity", "id", "object_id_class",
+            "object_id_identity", "parent_object", "owner_sid", "entries_inheriting");
+    private final Table entries = new Table("acl_entry", "id", "acl_object_identity", "ace_order", "sid", "mask",
+            "granting", "audit_success", "audit_failure");
+    private final Table ancestors = new Table("acl_object_ancestor", "descendant", "ancestor", "depth");
+    private final Map<String, Long> sidIds = new HashMap<>();
+    private long nextAdvertisementId;
+    private long nextObjectIdentityId;
+    private long nextEntryId;
+    private long nextSidId;
+
+    public AclDatasetGenerator(DataSource dataSource, AclDatasetSettings settings) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.settings = settings;
+        this.writer = BulkWriter.create(jdbcTemplate);
+        this.random = new Random(settings.getSeed());
+    }
+
+    public AclDataset generate() {
+        logger.info("generating ACL dataset with {}", settings);
+        nextAdvertisementId = getFirstId("advertisement");
+        nextObjectIdentityId = getFirstId("acl_object_identity");
+        nextEntryId = getFirstId("acl_entry");
+        nextSidId = getFirstId("acl_sid");
+        AclDataset dataset = new AclDataset(settings);
+        for (int location = 0; location < settings.getLocations(); location++) {
+            dataset.addLocation(settings.getBoardsPerLocation().next(random));
+        }
+
+        long locationClass = getOrCreateClass(LOCATION, String.class);
+        long boardClass = getOrCreateClass(BULLETINBOARD, String.class);
+        long advertisementClass = getOrCreateClass(ADVERTISEMENT, Long.class);
+        createSids(dataset);
+
+        long locationAdmin = getSidId(principal(LOCATION_ADMIN));
+        long boardAdmin = getSidId(principal(BOARD_ADMIN));
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int location = 0; location < dataset.getLocations(); location++) {
+            String locationName = dataset.getLocationName(location);
+            long locationAcl = addObjectIdentity(locationClass, locationName, Collections.emptyList(), locationAdmin,
+                    false);
+            int aceOrder = addEntries(locationAcl, 0, locationAdmin, OWNER_PERMISSIONS);
+            addEntries(locationAcl, aceOrder, getSidId(AclAttribute.LOCATION.getSidForAttributeValue(locationName)),
+                    BasePermission.READ);
+
+            for (int board = 0; board < dataset.getBoards(location); board++) {
+                String boardName = dataset.getBoardName(location, board);
+                List<Long> boardAncestors = Collections.singletonList(locationAcl);
+                long boardAcl = addObjectIdentity(boardClass, boardName, boardAncestors, boardAdmin, true);
+                aceOrder = addEntries(boardAcl, 0, boardAdmin, OWNER_PERMISSIONS);
+                addEntries(boardAcl, aceOrder,
+                        getSidId(AclAttribute.BULLETINBOARD.getSidForAttributeValue(boardName)), BasePermission.READ);
+
+                int ads = settings.getAdsPerBoard().next(random);
+                for (int ad = 0; ad < ads; ad++) {
+                    addAdvertisement(advertisementClass, Arrays.asList(boardAcl, locationAcl), dataset, now);
+                }
+                flushIfFull();
+            }
+        }
+        flush();
+        logger.info("generated {} advertisements, {} object identities and {} ACEs", advertisements.written,
+                objectIdentities.written, entries.written);
+        return dataset;
+    }
+
+    private void addAdvertisement(long advertisementClass, List<Long> boardAncestors, AclDataset dataset,
+                                  Timestamp now) {
+        String userName = dataset.getUserName(random.nextInt(dataset.getUsers()));
+        String owner = principal(userName);
+        boolean published = random.nextDouble() < settings.getPublishedRatio();
+        long id = nextAdvertisementId++;
+        advertisements.add(id, 0L, now, owner, "Advertisement " + id, published, userName + "@example.com");
+
+        long acl = addObjectIdentity(advertisementClass, String.valueOf(id),
+                published ? boardAncestors : Collections.emptyList(), getSidId(owner), true);
+        int aceOrder = addEntries(acl, 0, getSidId(owner), OWNER_PERMISSIONS);
+        Set<Integer> groups = new HashSet<>();
+        int groupGrants = Math.min(settings.getGroupGrantsPerAd().next(random), dataset.getGroups());
+        while (groups.size() < groupGrants) {
+            groups.add(random.nextInt(dataset.getGroups()));
+        }
+        for (int group : groups) {
+            aceOrder = addEntries(acl, aceOrder,
+                    getSidId(AclAttribute.GROUP.getSidForAttributeValue(dataset.getGroupName(group))),
+                    BasePermission.READ);
+        }
+    }
+
+    /**
+     * @param ancestorIds the parent first, followed by its ancestors
+     */
+    private long addObjectIdentity(long objectClass, String identity, List<Long> ancestorIds, long owner,
+                                   boolean inheriting) {
+        long id = nextObjectIdentityId++;
+        objectIdentities.add(id, objectClass, identity, ancestorIds.isEmpty() ? null : ancestorIds.get(0), owner,
+                inheriting);
+        ancestors.add(id, id, 0);
+        for (int depth = 1; depth <= ancestorIds.size(); depth++) {
+            ancestors.add(id, ancestorIds.get(depth - 1), depth);
+        }
+        return id;
+    }
+
+    /**
+     * @return the ace order of the next ACE
+     */
+    private int addEntries(long acl, int aceOrder, long sid, Permission... permissions) {
+        if (settings.isCombinedMasks()) {
+            int mask = 0;
+            for (Permission permission : permissions) {
+                mask |= permission.getMask();
+            }
+            entries.add(nextEntryId++, acl, aceOrder++, sid, mask, true, false, false);
+        } else {
+            for (Permission permission : permissions) {
+                entries.add(nextEntryId++, acl, aceOrder++, sid, permission.getMask(), true, false, false);
+            }
+        }
+        return aceOrder;
+    }
+
+    private void createSids(AclDataset dataset) {
+        jdbcTemplate.query("select id, sid from acl_sid", resultSet -> {
+            sidIds.put(resultSet.getString("sid"), resultSet.getLong("id"));
+        });
+        Table sids = new Table("acl_sid", "id", "principal", "sid");
+        addSid(sids, principal(LOCATION_ADMIN), true);
+        addSid(sids, principal(BOARD_ADMIN), true);
+        for (int user = 0; user < dataset.getUsers(); user++) {
+            addSid(sids, principal(dataset.getUserName(user)), true);
+        }
+        for (int group = 0; group < dataset.getGroups(); group++) {
+            addSid(sids, AclAttribute.GROUP.getSidForAttributeValue(dataset.getGroupName(group)), false);
+        }
+        for (int location = 0; location < dataset.getLocations(); location++) {
+            addSid(sids, AclAttribute.LOCATION.getSidForAttributeValue(dataset.getLocationName(location)), false);
+            for (int board = 0; board < dataset.getBoards(location); board++) {
+                addSid(sids, AclAttribute.BULLETINBOARD.getSidForAttributeValue(dataset.getBoardName(location, board)),
+                        false);
+            }
+        }
+        sids.flush();
+        logger.info("generated {} sids", sids.written);
+    }
+
+    private void addSid(Table sids, String sid, boolean principal) {
+        if (!sidIds.containsKey(sid)) {
+            long id = nextSidId++;
+            sidIds.put(sid, id);
+            sids.add(id, principal, sid);
+            if (sids.rows.size() >= BATCH_SIZE) {
+                sids.flush();
+            }
+        }
+    }
+
+    private long getSidId(String sid) {
+        return sidIds.get(sid);
+    }
+
+    private long getOrCreateClass(String name, Class<?> idType) {
+        List<Long> ids = jdbcTemplate.queryForList("select id from acl_class where class = ?", Long.class, name);
+        if (!ids.isEmpty()) {
+            return ids.get(0);
+        }
+        long id = getFirstId("acl_class");
+        jdbcTemplate.update("insert into acl_class (id, class, class_id_type) values (?, ?, ?)", id, name,
+                idType.getName());
+        return id;
+    }
+
+    /**
+     * @return the id offset, or the next id in case the table contains generated rows already
+     */
+    private long getFirstId(String table) {
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+        return maxId == null ? settings.getIdOffset() : Math.max(settings.getIdOffset(), maxId + 1);
+    }
+
+    private void flushIfFull() {
+        if (advertisements.rows.size() >= BATCH_SIZE || objectIdentities.rows.size() >= BATCH_SIZE
+                || ancestors.rows.size() >= BATCH_SIZE || entries.rows.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        // in the order of the foreign keys
+        advertisements.flush();
+        objectIdentities.flush();
+        ancestors.flush();
+        entries.flush();
+    }
+
+    static String principal(String userName) {
+        return XsuaaToken.getUniquePrincipalName(ORIGIN, userName);
+    }
+
+    private class Table {
+        private final String name;
+        private final String[] columns;
+        private final List<Object[]> rows = new ArrayList<>();
+        private long written;
+
+        Table(String name, String... columns) {
+            this.name = name;
+            this.columns = columns;
+        }
+
+        void add(Object... row) {
+            rows.add(row);
+        }
+
+        void flush() {
+            if (!rows.isEmpty()) {
+                writer.write(name, columns, rows);
+                written += rows.size();
+                logger.debug("{} rows written to {}", written, name);
+                rows.clear();
+            }
+        }
+    }
+
+    /**
+     * @param args JDBC url, user and password of the database
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: AclDatasetGenerator <jdbc-url> [<user> <password>]");
+            System.exit(1);
+        }
+        AclDatasetSettings settings = AclDatasetSettings.fromSystemProperties();
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(args[0],
+                args.length > 1 ? args[1] : null, args.length > 2 ? args[2] : null, true);
+        try {
+            new Liquibase("db/changelog/db.changelog-main.yaml", new ClassLoaderResourceAccessor(),
+                    DatabaseFactory.getInstance().findCorrectDatabaseImplementation(
+                            new JdbcConnection(dataSource.getConnection())))
+                    .update(new Contexts(settings.isCombinedMasks() ? "combined-masks" : "default"));
+
+            AclDataset dataset = new AclDatasetGenerator(dataSource, settings).generate();
+
+            Path tokens = Paths.get(System.getProperty("dataset.tokens-file", "target/acl-dataset/tokens.csv"));
+            new MockTokenWriter(settings).write(dataset, tokens);
+        } finally {
+            dataSource.destroy();
+        }
+    }
+}
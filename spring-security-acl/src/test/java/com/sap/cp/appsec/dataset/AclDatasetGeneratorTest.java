@@ -0,0 +1,94 @@
+package com.sap.cp.appsec.dataset;
+
+import com.sap.cp.appsec.domain.AdvertisementAclRepository;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import javax.transaction.Transactional;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class AclDatasetGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private AdvertisementAclRepository repository;
+
+    // 2 locations with 2 bulletinboards each and 3 published advertisements per bulletinboard, all owned by a single
+    // user
+    private final AclDatasetSettings settings = new AclDatasetSettings()
+            .setLocations(2)
+            .setBoardsPerLocation(AclDatasetSettings.Range.of(2))
+            .setAdsPerBoard(AclDatasetSettings.Range.of(3))
+            .setUsers(1)
+            .setGroups(1)
+            .setGroupGrantsPerAd(AclDatasetSettings.Range.of(0))
+            .setTokens(1)
+            .setSidsPerToken(AclDatasetSettings.Range.of(4))
+            .setPublishedRatio(1);
+
+    @Test
+    public void generate_createsAclsOfAllLevels() {
+        new AclDatasetGenerator(dataSource, settings).generate();
+
+        // owner ACEs plus a read ACE per location and board, owner ACEs per advertisement
+        assertThat(countGenerated("acl_entry"), is(2 * 4 + 4 * 4 + 12 * 3L));
+        assertThat(countGenerated("acl_object_identity"), is(2 + 4 + 12L));
+        assertThat(countGenerated("advertisement"), is(12L));
+        // itself plus the bulletinboard and location for published advertisements
+        assertThat(countAncestors(), is(2 + 4 * 2 + 12 * 3L));
+        assertThat(repository.countByPermission(BasePermission.READ.getMask(),
+                new String[]{AclDatasetGenerator.principal("user000000")}), is(12L));
+    }
+
+    @Test
+    public void generate_withCombinedMasks_createsAnAcePerSid() {
+        new AclDatasetGenerator(dataSource, settings.setCombinedMasks(true)).generate();
+
+        assertThat(countGenerated("acl_entry"), is(2 * 2 + 4 * 2 + 12L));
+    }
+
+    @Test
+    public void mockTokens_matchDataset() throws Exception {
+        AclDataset dataset = new AclDatasetGenerator(dataSource, settings).generate();
+        Path file = folder.getRoot().toPath().resolve("tokens.csv");
+
+        new MockTokenWriter(settings).write(dataset, file);
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines, hasSize(2));
+        assertThat(lines.get(1), startsWith("user000000,4,"));
+    }
+
+    private long countAncestors() {
+        return new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from acl_object_ancestor where descendant >= ?", Long.class, settings.getIdOffset());
+    }
+
+    private long countGenerated(String table) {
+        return new JdbcTemplate(dataSource).queryForObject("select count(*) from " + table + " where id >= ?",
+                Long.class, settings.getIdOffset());
+    }
+}
@@ -0,0 +1,224 @@
+package com.sap.cp.appsec.dataset;
+
+import java.util.Random;
+
+/**
+ * Shape of the dataset created by {@link AclDatasetGenerator}. The defaults resemble the production shape, i.e. 50
+ * locations with 40 bulletinboards each, about 100k advertisements and 500k ACEs.
+ *
+ * Every setting can be overridden with a system property, e.g. {@code -Ddataset.ads-per-board=10..30}. Counts
+ * are either a constant, or a range {@code min..max} from which every value is drawn uniformly.
+ */
+public class AclDatasetSettings {
+    private static final String PREFIX = "dataset.";
+
+    private int locations = 50;
+    private Range boardsPerLocation = Range.of(40);
+    private Range adsPerBoard = Range.parse("0..100");
+    private int users = 20000;
+    private int groups = 500;
+    private Range groupGrantsPerAd = Range.parse("0..4");
+    private double publishedRatio = 0.8;
+    private boolean combinedMasks = false;
+    private int tokens = 1000;
+    private Range sidsPerToken = Range.parse("1..20");
+    private long idOffset = 200_000_000_000L;
+    private long seed = 4711L;
+
+    public static AclDatasetSettings fromSystemProperties() {
+        AclDatasetSettings settings = new AclDatasetSettings();
+        settings.locations = Integer.getInteger(PREFIX + "locations", settings.locations);
+        settings.boardsPerLocation = getRange("boards-per-location", settings.boardsPerLocation);
+        settings.adsPerBoard = getRange("ads-per-board", settings.adsPerBoard);
+        settings.users = Integer.getInteger(PREFIX + "users", settings.users);
+        settings.groups = Integer.getInteger(PREFIX + "groups", settings.groups);
+        settings.groupGrantsPerAd = getRange("group-grants-per-ad", settings.groupGrantsPerAd);
+        settings.publishedRatio = Double.parseDouble(
+                System.getProperty(PREFIX + "published-ratio", String.valueOf(settings.publishedRatio)));
+        settings.combinedMasks = Boolean.parseBoolean(
+                System.getProperty(PREFIX + "combined-masks", String.valueOf(settings.combinedMasks)));
+        settings.tokens = Integer.getInteger(PREFIX + "tokens", settings.tokens);
+        settings.sidsPerToken = getRange("sids-per-token", settings.sidsPerToken);
+        settings.idOffset = Long.getLong(PREFIX + "id-offset", settings.idOffset);
+        settings.seed = Long.getLong(PREFIX + "seed", settings.seed);
+        return settings;
+    }
+
+    private static Range getRange(String name, Range defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        return value == null ? defaultValue : Range.parse(value);
+    }
+
+    public int getLocations() {
+        return locations;
+    }
+
+    public AclDatasetSettings setLocations(int locations) {
+        this.locations = locations;
+        return this;
+    }
+
+    public Range getBoardsPerLocation() {
+        return boardsPerLocation;
+    }
+
+    public AclDatasetSettings setBoardsPerLocation(Range boardsPerLocation) {
+        this.boardsPerLocation = boardsPerLocation;
+        return this;
+    }
+
+    public Range getAdsPerBoard() {
+        return adsPerBoard;
+    }
+
+    public AclDatasetSettings setAdsPerBoard(Range adsPerBoard) {
+        this.adsPerBoard = adsPerBoard;
+        return this;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public AclDatasetSettings setUsers(int users) {
+        this.users = users;
+        return this;
+    }
+
+    public int getGroups() {
+        return groups;
+    }
+
+    public AclDatasetSettings setGroups(int groups) {
+        this.groups = groups;
+        return this;
+    }
+
+    public Range getGroupGrantsPerAd() {
+        return groupGrantsPerAd;
+    }
+
+    public AclDatasetSettings setGroupGrantsPerAd(Range groupGrantsPerAd) {
+        this.groupGrantsPerAd = groupGrantsPerAd;
+        return this;
+    }
+
+    /**
+     * @return the share of advertisements, that are published to their bulletinboard
+     */
+    public double getPublishedRatio() {
+        return publishedRatio;
+    }
+
+    public AclDatasetSettings setPublishedRatio(double publishedRatio) {
+        this.publishedRatio = publishedRatio;
+        return this;
+    }
+
+    /**
+     * @return true, in case a single ACE per sid is created, as with {@code acl.permissions.combined-masks=true}
+     */
+    public boolean isCombinedMasks() {
+        return combinedMasks;
+    }
+
+    public AclDatasetSettings setCombinedMasks(boolean combinedMasks) {
+        this.combinedMasks = combinedMasks;
+        return this;
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    public AclDatasetSettings setTokens(int tokens) {
+        this.tokens = tokens;
+        return this;
+    }
+
+    /**
+     * @return the number of sids of a token user, including the principal sid
+     */
+    public Range getSidsPerToken() {
+        return sidsPerToken;
+    }
+
+    public AclDatasetSettings setSidsPerToken(Range sidsPerToken) {
+        this.sidsPerToken = sidsPerToken;
+        return this;
+    }
+
+    /**
+     * @return the first id of the generated rows, chosen above the ids of db.population and the sequences
+     */
+    public long getIdOffset() {
+        return idOffset;
+    }
+
+    public AclDatasetSettings setIdOffset(long idOffset) {
+        this.idOffset = idOffset;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public AclDatasetSettings setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "locations=" + locations + ", boardsPerLocation=" + boardsPerLocation + ", adsPerBoard=" + adsPerBoard
+                + ", users=" + users + ", groups=" + groups + ", groupGrantsPerAd=" + groupGrantsPerAd
+                + ", publishedRatio=" + publishedRatio + ", combinedMasks=" + combinedMasks + ", tokens=" + tokens
+                + ", sidsPerToken=" + sidsPerToken;
+    }
+
+    /**
+     * Uniform distribution of the integers from min to max, both inclusive.
+     */
+    public static class Range {
+        private final int min;
+        private final int max;
+
+        private Range(int min, int max) {
+            if (min < 0 || max < min) {
+                throw new IllegalArgumentException("invalid range " + min + ".." + max);
+            }
+            this.min = min;
+            this.max = max;
+        }
+
+        public static Range of(int value) {
+            return new Range(value, value);
+        }
+
+        public static Range of(int min, int max) {
+            return new Range(min, max);
+        }
+
+        /**
+         * @param value a constant like "40" or a range like "0..100"
+         */
+        public static Range parse(String value) {
+            int separator = value.indexOf("..");
+            if (separator < 0) {
+                return of(Integer.parseInt(value.trim()));
+            }
+            return of(Integer.parseInt(value.substring(0, separator).trim()),
+                    Integer.parseInt(value.substring(separator + 2).trim()));
+        }
+
+        public int next(Random random) {
+            return min + random.nextInt(max - min + 1);
+        }
+
+        @Override
+        public String toString() {
+            return min == max ? String.valueOf(min) : min + ".." + max;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.sap.cp.appsec.dataset;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Inserts many rows at once: with {@code COPY} on PostgreSQL, and with JDBC batches on other databases like H2.
+ */
+interface BulkWriter {
+
+    void write(String table, String[] columns, List<Object[]> rows);
+
+    static BulkWriter create(JdbcTemplate jdbcTemplate) {
+        String database = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(database) ? new CopyWriter(jdbcTemplate) : new BatchWriter(jdbcTemplate);
+    }
+
+    class BatchWriter implements BulkWriter {
+        private final JdbcTemplate jdbcTemplate;
+
+        BatchWriter(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Override
+        public void write(String table, String[] columns, List<Object[]> rows) {
+            StringBuilder parameters = new StringBuilder("?");
+            for (int column = 1; column < columns.length; column++) {
+                parameters.append(", ?");
+            }
+            jdbcTemplate.batchUpdate("insert into " + table + " (" + String.join(", ", columns) + ") values ("
+                    + parameters + ")", rows);
+        }
+    }
+
+    class CopyWriter implements BulkWriter {
+        private final JdbcTemplate jdbcTemplate;
+
+        CopyWriter(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Override
+        public void write(String table, String[] columns, List<Object[]> rows) {
+            String sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN WITH (FORMAT csv)";
+            String csv = toCsv(rows);
+            jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(csv));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        private static String toCsv(List<Object[]> rows) {
+            StringBuilder csv = new StringBuilder();
+            for (Object[] row : rows) {
+                for (int column = 0; column < row.length; column++) {
+                    if (column > 0) {
+                        csv.append(',');
+                    }
+                    if (row[column] instanceof String) {
+                        csv.append('"').append(((String) row[column]).replace("\"", "\"\"")).append('"');
+                    } else if (row[column] != null) { // an unquoted empty value is NULL
+                        csv.append(row[column]);
+                    }
+                }
+                csv.append('\n');
+            }
+            return csv.toString();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.sap.cp.appsec.dataset;
+
+import com.sap.cloud.security.xsuaa.test.JwtGenerator;
+import com.sap.cp.appsec.domain.AclAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Writes JWT tokens for the users of an {@link AclDataset} to a CSV file with the columns user, sids and token. The
+ * tokens are signed with the key of the mock XSUAA, i.e. they are accepted by the application started with the
+ * "uaamock" profile.
+ *
+ * Besides the principal, every token carries the location attribute of the user, and bulletinboard and group
+ * attributes of that location, so that the number of sids follows {@link AclDatasetSettings#getSidsPerToken()}.
+ */
+public class MockTokenWriter {
+    private static final String CLIENT_ID = "sb-bulletinboard!t400"; // as configured for the uaamock profile
+
+    private final AclDatasetSettings settings;
+    private final Random random;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    public MockTokenWriter(AclDatasetSettings settings) {
+        this.settings = settings;
+        this.random = new Random(settings.getSeed());
+    }
+
+    public void write(AclDataset dataset, Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        int tokens = Math.min(settings.getTokens(), dataset.getUsers());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("user,sids,token");
+            writer.newLine();
+            for (int user = 0; user < tokens; user++) {
+                String userName = dataset.getUserName(user);
+                Map<String, String[]> attributes = createAttributes(dataset, settings.getSidsPerToken().next(random));
+                JwtGenerator generator = new JwtGenerator(CLIENT_ID).setUserName(userName);
+                int sids = 1;
+                for (Map.Entry<String, String[]> attribute : attributes.entrySet()) {
+                    generator.addAttribute(attribute.getKey(), attribute.getValue());
+                    sids += attribute.getValue().length;
+                }
+                writer.write(userName + "," + sids + "," + generator.getToken().getTokenValue());
+                writer.newLine();
+            }
+        }
+        logger.info("{} mock tokens written to {}", tokens, file);
+    }
+
+    /**
+     * @return the XS user attributes for a user with the given number of sids, including the principal sid
+     */
+    private Map<String, String[]> createAttributes(AclDataset dataset, int sids) {
+        Map<String, String[]> attributes = new LinkedHashMap<>();
+        if (sids <= 1) {
+            return attributes;
+        }
+        int location = random.nextInt(dataset.getLocations());
+        attributes.put(AclAttribute.LOCATION.getXSUserAttributeName(), new String[]{dataset.getLocationName(location)});
+
+        Set<String> boards = new LinkedHashSet<>();
+        Set<String> groups = new LinkedHashSet<>();
+        int maxBoards = dataset.getBoards(location);
+        int maxGroups = dataset.getGroups();
+        while (2 + boards.size() + groups.size() < sids && (boards.size() < maxBoards || groups.size() < maxGroups)) {
+            if (boards.size() < maxBoards && (groups.size() == maxGroups || random.nextBoolean())) {
+                boards.add(dataset.getBoardName(location, random.nextInt(maxBoards)));
+            } else {
+                groups.add(dataset.getGroupName(random.nextInt(maxGroups)));
+            }
+        }
+        if (!boards.isEmpty()) {
+            attributes.put(AclAttribute.BULLETINBOARD.getXSUserAttributeName(), boards.toArray(new String[0]));
+        }
+        if (!groups.isEmpty()) {
+            attributes.put(AclAttribute.GROUP.getXSUserAttributeName(), groups.toArray(new String[0]));
+        }
+        return attributes;
+    }
+}
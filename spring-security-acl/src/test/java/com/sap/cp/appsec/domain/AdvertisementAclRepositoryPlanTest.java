@@ -0,0 +1,157 @@
+package com.sap.cp.appsec.domain;
+
+import liquibase.Contexts;
+import liquibase.Liquibase;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.security.acls.domain.BasePermission;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+/**
+ * Checks against PostgreSQL that the queries of {@link AdvertisementAclRepository} use the indexes created for them.
+ * The database is filled with {@value #ADVERTISEMENTS} advertisements, half of them published, each granted to its
+ * owner and to a group attribute, so that the planner decides based on realistic statistics: the owner sids are
+ * selective, the group sid matches all advertisements. Skipped in case Docker is not available.
+ */
+public class AdvertisementAclRepositoryPlanTest {
+
+    private static final int ADVERTISEMENTS = 100000;
+    private static final int OWNERS = 10000;
+    private static final long CLASS_ID = 3000000L;
+    private static final long SID_ID = 4000000L; // the group sid, owner sids follow
+    private static final long OBJECT_ID = 5000000L;
+    private static final long ENTRY_ID = 6000000L;
+    private static final List<String> OWNER_SIDS = Arrays.asList("owner-42", "ATTR:LOCATION=DE");
+    private static final List<String> GROUP_SIDS = Collections.singletonList("ATTR:GROUP=ALL");
+    private static final String PAGE = " ORDER BY ads.id DESC LIMIT 21"; // as appended by Spring Data for a Pageable
+
+    private static PostgreSQLContainer<?> postgres;
+    private static SingleConnectionDataSource dataSource;
+    private static NamedParameterJdbcTemplate jdbcTemplate;
+
+    @BeforeClass
+    public static void setUpDatabase() throws Exception {
+        Assume.assumeTrue("Docker is not available", DockerClientFactory.instance().isDockerAvailable());
+
+        postgres = new PostgreSQLContainer<>("postgres:11");
+        postgres.start();
+        dataSource = new SingleConnectionDataSource(postgres.getJdbcUrl(), postgres.getUsername(),
+                postgres.getPassword(), true);
+
+        Connection connection = dataSource.getConnection();
+        new Liquibase("db/changelog/db.changelog-main.yaml", new ClassLoaderResourceAccessor(),
+                DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection)))
+                .update(new Contexts());
+
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        insertAdvertisements();
+        jdbcTemplate.getJdbcOperations().execute("ANALYZE");
+    }
+
+    private static void insertAdvertisements() {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("ads", ADVERTISEMENTS)
+                .addValue("owners", OWNERS)
+                .addValue("classId", CLASS_ID)
+                .addValue("sidId", SID_ID)
+                .addValue("objectId", OBJECT_ID)
+                .addValue("entryId", ENTRY_ID);
+        jdbcTemplate.update("INSERT INTO advertisement (id, version, created_at, created_by, title, is_published, " +
+                "contact) SELECT g, 0, current_timestamp, 'owner', 'title', g % 2 = 0, 'contact' " +
+                "FROM generate_series(1, :ads) g", parameters);
+        jdbcTemplate.update("INSERT INTO acl_class (id, class, class_id_type) " +
+                "VALUES (:classId, 'com.sap.cp.appsec.domain.Advertisement', 'java.lang.Long')", parameters);
+        jdbcTemplate.update("INSERT INTO acl_sid (id, principal, sid) VALUES (:sidId, false, 'ATTR:GROUP=ALL')",
+                parameters);
+        jdbcTemplate.update("INSERT INTO acl_sid (id, principal, sid) " +
+                "SELECT :sidId + g, true, 'owner-' || g FROM generate_series(1, :owners) g", parameters);
+        jdbcTemplate.update("INSERT INTO acl_object_identity (id, object_id_class, object_id_identity, owner_sid, " +
+                "entries_inheriting) SELECT :objectId + g, :classId, CAST(g AS varchar), :sidId + 1 + g % :owners, " +
+                "true FROM generate_series(1, :ads) g", parameters);
+        jdbcTemplate.update("INSERT INTO acl_entry (id, acl_object_identity, ace_order, sid, mask, granting, " +
+                "audit_success, audit_failure) " +
+                "SELECT :entryId + 2 * g, :objectId + g, 0, :sidId + 1 + g % :owners, 1, true, false, false " +
+                "FROM generate_series(1, :ads) g " +
+                "UNION ALL SELECT :entryId + 2 * g + 1, :objectId + g, 1, :sidId, 1, true, false, false " +
+                "FROM generate_series(1, :ads) g", parameters);
+        jdbcTemplate.update("INSERT INTO acl_advertisement_visibility (sid, advertisement_id, mask) " +
+                "SELECT entry.sid, obj.object_id_identity_num, entry.mask FROM acl_entry entry " +
+                "INNER JOIN acl_object_identity obj ON obj.id = entry.acl_object_identity " +
+                "WHERE obj.object_id_class = :classId", parameters);
+    }
+
+    @AfterClass
+    public static void tearDownDatabase() {
+        if (dataSource != null) {
+            dataSource.destroy();
+        }
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Test
+    public void selectAdsForSid_usesEntrySidIndex() {
+        String plan = explain(AdvertisementAclRepository.SELECT_ADS_FOR_SID_QUERY + PAGE, OWNER_SIDS);
+
+        assertThat(plan, containsString("idx_acl_entry_sid"));
+    }
+
+    @Test
+    public void selectAdsForSidAfter_usesNumericIdentityIndex() {
+        String plan = explain(AdvertisementAclRepository.SELECT_ADS_FOR_SID_AFTER_QUERY + " LIMIT 21", GROUP_SIDS);
+
+        assertThat(plan, containsString("idx_acl_object_identity_num"));
+    }
+
+    @Test
+    public void selectPublishedAdsForSid_usesVisibilityIndex() {
+        String plan = explain(AdvertisementAclRepository.SELECT_PUBLISHED_ADS_FOR_SID_QUERY + PAGE, OWNER_SIDS);
+
+        assertThat(plan, containsString("pk_acl_advertisement_visibility"));
+    }
+
+    @Test
+    public void selectPublishedAdsForSidAfter_usesPublishedIndex() {
+        String plan = explain(AdvertisementAclRepository.SELECT_PUBLISHED_ADS_FOR_SID_AFTER_QUERY + " LIMIT 21",
+                GROUP_SIDS);
+
+        assertThat(plan, containsString("idx_advertisement_published"));
+    }
+
+    @Test
+    public void findChildren_usesParentIndex() {
+        String plan = explain("SELECT id FROM acl_object_identity WHERE parent_object = :parent", OWNER_SIDS);
+
+        assertThat(plan, containsString("idx_acl_object_identity_parent"));
+    }
+
+    private static String explain(String query, List<String> sids) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("mask", BasePermission.READ.getMask())
+                .addValue("sid", sids)
+                .addValue("afterId", (long) ADVERTISEMENTS / 2)
+                .addValue("parent", 1L);
+        // Spring Data expands collections with parentheses, NamedParameterJdbcTemplate without
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + query.replace("IN :sid", "IN (:sid)"),
+                parameters, String.class);
+        return String.join("\n", plan);
+    }
+}
@@ -0,0 +1,60 @@
+package com.sap.cp.appsec.security;
+
+import com.sap.cp.appsec.domain.Advertisement;
+import com.sap.cp.appsec.domain.AdvertisementAclRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.transaction.Transactional;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class AclMetricsTest {
+
+    private static final String ADVERTISEMENT = Advertisement.class.getName();
+    private static final String OWNER = "owner";
+
+    @Autowired
+    private AclSupport aclSupport;
+
+    @Autowired
+    private AdvertisementAclRepository repository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void aclSupportAndLookups_areTimed() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, 4713L, OWNER, new Permission[]{BasePermission.READ});
+        aclSupport.hasUserPermission(ADVERTISEMENT, 4713L, OWNER, new Permission[]{BasePermission.READ});
+
+        assertThat(meterRegistry.get("acl.support").tag("operation", "grant").timer().count(),
+                greaterThanOrEqualTo(1L));
+        assertThat(meterRegistry.get("acl.support").tag("operation", "hasUserPermission").timer().count(),
+                greaterThanOrEqualTo(1L));
+        assertThat(meterRegistry.get("acl.lookup").timers().size(), greaterThanOrEqualTo(1));
+        assertThat(meterRegistry.get("acl.lookup.batch.size").summary().count(), greaterThanOrEqualTo(1L));
+    }
+
+    @Test
+    public void repositoryQueries_areTimedWithSidsBucket() {
+        repository.countByPermission(BasePermission.READ.getMask(), new String[]{OWNER, "ATTR:LOCATION=DE"});
+
+        assertThat(meterRegistry.get("acl.repository.query")
+                .tag("method", "countByPermission")
+                .tag("sids", "2-5")
+                .timer().count(), greaterThanOrEqualTo(1L));
+    }
+}
@@ -0,0 +1,73 @@
+package com.sap.cp.appsec.security;
+
+import com.sap.cp.appsec.domain.Advertisement;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.domain.ObjectIdentityImpl;
+import org.springframework.security.acls.model.MutableAcl;
+import org.springframework.security.acls.model.MutableAclService;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.transaction.Transactional;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class AclSupportTest {
+
+    private static final String ADVERTISEMENT = Advertisement.class.getName();
+    private static final String OWNER = "owner";
+    private static final Permission[] READ = new Permission[]{BasePermission.READ};
+
+    @Autowired
+    private AclSupport aclSupport;
+
+    @Autowired
+    private MutableAclService aclService;
+
+    @SpyBean
+    private AdvertisementVisibilityIndex visibilityIndex;
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void grantPermissionsToUsers_refreshesChangedAclsOnly() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, 4711L, OWNER, READ);
+
+        aclSupport.grantPermissionsToUsers(ADVERTISEMENT, Arrays.asList(
+                new PermissionAssignment(4711L, OWNER, READ),
+                new PermissionAssignment(4712L, OWNER, READ)));
+
+        Serializable changedAclId = ((MutableAcl) aclService.readAclById(new ObjectIdentityImpl(ADVERTISEMENT, 4712L)))
+                .getId();
+        verify(visibilityIndex).refreshAll(argThat(aclIds -> aclIds.size() == 1 && aclIds.contains(changedAclId)));
+    }
+
+    @Test(expected = AccessDeniedException.class)
+    @WithMockUser(username = OWNER)
+    public void checkPermission_deniesObjectsWithoutGrant() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, 4711L, OWNER, READ);
+
+        aclSupport.checkPermission(ADVERTISEMENT, Arrays.asList(4711L, 4712L), BasePermission.READ);
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void checkPermission_grantsObjectsWithGrant() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, 4711L, OWNER, READ);
+
+        aclSupport.checkPermission(ADVERTISEMENT, Collections.singletonList(4711L), BasePermission.READ);
+    }
+}
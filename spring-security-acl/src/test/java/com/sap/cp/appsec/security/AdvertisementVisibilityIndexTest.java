@@ -0,0 +1,119 @@
+package com.sap.cp.appsec.security;
+
+import com.sap.cp.appsec.domain.Advertisement;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class AdvertisementVisibilityIndexTest {
+
+    private static final String ADVERTISEMENT = Advertisement.class.getName();
+    private static final Long ADVERTISEMENT_ID = 4711L;
+    private static final String OWNER = "owner";
+    private static final String POPULATE_SCRIPT = "db/changelog/v0.2/populate-visibility-table.sql";
+
+    @Autowired
+    private AclSupport aclSupport;
+
+    @Autowired
+    private AdvertisementVisibilityIndex visibilityIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void grantedPermissions_areCombined() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER,
+                new Permission[]{BasePermission.READ, BasePermission.WRITE});
+
+        assertThat(getVisibleMask(OWNER), is(BasePermission.READ.getMask() | BasePermission.WRITE.getMask()));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void removedPermissions_areNotVisible() {
+        Permission[] permissions = new Permission[]{BasePermission.READ, BasePermission.WRITE};
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER, permissions);
+        aclSupport.removePermissionFromUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER, permissions);
+
+        assertThat(getVisibleMask(OWNER), is(nullValue()));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void permissionsOfBulletinboardAndLocation_areInherited() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER,
+                new Permission[]{BasePermission.READ});
+        aclSupport.setParent(ADVERTISEMENT, ADVERTISEMENT_ID, "bulletinboard", "DE_WDF03_Board");
+
+        assertThat(getVisibleMask("ATTR:BULLETINBOARD=DE_WDF03_Board"), is(BasePermission.READ.getMask()));
+        assertThat(getVisibleMask("ATTR:LOCATION=DE"), is(BasePermission.READ.getMask()));
+        assertThat(getVisibleMask("ATTR:LOCATION=IL"), is(nullValue()));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void rebuild_keepsVisibility() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, ADVERTISEMENT_ID, OWNER,
+                new Permission[]{BasePermission.READ});
+        aclSupport.setParent(ADVERTISEMENT, ADVERTISEMENT_ID, "bulletinboard", "DE_WDF03_Board");
+
+        visibilityIndex.rebuild();
+
+        assertThat(getVisibleMask(OWNER), is(BasePermission.READ.getMask()));
+        assertThat(getVisibleMask("ATTR:LOCATION=DE"), is(BasePermission.READ.getMask()));
+    }
+
+    @Test
+    @Sql({"/db/data/acl_test_data_hierarchy.sql"})
+    public void populateScript_matchesRebuild() {
+        visibilityIndex.rebuild();
+        List<Map<String, Object>> rebuiltRows = getVisibilityRows();
+        jdbcTemplate.update("DELETE FROM ACL_ADVERTISEMENT_VISIBILITY");
+
+        ScriptUtils.executeSqlScript(DataSourceUtils.getConnection(dataSource), new ClassPathResource(POPULATE_SCRIPT));
+
+        assertThat(rebuiltRows.isEmpty(), is(false));
+        assertThat(getVisibilityRows(), is(rebuiltRows));
+    }
+
+    private List<Map<String, Object>> getVisibilityRows() {
+        return jdbcTemplate.queryForList("SELECT sid, advertisement_id, mask FROM ACL_ADVERTISEMENT_VISIBILITY "
+                + "ORDER BY sid, advertisement_id");
+    }
+
+    private Integer getVisibleMask(String sid) {
+        List<Integer> masks = jdbcTemplate.queryForList("SELECT visibility.mask "
+                        + "FROM ACL_ADVERTISEMENT_VISIBILITY visibility "
+                        + "INNER JOIN ACL_SID sid ON visibility.sid = sid.id "
+                        + "WHERE sid.sid = ? AND visibility.advertisement_id = ?",
+                Integer.class, sid, ADVERTISEMENT_ID);
+        return masks.isEmpty() ? null : masks.get(0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.sap.cp.appsec.security;
+
+import com.sap.cp.appsec.config.AclCacheInvalidatedEvent;
+import com.sap.cp.appsec.domain.Advertisement;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.acls.domain.BasePermission;
+import org.springframework.security.acls.model.AuditableAcl;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.transaction.Transactional;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "acl.readable-index.enabled=true")
+@Transactional
+public class ReadableAdvertisementIndexTest {
+
+    private static final String ADVERTISEMENT = Advertisement.class.getName();
+    private static final String OWNER = "owner";
+
+    @Autowired
+    private AclSupport aclSupport;
+
+    @Autowired
+    private ReadableAdvertisementIndex readableIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void readPermission_isIndexed() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, 4711L, OWNER, new Permission[]{BasePermission.READ});
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, 4712L, OWNER, new Permission[]{BasePermission.WRITE});
+        readableIndex.load(); // changes are applied after commit
+
+        Roaring64NavigableMap readable = readableIndex.findReadable(Collections.singleton(OWNER));
+        assertThat(readable.contains(4711L), is(true));
+        assertThat(readable.contains(4712L), is(false));
+        assertThat(readableIndex.findReadable(Collections.singleton("other")).isEmpty(), is(true));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void remoteInvalidation_isIndexed() {
+        readableIndex.load();
+        AuditableAcl acl = aclSupport.grantPermissionsToUser(ADVERTISEMENT, 4711L, OWNER,
+                new Permission[]{BasePermission.READ}); // as if changed by another instance, never committed here
+        assertThat(readableIndex.findReadable(Collections.singleton(OWNER)).contains(4711L), is(false));
+
+        eventPublisher.publishEvent(new AclCacheInvalidatedEvent(this,
+                Collections.singletonList(Long.valueOf(acl.getId().toString()))));
+
+        assertThat(readableIndex.findReadable(Collections.singleton(OWNER)).contains(4711L), is(true));
+    }
+
+    @Test
+    @WithMockUser(username = OWNER)
+    public void unpublishedAdvertisement_isNotReadablePublished() {
+        aclSupport.grantPermissionsToUser(ADVERTISEMENT, 4711L, OWNER, new Permission[]{BasePermission.READ});
+        readableIndex.load();
+
+        assertThat(readableIndex.findReadablePublished(Collections.singleton(OWNER)).isEmpty(), is(true));
+    }
+
+    @Test
+    public void getPage_descending() {
+        Roaring64NavigableMap ids = Roaring64NavigableMap.bitmapOf(1L, 2L, 3L, 5L, 8L);
+
+        assertThat(ReadableAdvertisementIndex.getPage(ids, PageRequest.of(1, 2, Sort.Direction.DESC, "ads.id")),
+                is(Arrays.asList(3L, 2L)));
+        assertThat(ReadableAdvertisementIndex.getPage(ids, PageRequest.of(2, 2, Sort.Direction.ASC, "ads.id")),
+                is(Collections.singletonList(8L)));
+        assertThat(ReadableAdvertisementIndex.getPage(ids, PageRequest.of(3, 2)).isEmpty(), is(true));
+    }
+
+    @Test
+    public void supports_sortByIdOnly() {
+        assertThat(ReadableAdvertisementIndex.supports(Sort.unsorted()), is(true));
+        assertThat(ReadableAdvertisementIndex.supports(Sort.by("ads.id")), is(true));
+        assertThat(ReadableAdvertisementIndex.supports(Sort.by("ads.title")), is(false));
+        assertThat(ReadableAdvertisementIndex.supports(Sort.by("ads.id", "ads.title")), is(false));
+    }
+}
@@ -0,0 +1,40 @@
+package com.sap.cp.appsec.security;
+
+import org.junit.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class SidAuthenticationTokenTest {
+
+    @Test
+    public void sids_containPrincipalAndAuthoritiesSorted() {
+        SidAuthenticationToken cut = new SidAuthenticationToken(
+                new TestingAuthenticationToken("owner", null, "ATTR:GROUP=B", "ATTR:GROUP=A"));
+
+        assertThat(new ArrayList<>(cut.getSids()), is(Arrays.asList("ATTR:GROUP=A", "ATTR:GROUP=B", "owner")));
+        assertThat(cut.getPrincipal(), is("owner"));
+        assertThat(cut.getName(), is("owner"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void sids_areUnmodifiable() {
+        new SidAuthenticationToken(new TestingAuthenticationToken("owner", null)).getSids().add("other");
+    }
+
+    @Test
+    public void sidsHash_dependsOnSidsOnly() {
+        String hash = new SidAuthenticationToken(
+                new TestingAuthenticationToken("owner", null, "ATTR:GROUP=A", "ATTR:GROUP=B")).getSidsHash();
+
+        assertThat(new SidAuthenticationToken(new TestingAuthenticationToken("owner", "secret", "ATTR:GROUP=B",
+                "ATTR:GROUP=A")).getSidsHash(), is(hash));
+        assertThat(new SidAuthenticationToken(new TestingAuthenticationToken("owner", null, "ATTR:GROUP=A"))
+                .getSidsHash(), is(not(hash)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.sap.cp.appsec.security;
+
+import org.junit.Test;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class VerifiedTokenCacheTest {
+
+    private final AtomicInteger decodeCount = new AtomicInteger();
+    private final AtomicInteger convertCount = new AtomicInteger();
+
+    @Test
+    public void validToken_isDecodedAndConvertedOnce() {
+        VerifiedTokenCache cut = new VerifiedTokenCache(10);
+        JwtDecoder decoder = cut.decoder(countingDecoder(Instant.now().plusSeconds(300)));
+        Converter<Jwt, AbstractAuthenticationToken> converter = cut.converter(countingConverter());
+
+        AbstractAuthenticationToken authentication = converter.convert(decoder.decode("token"));
+
+        assertThat(converter.convert(decoder.decode("token")).getName(), is(authentication.getName()));
+        assertThat(decodeCount.get(), is(1));
+        assertThat(convertCount.get(), is(1));
+    }
+
+    @Test
+    public void cachedToken_isCopiedPerRequest() {
+        VerifiedTokenCache cut = new VerifiedTokenCache(10);
+        JwtDecoder decoder = cut.decoder(countingDecoder(Instant.now().plusSeconds(300)));
+        Converter<Jwt, AbstractAuthenticationToken> converter = cut.converter(countingConverter());
+
+        AbstractAuthenticationToken authentication = converter.convert(decoder.decode("token"));
+        authentication.setDetails("first request");
+        AbstractAuthenticationToken otherAuthentication = converter.convert(decoder.decode("token"));
+
+        assertThat(otherAuthentication, is(not(sameInstance(authentication))));
+        assertThat(otherAuthentication.getDetails(), is(nullValue()));
+        assertThat(((SidAuthenticationToken) otherAuthentication).getSids(),
+                is(((SidAuthenticationToken) authentication).getSids()));
+        assertThat(convertCount.get(), is(1));
+    }
+
+    @Test
+    public void otherToken_isNotTakenFromCache() {
+        VerifiedTokenCache cut = new VerifiedTokenCache(10);
+        JwtDecoder decoder = cut.decoder(countingDecoder(Instant.now().plusSeconds(300)));
+        Converter<Jwt, AbstractAuthenticationToken> converter = cut.converter(countingConverter());
+
+        AbstractAuthenticationToken authentication = converter.convert(decoder.decode("token"));
+
+        assertThat(converter.convert(decoder.decode("otherToken")), is(not(sameInstance(authentication))));
+        assertThat(decodeCount.get(), is(2));
+    }
+
+    @Test
+    public void expiredToken_isNotCached() {
+        VerifiedTokenCache cut = new VerifiedTokenCache(10);
+        JwtDecoder decoder = cut.decoder(countingDecoder(Instant.now().minusSeconds(1)));
+        Converter<Jwt, AbstractAuthenticationToken> converter = cut.converter(countingConverter());
+
+        converter.convert(decoder.decode("token"));
+        converter.convert(decoder.decode("token"));
+
+        assertThat(decodeCount.get(), is(2));
+    }
+
+    private JwtDecoder countingDecoder(Instant expiresAt) {
+        return token -> {
+            decodeCount.incrementAndGet();
+            return new Jwt(token, expiresAt.minusSeconds(600), expiresAt, Collections.singletonMap("alg", "RS256"),
+                    Collections.singletonMap("user_name", "owner"));
+        };
+    }
+
+    private Converter<Jwt, SidAuthenticationToken> countingConverter() {
+        return jwt -> {
+            convertCount.incrementAndGet();
+            return new SidAuthenticationToken(new TestingAuthenticationToken(jwt.getClaimAsString("user_name"), null));
+        };
+    }
+}
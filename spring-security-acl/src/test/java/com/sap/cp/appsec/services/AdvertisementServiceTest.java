@@ -20,7 +20,10 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.*;
@@ -39,6 +42,9 @@ public class AdvertisementServiceTest {
     @Autowired
     private AclSupport aclService;
 
+    @Autowired
+    private EntityManager entityManager;
+
     private Long advertisementId = 777L;
 
     private static final String OWNER = "ownerAndAdmin";
@@ -73,6 +79,19 @@ public class AdvertisementServiceTest {
         assertThat(adsRead.getTitle(), is(title));
     }
 
+    @Test
+    @WithMockUser(username = ANYONE)
+    public void anyOne_canExportOwnAdvertisements() {
+        Advertisement first = service.create(buildAdvertisement("first"));
+        Advertisement second = service.create(buildAdvertisement("second"));
+        entityManager.flush(); // the export reads with plain JDBC
+
+        List<Long> exportedIds = new ArrayList<>();
+        service.exportAll(ads -> exportedIds.add(ads.getId()));
+
+        assertThat(exportedIds, contains(second.getId(), first.getId()));
+    }
+
     @Test
     @WithMockUser(username = OWNER) //can be realized w/o ACL
     public void owner_canRead() {
@@ -16,6 +16,9 @@ INSERT INTO ACL_SID (ID, PRINCIPAL, SID) VALUES
 INSERT INTO ACL_OBJECT_IDENTITY (ID, OBJECT_ID_CLASS, OBJECT_ID_IDENTITY, PARENT_OBJECT, OWNER_SID, ENTRIES_INHERITING) VALUES
     (400, 200, '777', NULL, 300, true);
 
+INSERT INTO ACL_OBJECT_ANCESTOR (DESCENDANT, ANCESTOR, DEPTH) VALUES
+    (400, 400, 0);
+
 INSERT INTO ACL_ENTRY (ID, ACL_OBJECT_IDENTITY, ACE_ORDER, SID, MASK, GRANTING, AUDIT_SUCCESS, AUDIT_FAILURE) VALUES
     (500, 400, 0, 300, 16,  true, false, false),
     (501, 400, 1, 300, 1,   true, false, false),
@@ -24,6 +24,14 @@ INSERT INTO ACL_OBJECT_IDENTITY (ID, OBJECT_ID_CLASS, OBJECT_ID_IDENTITY, PARENT
     (1306, 2010, '306', 100000001100, 3010, true),
     (1307, 2010, '307', 100000001101, 3010, true);
 
+--- the objects themselves and the ancestors of their (populated) parents
+INSERT INTO ACL_OBJECT_ANCESTOR (DESCENDANT, ANCESTOR, DEPTH)
+    SELECT ID, ID, 0 FROM ACL_OBJECT_IDENTITY WHERE ID BETWEEN 1301 AND 1307;
+INSERT INTO ACL_OBJECT_ANCESTOR (DESCENDANT, ANCESTOR, DEPTH)
+    SELECT obj.ID, closure.ANCESTOR, closure.DEPTH + 1 FROM ACL_OBJECT_IDENTITY obj
+    INNER JOIN ACL_OBJECT_ANCESTOR closure ON closure.DESCENDANT = obj.PARENT_OBJECT
+    WHERE obj.ID BETWEEN 1301 AND 1307;
+
 INSERT INTO ACL_ENTRY (id, acl_object_identity, ace_order, sid, mask, granting, audit_success, audit_failure) VALUES
     (5000, 1301, 0, 3010, 16, true, false, false),
     (5001, 1301, 1, 3010, 1,  true, false, false),
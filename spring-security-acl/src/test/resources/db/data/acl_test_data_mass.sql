@@ -77,6 +77,9 @@ INSERT INTO ACL_OBJECT_IDENTITY (ID, OBJECT_ID_CLASS, OBJECT_ID_IDENTITY, PARENT
     (462, 210, '898', NULL, 310, true),
     (463, 210, '899', NULL, 310, true);
 
+INSERT INTO ACL_OBJECT_ANCESTOR (DESCENDANT, ANCESTOR, DEPTH)
+    SELECT ID, ID, 0 FROM ACL_OBJECT_IDENTITY WHERE ID BETWEEN 410 AND 463;
+
 --- read-only permissions to all ads 871..899
     -- user=adOwner
 --- read-only permissions to ads with 871..891
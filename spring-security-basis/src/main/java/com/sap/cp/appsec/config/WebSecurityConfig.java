@@ -5,8 +5,12 @@ import static org.springframework.http.HttpMethod.POST;
 import static org.springframework.http.HttpMethod.PUT;
 
 import com.sap.cloud.security.xsuaa.XsuaaServiceConfiguration;
+import com.sap.cloud.security.xsuaa.token.AuthenticationToken;
 import com.sap.cloud.security.xsuaa.token.TokenAuthenticationConverter;
+import com.sap.cp.appsec.security.VerifiedTokenCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
@@ -16,6 +20,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 
 @Configuration
 @EnableWebSecurity
@@ -25,6 +30,12 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 	@Autowired
 	XsuaaServiceConfiguration xsuaaServiceConfiguration;
 
+	@Autowired
+	JwtDecoder jwtDecoder;
+
+	@Value("${security.token-cache.maximum-size:10000}")
+	long tokenCacheMaximumSize;
+
 	// configure Spring Security, demand authentication and specific scopes
 	@Override
 	public void configure(HttpSecurity http) throws Exception {
@@ -49,7 +60,17 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .anyRequest().denyAll() // deny anything not configured above
             .and()
                 .oauth2ResourceServer().jwt()
-					.jwtAuthenticationConverter(getJwtAuthoritiesConverter());
+					.decoder(verifiedTokenCache().decoder(jwtDecoder))
+					.jwtAuthenticationConverter(verifiedTokenCache().converter(getJwtAuthoritiesConverter(),
+							AuthenticationToken::new));
+	}
+
+	/**
+	 * Caches the authentication per token, so that repeated requests with the same token skip the validation
+	 */
+	@Bean
+	public VerifiedTokenCache verifiedTokenCache() {
+		return new VerifiedTokenCache(tokenCacheMaximumSize);
 	}
 
 	/**
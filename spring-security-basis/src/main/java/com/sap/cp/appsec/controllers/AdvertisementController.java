@@ -18,6 +18,8 @@ import com.sap.cp.appsec.domain.AdvertisementRepository;
 import com.sap.cp.appsec.domain.ConfidentialityLevel;
 import com.sap.cp.appsec.dto.AdvertisementDto;
 import com.sap.cp.appsec.dto.AdvertisementListDto;
+import com.sap.cp.appsec.dto.EntityTagBuilder;
+import com.sap.cp.appsec.dto.PageCursor;
 import com.sap.cp.appsec.dto.PageHeaderBuilder;
 import com.sap.cp.appsec.exceptions.BadRequestException;
 import com.sap.cp.appsec.exceptions.NotAuthorizedException;
@@ -27,6 +29,8 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -41,9 +45,11 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.annotation.RequestScope;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -60,6 +66,7 @@ public class AdvertisementController {
     private final AdvertisementRepository adsRepo;
 
     public static final String PATH_PAGES = PATH + "/pages/";
+    public static final String PATH_CURSOR = PATH + "?after=";
     public static final int FIRST_PAGE_ID = 0;
     public static final int DEFAULT_PAGE_SIZE = 20;
 
@@ -82,12 +89,23 @@ public class AdvertisementController {
         return new ResponseEntity<>(savedAdvertisement, headers, HttpStatus.CREATED);
     }
 
+    /**
+     * Reads the first page. With the {@code after} parameter (may be empty for the first page) the advertisements are
+     * read in keyset pagination mode, i.e. the "next" link contains an opaque cursor instead of a page number.
+     */
     @GetMapping
-    public ResponseEntity<AdvertisementListDto> readAll(@AuthenticationPrincipal Token token) {
+    public ResponseEntity<AdvertisementListDto> readAll(@AuthenticationPrincipal Token token,
+            @RequestParam(value = "after", required = false) String after) {
         if (!token.getAuthorities().contains(new SimpleGrantedAuthority("Display"))) {
             throw new NotAuthorizedException("This operation requires \"Display\" scope");
         }
+        if (after != null) {
+            Slice<Advertisement> slice = adsRepo.findAllAfter(isReadable(token),
+                    PageCursor.decode(after), DEFAULT_PAGE_SIZE);
 
+            return new ResponseEntity<>(new AdvertisementListDto(slice.getContent()),
+                    PageHeaderBuilder.createCursorLinkHeader(slice, PATH_CURSOR), HttpStatus.OK);
+        }
         return readPage(FIRST_PAGE_ID);
     }
 
@@ -106,30 +124,40 @@ public class AdvertisementController {
     @GetMapping("/pages/{pageId}")
     public ResponseEntity<AdvertisementListDto> readPage(@PathVariable("pageId") int pageId) {
         Token jwtToken = SpringSecurityContext.getToken();
-        Page<Advertisement> page = adsRepo
-                .findAll(where(isCreatedBy(jwtToken.getLogonName()).or(confidentialityIsEqualOrLess(
-                        jwtToken.getXSUserAttribute(ConfidentialityLevel.ATTRIBUTE_NAME)))),
-                        PageRequest.of(pageId, DEFAULT_PAGE_SIZE));
+        Page<Advertisement> page = adsRepo.findAll(isReadable(jwtToken), PageRequest.of(pageId, DEFAULT_PAGE_SIZE));
 
         return new ResponseEntity<>(new AdvertisementListDto(page.getContent()),
                 PageHeaderBuilder.createLinkHeader(page, PATH_PAGES), HttpStatus.OK);
     }
 
+    /**
+     * Responds with 304 (Not Modified) in case the entity tag given with {@code If-None-Match} is still valid. The
+     * tag is validated by reading the version only, restricted to the advertisements the user can read.
+     */
     @GetMapping("/{id}")
-    public AdvertisementDto readById(@PathVariable("id") @Min(0) Long id) {
+    public ResponseEntity<AdvertisementDto> readById(@PathVariable("id") @Min(0) Long id, WebRequest request) {
         MDC.put("endpoint", "GET: " + PATH + "/" + id);
         Token jwtToken = SpringSecurityContext.getToken();
 
         // here we apply a filter on database leveraging Spring Data JPA: isCreatedBy or hasAttributeValue
         // find further info here: https://docs.spring.io/spring-data/jpa/docs/current/reference/html/
-        Optional<Advertisement> advertisement = adsRepo
-                .findOne(where(hasId(id).and(isCreatedBy(jwtToken.getLogonName())).or(
-                        confidentialityIsEqualOrLess(
-                                jwtToken.getXSUserAttribute(ConfidentialityLevel.ATTRIBUTE_NAME)))));
+        Specification<Advertisement> readableById = where(hasId(id)).and(isReadable(jwtToken));
+
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Long> version = adsRepo.findVersion(readableById);
+            if (!version.isPresent()) {
+                throwNonexisting(id);
+            }
+            if (request.checkNotModified(EntityTagBuilder.createETag(id, version.get()))) {
+                return null; // status and ETag header are set already
+            }
+        }
+        Optional<Advertisement> advertisement = adsRepo.findOne(readableById);
 
         if (advertisement.isPresent()) {
             logger.trace("returning: {}", advertisement.get());
-            return new AdvertisementDto(advertisement.get());
+            return ResponseEntity.ok().eTag(EntityTagBuilder.createETag(advertisement.get()))
+                    .body(new AdvertisementDto(advertisement.get()));
         }
         throwNonexisting(id);
         return null;
@@ -152,6 +180,11 @@ public class AdvertisementController {
         adsRepo.deleteById(id);
     }
 
+    private static Specification<Advertisement> isReadable(Token jwtToken) {
+        return where(isCreatedBy(jwtToken.getLogonName()).or(confidentialityIsEqualOrLess(
+                jwtToken.getXSUserAttribute(ConfidentialityLevel.ATTRIBUTE_NAME))));
+    }
+
     private void throwIfNonexisting(@PathVariable("id") Long id) {
         if (!adsRepo.existsById(id)) {
             throwNonexisting(id);
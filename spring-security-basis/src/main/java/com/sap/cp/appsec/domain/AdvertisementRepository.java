@@ -7,7 +7,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
-public interface AdvertisementRepository extends PagingAndSortingRepository<Advertisement, Long> , JpaSpecificationExecutor<Advertisement> {
+public interface AdvertisementRepository extends PagingAndSortingRepository<Advertisement, Long> , JpaSpecificationExecutor<Advertisement>,
+        AdvertisementRepositoryCustom {
     List<Advertisement> findByTitle(String title);
     
     Page<Advertisement> findAllByConfidentialityLevel(ConfidentialityLevel confidentialityLevel, Pageable pageable);
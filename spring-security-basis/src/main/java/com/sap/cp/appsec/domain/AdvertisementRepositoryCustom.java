@@ -0,0 +1,24 @@
+package com.sap.cp.appsec.domain;
+
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Optional;
+
+public interface AdvertisementRepositoryCustom {
+
+    /**
+     * Keyset pagination: reads the advertisements matching the specification ordered by id descending, starting
+     * after the given id. In contrast to offset based pages no count query is issued.
+     *
+     * @param afterId id of the last advertisement of the previous slice, {@code null} for the first slice
+     * @param limit   maximum number of advertisements of the slice
+     */
+    Slice<Advertisement> findAllAfter(Specification<Advertisement> spec, Long afterId, int limit);
+
+    /**
+     * Reads only the version of the advertisement matching the specification, e.g. to validate an entity tag without
+     * loading the advertisement.
+     */
+    Optional<Long> findVersion(Specification<Advertisement> spec);
+}
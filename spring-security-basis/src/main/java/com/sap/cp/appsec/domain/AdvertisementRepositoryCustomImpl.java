@@ -0,0 +1,51 @@
+package com.sap.cp.appsec.domain;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+import java.util.Optional;
+
+public class AdvertisementRepositoryCustomImpl implements AdvertisementRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<Advertisement> findAllAfter(Specification<Advertisement> spec, Long afterId, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Advertisement> query = builder.createQuery(Advertisement.class);
+        Root<Advertisement> root = query.from(Advertisement.class);
+
+        Predicate predicate = spec == null ? builder.conjunction() : spec.toPredicate(root, query, builder);
+        if (afterId != null) {
+            predicate = builder.and(predicate, builder.lessThan(root.<Long>get("id"), afterId));
+        }
+        query.select(root).where(predicate).orderBy(builder.desc(root.get("id")));
+
+        // read one more to find out whether there is a next slice
+        List<Advertisement> content = entityManager.createQuery(query).setMaxResults(limit + 1).getResultList();
+        boolean hasNext = content.size() > limit;
+        return new SliceImpl<>(hasNext ? content.subList(0, limit) : content, PageRequest.of(0, limit), hasNext);
+    }
+
+    @Override
+    public Optional<Long> findVersion(Specification<Advertisement> spec) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<Advertisement> root = query.from(Advertisement.class);
+
+        query.select(root.<Long>get("version")).where(spec.toPredicate(root, query, builder));
+
+        List<Long> versions = entityManager.createQuery(query).setMaxResults(1).getResultList();
+        return versions.isEmpty() ? Optional.empty() : Optional.of(versions.get(0));
+    }
+}
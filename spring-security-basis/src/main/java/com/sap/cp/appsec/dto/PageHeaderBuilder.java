@@ -1,6 +1,8 @@
 package com.sap.cp.appsec.dto;
 
+import com.sap.cp.appsec.domain.BaseEntity;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 
 public class PageHeaderBuilder {
@@ -23,4 +25,19 @@ public class PageHeaderBuilder {
         headers.add(HttpHeaders.LINK, linkHeader.toString());
         return headers;
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates the link to the next page in keyset pagination mode. The cursor references the last entity of the
+     * given slice and is appended to the path, e.g. {@code /api/v1/ads?after=}.
+     */
+    public static HttpHeaders createCursorLinkHeader(Slice<? extends BaseEntity> slice, String path) {
+        StringBuilder linkHeader = new StringBuilder();
+        if (slice.hasNext()) {
+            Long lastId = slice.getContent().get(slice.getNumberOfElements() - 1).getId();
+            linkHeader.append("<").append(path).append(PageCursor.encode(lastId)).append(">; rel=\"next\"");
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.LINK, linkHeader.toString());
+        return headers;
+    }
+}
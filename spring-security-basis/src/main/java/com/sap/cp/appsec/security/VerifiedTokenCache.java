@@ -0,0 +1,117 @@
+package com.sap.cp.appsec.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.BiFunction;
+
+/**
+ * Caches the authorities extracted from a JWT token until the token expires, so that clients that send the same token
+ * with many requests pay for the signature validation and the extraction of the authorities only once.
+ *
+ * The cache is keyed by the SHA-256 digest of the token, so the tokens are not kept in memory as key. Every request
+ * gets a new authentication with the cached authorities, as the authentication provider sets the details of the
+ * request (e.g. the remote address) on it.
+ *
+ * Hit, miss and eviction statistics are exported as "cache.*" metrics with tag "cache=verified_tokens".
+ */
+public class VerifiedTokenCache implements MeterBinder {
+    public static final String CACHE_NAME = "verified_tokens";
+
+    private final Cache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String digest, VerifiedToken token, long currentTime) {
+                        Instant expiresAt = token.jwt.getExpiresAt();
+                        return expiresAt == null ? 0 : Math.max(0, Duration.between(Instant.now(), expiresAt).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(digest, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return decoder that validates only tokens that are not cached yet
+     */
+    public JwtDecoder decoder(JwtDecoder jwtDecoder) {
+        return tokenValue -> {
+            VerifiedToken verifiedToken = cache.getIfPresent(digest(tokenValue));
+            return verifiedToken != null ? verifiedToken.jwt : jwtDecoder.decode(tokenValue);
+        };
+    }
+
+    /**
+     * @param converter    extracts the authorities of tokens that are not cached yet
+     * @param tokenFactory creates the authentication of every request from the token and the cached authorities,
+     *                     e.g. the constructor of the authentication type the converter returns
+     * @return converter that caches the authorities extracted by the given converter
+     */
+    public Converter<Jwt, AbstractAuthenticationToken> converter(Converter<Jwt, AbstractAuthenticationToken> converter,
+            BiFunction<Jwt, Collection<GrantedAuthority>, AbstractAuthenticationToken> tokenFactory) {
+        return jwt -> {
+            String digest = digest(jwt.getTokenValue());
+            VerifiedToken verifiedToken = cache.asMap().get(digest); // hit or miss is recorded by the decoder
+            if (verifiedToken == null || verifiedToken.jwt != jwt) {
+                verifiedToken = new VerifiedToken(jwt, converter.convert(jwt).getAuthorities());
+                cache.put(digest, verifiedToken);
+            }
+            return tokenFactory.apply(verifiedToken.jwt, verifiedToken.authorities);
+        };
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    private static String digest(String tokenValue) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(tokenValue.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static class VerifiedToken {
+        private final Jwt jwt;
+        private final Collection<GrantedAuthority> authorities;
+
+        VerifiedToken(Jwt jwt, Collection<GrantedAuthority> authorities) {
+            this.jwt = jwt;
+            this.authorities = Collections.unmodifiableList(new ArrayList<>(authorities));
+        }
+    }
+}
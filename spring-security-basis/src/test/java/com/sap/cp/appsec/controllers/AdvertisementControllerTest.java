@@ -189,6 +189,35 @@ public class AdvertisementControllerTest {
                 .andExpect(jsonPath("$.title", is(SOME_TITLE)));
     }
 
+    @Test
+    public void readByIdUnchanged_304() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(buildPostRequest(SOME_TITLE, ConfidentialityLevel.INTERNAL)
+                .with(bearerToken(jwt_advertiser)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse();
+        String id = getIdFromLocation(response.getHeader(HttpHeaders.LOCATION));
+        String eTag = mockMvc.perform(buildGetRequest(id).with(bearerToken(jwt_advertiser)))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(buildGetRequest(id).header(HttpHeaders.IF_NONE_MATCH, eTag).with(bearerToken(jwt_advertiser)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+        mockMvc.perform(buildGetRequest(id).header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .with(bearerToken(jwt_adsViewer_public))) // read as viewer
+                .andExpect(status().isNotFound());
+
+        AdvertisementDto advertisement = convertJsonContent(response, AdvertisementDto.class);
+        advertisement.title = SOME_OTHER_TITLE;
+        mockMvc.perform(buildPutRequest(id, advertisement).with(bearerToken(jwt_advertiser)))
+                .andExpect(status().isOk());
+        mockMvc.perform(buildGetRequest(id).header(HttpHeaders.IF_NONE_MATCH, eTag).with(bearerToken(jwt_advertiser)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is(SOME_OTHER_TITLE)));
+    }
+
     @Test
     public void readAllMyAds_200() throws Exception {
         mockMvc.perform(buildPostRequest(SOME_TITLE).with(bearerToken(jwt_advertiser)))
@@ -391,6 +420,34 @@ public class AdvertisementControllerTest {
         assertThat(performGetRequest(previousLink).getHeader(HttpHeaders.LINK), is(linkHeader2ndPage));
     }
 
+    @Test
+    public void navigateCursor() throws Exception {
+        int adsCount = DEFAULT_PAGE_SIZE + 1;
+
+        for (int i = 0; i < adsCount; i++) {
+            performPostAndGetId();
+        }
+
+        String linkHeader = mockMvc.perform(get(AdvertisementController.PATH_CURSOR).with(bearerToken(jwt_advertiser)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.value.length()", is(DEFAULT_PAGE_SIZE)))
+                .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        assertThat(linkHeader, startsWith("<" + AdvertisementController.PATH_CURSOR));
+        assertThat(linkHeader, endsWith(">; rel=\"next\""));
+
+        // navigate to next
+        mockMvc.perform(get(extractLinks(linkHeader).get(0)).with(bearerToken(jwt_advertiser)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.value.length()", is(1)))
+                .andExpect(header().string(HttpHeaders.LINK, is("")));
+    }
+
+    @Test
+    public void readWithInvalidCursor_400() throws Exception {
+        mockMvc.perform(get(AdvertisementController.PATH_CURSOR + "invalid").with(bearerToken(jwt_advertiser)))
+                .andExpect(status().isBadRequest());
+    }
+
     private String getGlobalScope(String localScope) {
         Assert.hasText(xsuaaServiceConfiguration.getAppId(), "make sure that xsuaa.xsappname is configured properly.");
         return xsuaaServiceConfiguration.getAppId() + "." + localScope;
@@ -0,0 +1,88 @@
+package com.sap.cp.appsec.security;
+
+import org.junit.Test;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class VerifiedTokenCacheTest {
+
+    private final AtomicInteger decodeCount = new AtomicInteger();
+    private final AtomicInteger convertCount = new AtomicInteger();
+
+    @Test
+    public void validToken_isDecodedAndConvertedOnce() {
+        VerifiedTokenCache cut = new VerifiedTokenCache(10);
+        JwtDecoder decoder = cut.decoder(countingDecoder(Instant.now().plusSeconds(300)));
+        Converter<Jwt, AbstractAuthenticationToken> converter = cachingConverter(cut);
+
+        AbstractAuthenticationToken authentication = converter.convert(decoder.decode("token"));
+        AbstractAuthenticationToken otherAuthentication = converter.convert(decoder.decode("token"));
+
+        assertThat(otherAuthentication.getName(), is(authentication.getName()));
+        assertThat(otherAuthentication.getAuthorities(), is(authentication.getAuthorities()));
+        assertThat(decodeCount.get(), is(1));
+        assertThat(convertCount.get(), is(1));
+    }
+
+    @Test
+    public void cachedToken_isNewAuthenticationPerRequest() {
+        VerifiedTokenCache cut = new VerifiedTokenCache(10);
+        JwtDecoder decoder = cut.decoder(countingDecoder(Instant.now().plusSeconds(300)));
+        Converter<Jwt, AbstractAuthenticationToken> converter = cachingConverter(cut);
+
+        AbstractAuthenticationToken authentication = converter.convert(decoder.decode("token"));
+        AbstractAuthenticationToken otherAuthentication = converter.convert(decoder.decode("token"));
+        authentication.setDetails("first request");
+
+        assertThat(otherAuthentication, is(not(sameInstance(authentication))));
+        assertThat(otherAuthentication.getDetails(), is(nullValue()));
+        otherAuthentication.setDetails("second request");
+        assertThat(authentication.getDetails(), is("first request"));
+        assertThat(convertCount.get(), is(1));
+    }
+
+    @Test
+    public void expiredToken_isNotCached() {
+        VerifiedTokenCache cut = new VerifiedTokenCache(10);
+        JwtDecoder decoder = cut.decoder(countingDecoder(Instant.now().minusSeconds(1)));
+        Converter<Jwt, AbstractAuthenticationToken> converter = cachingConverter(cut);
+
+        converter.convert(decoder.decode("token"));
+        converter.convert(decoder.decode("token"));
+
+        assertThat(decodeCount.get(), is(2));
+        assertThat(convertCount.get(), is(2));
+    }
+
+    private JwtDecoder countingDecoder(Instant expiresAt) {
+        return token -> {
+            decodeCount.incrementAndGet();
+            return new Jwt(token, expiresAt.minusSeconds(600), expiresAt, Collections.singletonMap("alg", "RS256"),
+                    Collections.singletonMap("user_name", "owner"));
+        };
+    }
+
+    private Converter<Jwt, AbstractAuthenticationToken> cachingConverter(VerifiedTokenCache cut) {
+        return cut.converter(jwt -> {
+            convertCount.incrementAndGet();
+            return new TestingAuthenticationToken(jwt.getClaimAsString("user_name"), null,
+                    Collections.singletonList(new SimpleGrantedAuthority("Display")));
+        }, (jwt, authorities) -> new TestingAuthenticationToken(jwt.getClaimAsString("user_name"), null,
+                new ArrayList<>(authorities)));
+    }
+}